@@ -0,0 +1,162 @@
+package pique.analysis;
+
+import pique.model.Diagnostic;
+import pique.model.Finding;
+import pique.model.ModelNode;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * The findings of one tool for one project, partitioned by the file they were found in
+ * ({@link Finding#getFilePath()}), so the results of an analysis of a few changed files can be merged into the results
+ * of an earlier analysis of the whole project.
+ * <p>
+ * {@link #merge} drops the partitions of the changed files (all files below a changed directory or deleted path) and
+ * adds the findings of the new analysis; the partitions of unchanged files are reused. For a tool whose analysis is
+ * file-local ({@link ITool#isFileLocal()}) the merged diagnostics equal those of a full analysis of the changed
+ * project. Findings without a file path form a project partition, replaced only when a new analysis reports some.
+ * </p>
+ */
+public class FindingStore {
+
+    private static final String PROJECT_PARTITION = "";
+
+    // Fields
+    private final Path projectRoot;
+    // {Key: normalized file path, Value: {Key: diagnostic name, Value: findings of the file}}
+    private final SortedMap<String, Map<String, List<Finding>>> partitions = new TreeMap<>();
+    // Latest diagnostic object received for each diagnostic name
+    private final Map<String, Diagnostic> diagnostics = new HashMap<>();
+
+
+    // Constructor
+
+    /**
+     * @param projectRoot
+     *      Root directory of the project, against which relative finding paths are resolved
+     */
+    public FindingStore(Path projectRoot) {
+        this.projectRoot = projectRoot.toAbsolutePath().normalize();
+    }
+
+
+    // Getters
+
+    /**
+     * @return number of files with findings, plus one if there are findings without a file path
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * @return the findings of a file, in no particular order
+     */
+    public List<Finding> getFindings(Path file) {
+        List<Finding> findings = new ArrayList<>();
+        Map<String, List<Finding>> partition = partitions.get(projectRoot.resolve(file).normalize().toString());
+        if (partition != null) partition.values().forEach(findings::addAll);
+        return findings;
+    }
+
+    /**
+     * Rebuild the tool's diagnostics from the stored findings. Diagnostics whose findings were all dropped are kept,
+     * without findings.
+     *
+     * @return
+     *      {Key: diagnostic name, Value: diagnostic with the findings of all partitions}
+     */
+    public Map<String, Diagnostic> getDiagnostics() {
+        Map<String, Map<String, ModelNode>> findings = new HashMap<>();
+        partitions.values().forEach(partition -> partition.forEach((diagnosticName, fileFindings) -> {
+            Map<String, ModelNode> children = findings.computeIfAbsent(diagnosticName, name -> new LinkedHashMap<>());
+            fileFindings.forEach(finding -> children.put(finding.getName(), finding));
+        }));
+
+        Map<String, Diagnostic> merged = new HashMap<>();
+        diagnostics.forEach((name, diagnostic) -> {
+            diagnostic.setChildren(findings.getOrDefault(name, new LinkedHashMap<>()));
+            merged.put(name, diagnostic);
+        });
+        return merged;
+    }
+
+
+    // Methods
+
+    /**
+     * Replace all stored findings with the results of an analysis of the whole project.
+     *
+     * @param analysis
+     *      {Key: diagnostic name, Value: diagnostic object} as parsed by {@link ITool#parseAnalysis(Path)}
+     */
+    public void replace(Map<String, Diagnostic> analysis) {
+        partitions.clear();
+        diagnostics.clear();
+        add(analysis);
+    }
+
+    /**
+     * Merge the results of an analysis of changed files into the stored findings.
+     *
+     * @param analysis
+     *      {Key: diagnostic name, Value: diagnostic object} as parsed by {@link ITool#parseAnalysis(Path)} from the
+     *      output of {@link ITool#analyze(Path, Set)}
+     * @param changedFiles
+     *      The files given to the analysis, including deleted ones. Relative paths are resolved against the project
+     *      root.
+     */
+    public void merge(Map<String, Diagnostic> analysis, Collection<Path> changedFiles) {
+        for (Path changedFile : changedFiles) {
+            Path changed = projectRoot.resolve(changedFile).normalize();
+            if (Files.isRegularFile(changed)) {
+                partitions.remove(changed.toString());
+            } else {
+                // Directory or deleted path: everything below it
+                partitions.keySet().removeIf(file -> isBelow(file, changed));
+            }
+        }
+
+        boolean projectFindings = analysis.values().stream()
+                .flatMap(diagnostic -> diagnostic.getChildren().values().stream())
+                .anyMatch(child -> child instanceof Finding && partition((Finding) child).equals(PROJECT_PARTITION));
+        if (projectFindings) partitions.remove(PROJECT_PARTITION);
+
+        add(analysis);
+    }
+
+    private void add(Map<String, Diagnostic> analysis) {
+        analysis.values().forEach(diagnostic -> {
+            diagnostics.put(diagnostic.getName(), diagnostic);
+            for (ModelNode child : diagnostic.getChildren().values()) {
+                if (!(child instanceof Finding)) continue;
+                partitions.computeIfAbsent(partition((Finding) child), file -> new HashMap<>())
+                        .computeIfAbsent(diagnostic.getName(), name -> new ArrayList<>())
+                        .add((Finding) child);
+            }
+        });
+    }
+
+    private static boolean isBelow(String file, Path changed) {
+        if (file.equals(PROJECT_PARTITION)) return false;
+        try {
+            return Paths.get(file).startsWith(changed);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+    }
+
+    private String partition(Finding finding) {
+        String filePath = finding.getFilePath();
+        if (filePath == null || filePath.isEmpty()) return PROJECT_PARTITION;
+        try {
+            return projectRoot.resolve(filePath).normalize().toString();
+        } catch (InvalidPathException e) {
+            return filePath;
+        }
+    }
+}
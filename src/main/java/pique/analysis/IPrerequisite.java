@@ -0,0 +1,42 @@
+package pique.analysis;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A preprocessing step several tools need before they can analyze a project, e.g. building it, indexing its sources
+ * or counting its lines of code. The step produces a named artifact (a build output directory, an index file, ...)
+ * which tools request by name (see {@link ITool#getPrerequisites()}).
+ *
+ * A {@link ToolScheduler} runs each prerequisite at most once per project, however many tools request it.
+ */
+public interface IPrerequisite {
+
+    /**
+     * @return
+     *      The name of the artifact the step produces, e.g. "build"
+     */
+    String getName();
+
+    /**
+     * @return
+     *      Names of the artifacts this step needs itself, e.g. an index may need the build. None by default.
+     */
+    default Set<String> getPrerequisites() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Run the step on a project.
+     *
+     * @param projectLocation
+     *      Root directory of the project
+     * @param artifacts
+     *      {Key: artifact name, Value: artifact location} of the artifacts listed by {@link #getPrerequisites()}
+     * @return
+     *      Location of the produced artifact
+     */
+    Path produce(Path projectLocation, Map<String, Path> artifacts);
+}
@@ -0,0 +1,148 @@
+package pique.analysis;
+
+import pique.model.Diagnostic;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * A tool that can write its report to standard output. Its process's output is connected through a pipe to a
+ * streaming parser, so the report never hits the disk: no full write and read back of (possibly multi-GB) result
+ * files, and parsing overlaps the analysis.
+ *
+ * Implementations provide the command and a parser reading the report from a stream. {@link #analyze(Path)} and
+ * {@link #parseAnalysis(Path)} remain available as the temp-file fallback (e.g. for tools that can not stream in some
+ * environments, see {@link #isStreaming()}): the report is then redirected to a temporary file, deleted once parsed.
+ *
+ * Tools with prerequisites (see {@link #getPrerequisites()}) stream as well: a {@link ToolScheduler} runs them with
+ * {@link #runAsync(Path, Map, Executor)} once their artifacts are produced, and they receive the artifacts through
+ * {@link #getCommand(Path, Map)}.
+ */
+public interface IStreamingTool extends ITool {
+
+    /**
+     * @param projectLocation
+     *      Root directory of the project to analyze, also the working directory of the process
+     * @return
+     *      The program and arguments that analyze the project and write the report to standard output
+     */
+    List<String> getCommand(Path projectLocation);
+
+    /**
+     * Tools declaring prerequisites should override this; by default the artifacts are ignored.
+     *
+     * @param artifacts
+     *      {Key: artifact name, Value: artifact location} of the tool's prerequisites
+     * @return
+     *      The program and arguments that analyze the project, using the artifacts, and write the report to standard
+     *      output
+     */
+    default List<String> getCommand(Path projectLocation, Map<String, Path> artifacts) {
+        return getCommand(projectLocation);
+    }
+
+    /**
+     * Parse a report as the tool writes it. The stream does not need to be read to its end.
+     *
+     * @param report
+     *      The tool's report
+     * @return
+     *      A mapping (Key: diagnostic name, Value: diagnostic object) of the parsed diagnostics
+     */
+    Map<String, Diagnostic> parseAnalysis(InputStream report) throws IOException;
+
+    /**
+     * @return
+     *      true (default) to pipe the report to the parser, false to use the temp-file fallback
+     */
+    default boolean isStreaming() {
+        return true;
+    }
+
+    /**
+     * Run the tool and parse its report from the process's output while it runs.
+     *
+     * @return
+     *      A mapping (Key: diagnostic name, Value: diagnostic object) of the parsed diagnostics
+     */
+    default Map<String, Diagnostic> analyzeStreaming(Path projectLocation) {
+        return analyzeStreaming(projectLocation, Collections.emptyMap());
+    }
+
+    /**
+     * Run the tool on a project whose prerequisite artifacts have been produced and parse its report from the
+     * process's output while it runs.
+     *
+     * @return
+     *      A mapping (Key: diagnostic name, Value: diagnostic object) of the parsed diagnostics
+     */
+    default Map<String, Diagnostic> analyzeStreaming(Path projectLocation, Map<String, Path> artifacts) {
+        ToolProcess process = new ToolProcess(getName(), getCommand(projectLocation, artifacts), projectLocation,
+                ProcessBuilder.Redirect.PIPE);
+        Map<String, Diagnostic> diagnostics;
+        try (InputStream report = process.getOutput()) {
+            diagnostics = parseAnalysis(report);
+            // Let the process finish writing what the parser did not need
+            byte[] rest = new byte[8192];
+            while (report.read(rest) != -1) { }
+        } catch (IOException | RuntimeException e) {
+            process.destroy();
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
+            throw new UncheckedIOException("Unable to read the report of " + getName(), (IOException) e);
+        }
+        process.waitFor();
+        return diagnostics;
+    }
+
+    /**
+     * Temp-file fallback: run the tool with its report redirected to a temporary file.
+     */
+    @Override
+    default Path analyze(Path projectLocation) {
+        return StreamingReports.write(this, getCommand(projectLocation), projectLocation);
+    }
+
+    /**
+     * Temp-file fallback: run the tool, using the artifacts, with its report redirected to a temporary file.
+     */
+    @Override
+    default Path analyze(Path projectLocation, Map<String, Path> artifacts) {
+        return StreamingReports.write(this, getCommand(projectLocation, artifacts), projectLocation);
+    }
+
+    /**
+     * Temp-file fallback: parse a report file. Report files written by {@link #analyze(Path)} or
+     * {@link #analyze(Path, Map)} are deleted once parsed; other files are left in place.
+     */
+    @Override
+    default Map<String, Diagnostic> parseAnalysis(Path toolResults) {
+        try (InputStream report = Files.newInputStream(toolResults)) {
+            return parseAnalysis(report);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the report of " + getName(), e);
+        } finally {
+            StreamingReports.release(toolResults);
+        }
+    }
+
+    @Override
+    default CompletableFuture<Map<String, Diagnostic>> runAsync(Path projectLocation, Executor executor) {
+        if (!isStreaming()) return ITool.super.runAsync(projectLocation, executor);
+        return CompletableFuture.supplyAsync(() -> analyzeStreaming(projectLocation), executor);
+    }
+
+    @Override
+    default CompletableFuture<Map<String, Diagnostic>> runAsync(Path projectLocation, Map<String, Path> artifacts,
+                                                                Executor executor) {
+        if (!isStreaming()) return ITool.super.runAsync(projectLocation, artifacts, executor);
+        return CompletableFuture.supplyAsync(() -> analyzeStreaming(projectLocation, artifacts), executor);
+    }
+}
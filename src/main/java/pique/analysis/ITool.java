@@ -3,7 +3,11 @@ package pique.analysis;
 import pique.model.Diagnostic;
 
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Interface definition for static analysis tools.
@@ -28,6 +32,122 @@ public interface ITool {
      */
     Path analyze(Path projectLocation);
 
+    /**
+     * Run the tool on a project whose prerequisite artifacts (see {@link #getPrerequisites()}) have been produced.
+     * Tools declaring prerequisites should override this; by default the artifacts are ignored.
+     *
+     * @param projectLocation
+     *      Root directory location needed by the tool to perform its analysis on the given project.
+     * @param artifacts
+     *      {Key: artifact name, Value: artifact location} of the tool's prerequisites
+     * @return
+     *      The location of the analysis results
+     */
+    default Path analyze(Path projectLocation, Map<String, Path> artifacts) {
+        return analyze(projectLocation);
+    }
+
+    /**
+     * @return
+     *      Names of the artifacts (see {@link IPrerequisite}) the tool needs before it can analyze a project, e.g.
+     *      "build". None by default.
+     */
+    default Set<String> getPrerequisites() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Whether one instance of the tool can analyze and parse several projects at the same time, e.g. because it
+     * writes its results to a distinct temporary file per run. Benchmarking and multi-project evaluations only run a
+     * shared tool instance on several projects concurrently when it is.
+     *
+     * @return
+     *      false by default
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
+    /**
+     * @return
+     *      Memory and CPUs one analysis of the tool needs, for admission to a {@link ToolPool}. null by default: the
+     *      pool learns the footprint from the tool's previous runs.
+     */
+    default ResourceFootprint getResourceFootprint() {
+        return null;
+    }
+
+    /**
+     * Start the tool's analysis of a project without waiting for it. By default {@link #analyze(Path)} runs on the
+     * executor; tools able to wait for their external process without holding a thread can override this.
+     *
+     * @param projectLocation
+     *      Root directory location needed by the tool to perform its analysis on the given project.
+     * @param executor
+     *      Executor to run blocking work on
+     * @return
+     *      Completes with the location of the analysis results, or exceptionally with the tool's failure
+     */
+    default CompletableFuture<Path> analyzeAsync(Path projectLocation, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> analyze(projectLocation), executor);
+    }
+
+    /**
+     * Analyze a project and parse the analysis results without waiting: the parse stage runs on the executor as soon
+     * as {@link #analyzeAsync} completes.
+     *
+     * @return
+     *      Completes with a mapping (Key: diagnostic name, Value: diagnostic object) of the parsed diagnostics
+     */
+    default CompletableFuture<Map<String, Diagnostic>> runAsync(Path projectLocation, Executor executor) {
+        return analyzeAsync(projectLocation, executor).thenApplyAsync(this::parseAnalysis, executor);
+    }
+
+    /**
+     * Analyze a project whose prerequisite artifacts have been produced and parse the analysis results without
+     * waiting. By default {@link #analyze(Path, Map)} and {@link #parseAnalysis(Path)} run one after the other on the
+     * executor.
+     *
+     * @param artifacts
+     *      {Key: artifact name, Value: artifact location} of the tool's prerequisites
+     * @return
+     *      Completes with a mapping (Key: diagnostic name, Value: diagnostic object) of the parsed diagnostics
+     */
+    default CompletableFuture<Map<String, Diagnostic>> runAsync(Path projectLocation, Map<String, Path> artifacts,
+                                                                Executor executor) {
+        return CompletableFuture.supplyAsync(() -> analyze(projectLocation, artifacts), executor)
+                .thenApplyAsync(this::parseAnalysis, executor);
+    }
+
+    /**
+     * Run the tool on the changed files of a project only. Tools declaring file-local analysis (see
+     * {@link #isFileLocal()}) should override this; by default the whole project is analyzed.
+     *
+     * @param projectLocation
+     *      Root directory of the project
+     * @param changedFiles
+     *      Files of the project created, modified or deleted since the last analysis. Deleted files no longer exist.
+     * @return
+     *      The location of the analysis results, holding findings of the changed files. Parsed by
+     *      {@link #parseAnalysis(Path)} and merged into the findings of the last analysis by a {@link FindingStore}.
+     */
+    default Path analyze(Path projectLocation, Set<Path> changedFiles) {
+        return analyze(projectLocation);
+    }
+
+    /**
+     * Whether the tool's analysis is file-local: every finding has the path of the file it was found in, and the
+     * findings of a file depend on the contents of that file only. The findings of a file-local tool for unchanged
+     * files can then be kept from an earlier analysis, and only changed files need to be analyzed again with
+     * {@link #analyze(Path, Set)}.
+     *
+     * @return
+     *      false by default
+     */
+    default boolean isFileLocal() {
+        return false;
+    }
+
     /**
      * Parse the analysis file generated by the tool and transform the data
      * into Diagnostic objects with associated Findings (if any exist).
@@ -57,5 +177,17 @@ public interface ITool {
      *      The name of the tool
      */
     String getName();
-}
 
+    /**
+     * Whether a change to a file of the project can change this tool's results. Used in watch mode to re-run only
+     * the tools affected by a change (e.g. a C# analyzer is not affected by a changed README).
+     *
+     * @param changedFile
+     *      A file of the project that was created, modified or deleted
+     * @return
+     *      true, unless the tool knows its results do not depend on the file
+     */
+    default boolean isAffectedBy(Path changedFile) {
+        return true;
+    }
+}
@@ -0,0 +1,55 @@
+package pique.analysis;
+
+/**
+ * Host resources one analysis of a tool needs at its peak: memory and busy CPUs. Used by a {@link ToolPool} to admit
+ * tool runs only while they fit on the host.
+ */
+public final class ResourceFootprint {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    // Fields
+    private final long memoryBytes;
+    private final double cpus;
+
+
+    // Constructor
+
+    /**
+     * @param memoryBytes
+     *      Peak resident memory of the analysis, in bytes
+     * @param cpus
+     *      Average number of CPUs the analysis keeps busy, e.g. 0.5 or 4
+     */
+    public ResourceFootprint(long memoryBytes, double cpus) {
+        if (memoryBytes < 0 || cpus < 0) {
+            throw new IllegalArgumentException("A resource footprint can not be negative: " + memoryBytes +
+                    " bytes, " + cpus + " CPUs.");
+        }
+        this.memoryBytes = memoryBytes;
+        this.cpus = cpus;
+    }
+
+    public static ResourceFootprint ofMegabytes(long memoryMegabytes, double cpus) {
+        return new ResourceFootprint(memoryMegabytes * MEGABYTE, cpus);
+    }
+
+
+    // Getters
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    public double getCpus() {
+        return cpus;
+    }
+
+
+    // Methods
+
+    @Override
+    public String toString() {
+        return (memoryBytes / MEGABYTE) + " MB, " + String.format("%.2f", cpus) + " CPUs";
+    }
+}
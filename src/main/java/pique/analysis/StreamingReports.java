@@ -0,0 +1,59 @@
+package pique.analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Report files written by the temp-file fallback of {@link IStreamingTool}. Only these are deleted once parsed, so
+ * parsing a report file the tool did not write (e.g. a saved report) leaves it in place.
+ */
+final class StreamingReports {
+
+    private static final Set<Path> written = ConcurrentHashMap.newKeySet();
+
+    private StreamingReports() { }
+
+
+    // Methods
+
+    /**
+     * Run a tool's command with its report redirected to a new temporary file.
+     *
+     * @return the report file
+     */
+    static Path write(IStreamingTool tool, List<String> command, Path projectLocation) {
+        Path report;
+        try {
+            report = Files.createTempFile(tool.getName().replaceAll("\\W", "_"), ".report");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create the report file of " + tool.getName(), e);
+        }
+        written.add(report);
+        try {
+            new ToolProcess(tool.getName(), command, projectLocation, ProcessBuilder.Redirect.to(report.toFile()))
+                    .waitFor();
+        } catch (RuntimeException e) {
+            release(report);
+            throw e;
+        }
+        return report;
+    }
+
+    /**
+     * Delete a report file if it was written by {@link #write}. A report that can not be deleted is logged and left
+     * in the temporary directory.
+     */
+    static void release(Path report) {
+        if (!written.remove(report)) return;
+        try {
+            Files.deleteIfExists(report);
+        } catch (IOException e) {
+            System.out.println("* Unable to delete report file " + report + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package pique.analysis;
+
+import java.io.Closeable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs tool analyses within the memory and CPU limits of the host. Each run is admitted only while the footprints
+ * (see {@link ResourceFootprint}) of the running analyses plus its own fit in the limits, so a host can run many small
+ * analyses side by side without an 8 GB analyzer swapping it to death. Runs wait in FIFO order: a large run at the
+ * head of the queue is not starved by smaller ones behind it. A run larger than the limits is admitted alone.
+ *
+ * A tool's footprint is the one it declares ({@link ITool#getResourceFootprint()}), else the footprint learned from
+ * its previous runs, else {@link #DEFAULT_FOOTPRINT}. Learning samples the host's memory and CPU usage while runs are
+ * in progress: usage above the level of the idle host is shared among the running analyses in proportion to their
+ * estimated footprints, and each finished run updates its tool's footprint as an exponentially weighted moving
+ * average of the observed peak memory and mean CPU usage. Host-wide usage is noisy (page cache, CPU load not yet
+ * measured), so samples without any usage above the idle host are not learned from, and learned footprints never go
+ * below a minimum footprint: a tool can not end up with an empty footprint that admission control ignores.
+ */
+public class ToolPool implements Closeable {
+
+    /**
+     * Footprint of tools which do not declare one, until their first run is observed
+     */
+    public static final ResourceFootprint DEFAULT_FOOTPRINT = ResourceFootprint.ofMegabytes(512, 1);
+
+    // Weight of the latest run in learned footprints
+    private static final double SMOOTHING = 0.3;
+    private static final long SAMPLE_MILLIS = 500;
+
+    /**
+     * Memory and CPU usage of the whole host
+     */
+    interface HostUsage {
+        long getUsedMemory();
+        double getUsedCpus();
+    }
+
+    // Fields
+    private final long memoryLimit;
+    private final double cpuLimit;
+    private final HostUsage hostUsage;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sampler;
+    private final Map<String, ResourceFootprint> learnedFootprints = new ConcurrentHashMap<>();
+    private volatile ResourceFootprint minimumFootprint = ResourceFootprint.ofMegabytes(64, 0.25);
+
+    // Guarded by this
+    private final Deque<Run<?>> queue = new ArrayDeque<>();
+    private final List<Run<?>> running = new ArrayList<>();
+    private long reservedMemory;
+    private double reservedCpus;
+    private long idleMemory;
+    private double idleCpus;
+    private long completedRuns;
+    private long totalWaitMillis;
+    private boolean closed;
+
+
+    // Constructors
+
+    /**
+     * Pool limited to 80% of the host's physical memory and all its CPUs.
+     */
+    public ToolPool() {
+        this((long) (getPhysicalMemory() * 0.8), Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param memoryLimit
+     *      Total footprint memory of the analyses running at once, in bytes
+     * @param cpuLimit
+     *      Total footprint CPUs of the analyses running at once
+     */
+    public ToolPool(long memoryLimit, double cpuLimit) {
+        this(memoryLimit, cpuLimit, systemUsage(), SAMPLE_MILLIS);
+    }
+
+    /**
+     * @param sampleMillis
+     *      Interval between samples of the host usage, or 0 to sample only on {@link #sample()}
+     */
+    ToolPool(long memoryLimit, double cpuLimit, HostUsage hostUsage, long sampleMillis) {
+        if (memoryLimit <= 0 || cpuLimit <= 0) {
+            throw new IllegalArgumentException("Tool pool limits must be positive.");
+        }
+        this.memoryLimit = memoryLimit;
+        this.cpuLimit = cpuLimit;
+        this.hostUsage = hostUsage;
+
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "tool-pool-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (sampleMillis > 0) {
+            sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "tool-pool-sampler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sampler.scheduleAtFixedRate(this::sample, sampleMillis, sampleMillis, TimeUnit.MILLISECONDS);
+        } else {
+            sampler = null;
+        }
+    }
+
+
+    // Getters and setters
+
+    /**
+     * @return the footprint the next run of the tool is admitted with
+     */
+    public ResourceFootprint getFootprint(ITool tool) {
+        ResourceFootprint declared = tool.getResourceFootprint();
+        if (declared != null) return declared;
+        return learnedFootprints.getOrDefault(tool.getName(), DEFAULT_FOOTPRINT);
+    }
+
+    /**
+     * @return the footprint learned from the runs of a tool, or null if none was observed
+     */
+    public ResourceFootprint getLearnedFootprint(String toolName) {
+        return learnedFootprints.get(toolName);
+    }
+
+    public ResourceFootprint getMinimumFootprint() {
+        return minimumFootprint;
+    }
+
+    /**
+     * @param minimumFootprint
+     *      Lower bound of learned footprints (default: 64 MB, 0.25 CPUs)
+     */
+    public void setMinimumFootprint(ResourceFootprint minimumFootprint) {
+        this.minimumFootprint = minimumFootprint;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public double getCpuLimit() {
+        return cpuLimit;
+    }
+
+    /**
+     * @return number of runs waiting for admission
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    public synchronized long getCompletedCount() {
+        return completedRuns;
+    }
+
+    /**
+     * @return footprint memory of the running analyses, as a fraction of the memory limit (above 1 for a run larger
+     *      than the limits)
+     */
+    public synchronized double getMemoryUtilisation() {
+        return (double) reservedMemory / memoryLimit;
+    }
+
+    /**
+     * @return footprint CPUs of the running analyses, as a fraction of the CPU limit
+     */
+    public synchronized double getCpuUtilisation() {
+        return reservedCpus / cpuLimit;
+    }
+
+    /**
+     * @return mean time the admitted runs waited in the queue, in milliseconds
+     */
+    public synchronized double getMeanQueueWaitMillis() {
+        long admitted = completedRuns + running.size();
+        return admitted == 0 ? 0 : (double) totalWaitMillis / admitted;
+    }
+
+
+    // Methods
+
+    /**
+     * Queue an analysis of a tool, to run as soon as its footprint fits.
+     *
+     * @param tool
+     *      The tool running the analysis, for its footprint
+     * @param analysis
+     *      The analysis, run on a thread of the pool
+     * @return
+     *      Completes with the result of the analysis, or exceptionally with its failure. Runs still queued when the
+     *      pool is closed fail with a {@link RejectedExecutionException}.
+     * @throws IllegalStateException
+     *      if the pool is closed
+     */
+    public <T> CompletableFuture<T> submit(ITool tool, Supplier<T> analysis) {
+        Run<T> run = new Run<>(tool.getName(), getFootprint(tool), analysis);
+        synchronized (this) {
+            if (closed) throw new IllegalStateException("Tool pool is closed.");
+            if (running.isEmpty()) {
+                idleMemory = hostUsage.getUsedMemory();
+                idleCpus = hostUsage.getUsedCpus();
+            }
+            queue.add(run);
+            admit();
+        }
+        return run.result;
+    }
+
+    /**
+     * Take a sample of the host usage for the running analyses' footprints.
+     */
+    synchronized void sample() {
+        if (running.isEmpty()) return;
+        long memory = Math.max(0, hostUsage.getUsedMemory() - idleMemory);
+        double cpus = Math.max(0, hostUsage.getUsedCpus() - idleCpus);
+
+        double totalMemory = 0;
+        double totalCpus = 0;
+        for (Run<?> run : running) {
+            totalMemory += run.footprint.getMemoryBytes();
+            totalCpus += run.footprint.getCpus();
+        }
+        for (Run<?> run : running) {
+            double memoryShare = totalMemory > 0 ? run.footprint.getMemoryBytes() / totalMemory : 1.0 / running.size();
+            double cpuShare = totalCpus > 0 ? run.footprint.getCpus() / totalCpus : 1.0 / running.size();
+            if (memory > 0) {
+                run.peakMemory = Math.max(run.peakMemory, (long) (memory * memoryShare));
+                run.memorySamples++;
+            }
+            if (cpus > 0) {
+                run.cpuSum += cpus * cpuShare;
+                run.cpuSamples++;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        if (sampler != null) sampler.shutdownNow();
+        executor.shutdown();
+    }
+
+    /**
+     * Start queued runs, in order, while they fit.
+     */
+    private void admit() {
+        while (!queue.isEmpty()) {
+            Run<?> next = queue.peek();
+            if (!running.isEmpty() && !fits(next.footprint)) return;
+            queue.poll();
+            start(next);
+        }
+    }
+
+    private boolean fits(ResourceFootprint footprint) {
+        return reservedMemory + footprint.getMemoryBytes() <= memoryLimit
+                && reservedCpus + footprint.getCpus() <= cpuLimit + 1e-9;
+    }
+
+    private <T> void start(Run<T> run) {
+        running.add(run);
+        reservedMemory += run.footprint.getMemoryBytes();
+        reservedCpus += run.footprint.getCpus();
+        long waitMillis = System.currentTimeMillis() - run.queuedAt;
+        totalWaitMillis += waitMillis;
+
+        try {
+            executor.execute(() -> {
+                T value = null;
+                Throwable failure = null;
+                try {
+                    value = run.analysis.get();
+                } catch (Throwable e) {
+                    failure = e;
+                }
+                finish(run);
+                if (failure != null) run.result.completeExceptionally(failure);
+                else run.result.complete(value);
+            });
+        } catch (RejectedExecutionException e) {
+            // Pool closed while the run was queued; it never started
+            running.remove(run);
+            reservedMemory -= run.footprint.getMemoryBytes();
+            reservedCpus -= run.footprint.getCpus();
+            totalWaitMillis -= waitMillis;
+            run.result.completeExceptionally(e);
+        }
+    }
+
+    private synchronized void finish(Run<?> run) {
+        running.remove(run);
+        reservedMemory -= run.footprint.getMemoryBytes();
+        reservedCpus -= run.footprint.getCpus();
+        completedRuns++;
+
+        if (run.memorySamples > 0 || run.cpuSamples > 0) learn(run);
+        admit();
+    }
+
+    /**
+     * Update the tool's learned footprint with the usage observed during a run. A resource without samples keeps its
+     * learned (or default) value.
+     */
+    private void learn(Run<?> run) {
+        ResourceFootprint learned = learnedFootprints.get(run.toolName);
+        ResourceFootprint previous = learned != null ? learned : DEFAULT_FOOTPRINT;
+        double memory = previous.getMemoryBytes();
+        double cpus = previous.getCpus();
+        if (run.memorySamples > 0) {
+            memory = learned == null ? run.peakMemory : (1 - SMOOTHING) * memory + SMOOTHING * run.peakMemory;
+        }
+        if (run.cpuSamples > 0) {
+            double meanCpus = run.cpuSum / run.cpuSamples;
+            cpus = learned == null ? meanCpus : (1 - SMOOTHING) * cpus + SMOOTHING * meanCpus;
+        }
+
+        ResourceFootprint minimum = minimumFootprint;
+        learnedFootprints.put(run.toolName, new ResourceFootprint(
+                Math.max((long) memory, minimum.getMemoryBytes()), Math.max(cpus, minimum.getCpus())));
+    }
+
+    // The com.sun.management memory and CPU load getters are deprecated since Java 14, and Java 8 has no replacements
+    @SuppressWarnings("deprecation")
+    private static long getPhysicalMemory() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+        }
+        return Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Host usage from the platform's operating system bean; without its extended attributes nothing is observed, and
+     * tools keep their declared or default footprints.
+     */
+    // The com.sun.management memory and CPU load getters are deprecated since Java 14, and Java 8 has no replacements
+    @SuppressWarnings("deprecation")
+    private static HostUsage systemUsage() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        int processors = Runtime.getRuntime().availableProcessors();
+        return new HostUsage() {
+            @Override
+            public long getUsedMemory() {
+                if (!(os instanceof com.sun.management.OperatingSystemMXBean)) return 0;
+                com.sun.management.OperatingSystemMXBean system = (com.sun.management.OperatingSystemMXBean) os;
+                return system.getTotalPhysicalMemorySize() - system.getFreePhysicalMemorySize();
+            }
+
+            @Override
+            public double getUsedCpus() {
+                if (!(os instanceof com.sun.management.OperatingSystemMXBean)) return 0;
+                return Math.max(0, ((com.sun.management.OperatingSystemMXBean) os).getSystemCpuLoad()) * processors;
+            }
+        };
+    }
+
+    /**
+     * A queued or running analysis, with its observed usage
+     */
+    private static class Run<T> {
+        private final String toolName;
+        private final ResourceFootprint footprint;
+        private final Supplier<T> analysis;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long queuedAt = System.currentTimeMillis();
+        private long peakMemory;
+        private int memorySamples;
+        private double cpuSum;
+        private int cpuSamples;
+
+        private Run(String toolName, ResourceFootprint footprint, Supplier<T> analysis) {
+            this.toolName = toolName;
+            this.footprint = footprint;
+            this.analysis = analysis;
+        }
+    }
+}
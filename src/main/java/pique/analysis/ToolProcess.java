@@ -0,0 +1,116 @@
+package pique.analysis;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * An external tool process whose standard error is drained in the background, keeping its last few kilobytes for
+ * error messages, so the process never blocks on a full error pipe while its standard output is consumed.
+ */
+public class ToolProcess {
+
+    private static final int ERROR_TAIL_BYTES = 8192;
+
+    // Fields
+    private final String toolName;
+    private final Process process;
+    private final Thread errorDrain;
+    private final byte[] errorTail = new byte[ERROR_TAIL_BYTES];
+    private long errorBytes;
+
+
+    // Constructor
+
+    /**
+     * Start a tool process.
+     *
+     * @param toolName
+     *      The tool name, for messages
+     * @param command
+     *      The program and its arguments
+     * @param workingDirectory
+     *      Working directory of the process
+     * @param output
+     *      Where standard output goes: {@link ProcessBuilder.Redirect#PIPE} to read it from {@link #getOutput()}, or
+     *      a file
+     */
+    public ToolProcess(String toolName, List<String> command, Path workingDirectory, ProcessBuilder.Redirect output) {
+        this.toolName = toolName;
+        try {
+            this.process = new ProcessBuilder(command).directory(workingDirectory.toFile()).redirectOutput(output)
+                    .start();
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to start " + toolName + ": " + String.join(" ", command), e);
+        }
+        errorDrain = new Thread(this::drainErrors, "tool-stderr-" + toolName);
+        errorDrain.setDaemon(true);
+        errorDrain.start();
+    }
+
+
+    // Getters
+
+    /**
+     * @return the process's standard output, if it is piped
+     */
+    public InputStream getOutput() {
+        return process.getInputStream();
+    }
+
+
+    // Methods
+
+    /**
+     * Wait for the process to exit.
+     *
+     * @throws RuntimeException
+     *      If the process exits with an error, with the end of its standard error in the message
+     */
+    public void waitFor() {
+        try {
+            int exitCode = process.waitFor();
+            errorDrain.join();
+            if (exitCode != 0) {
+                throw new RuntimeException(toolName + " failed (exit code " + exitCode + "): " + getErrorTail());
+            }
+        } catch (InterruptedException e) {
+            destroy();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for " + toolName, e);
+        }
+    }
+
+    /**
+     * Kill the process, e.g. when its output can not be parsed.
+     */
+    public void destroy() {
+        process.destroyForcibly();
+    }
+
+    private void drainErrors() {
+        byte[] buffer = new byte[4096];
+        try (InputStream errors = process.getErrorStream()) {
+            int read;
+            while ((read = errors.read(buffer)) != -1) {
+                synchronized (errorTail) {
+                    for (int i = 0; i < read; i++) errorTail[(int) (errorBytes++ % ERROR_TAIL_BYTES)] = buffer[i];
+                }
+            }
+        } catch (IOException e) {
+            // Process gone
+        }
+    }
+
+    private String getErrorTail() {
+        synchronized (errorTail) {
+            int length = (int) Math.min(errorBytes, ERROR_TAIL_BYTES);
+            byte[] tail = new byte[length];
+            for (int i = 0; i < length; i++) tail[i] = errorTail[(int) ((errorBytes - length + i) % ERROR_TAIL_BYTES)];
+            return new String(tail, StandardCharsets.UTF_8).trim();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package pique.analysis;
+
+import pique.model.Diagnostic;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the tools of a project as a dependency graph: the prerequisite steps the tools declare (see
+ * {@link ITool#getPrerequisites()} and {@link IPrerequisite}) run first, each once per project however many tools need
+ * its artifact, and every tool starts as soon as its own prerequisites are done. Tools without prerequisites start
+ * right away (see {@link ITool#runAsync(Path, Executor)}), the others once their artifacts are produced (see
+ * {@link ITool#runAsync(Path, Map, Executor)}). Independent steps and tools run concurrently on the executor.
+ *
+ * The graph of all the tools is checked before any step or tool of a project's run starts: an artifact no registered
+ * step produces, or steps needing each other's artifacts, fail the run with an {@link IllegalArgumentException}.
+ */
+public class ToolScheduler {
+
+    // Fields
+    private final Executor executor;
+    private final Map<String, IPrerequisite> prerequisites = new HashMap<>();
+    private ToolPool toolPool;
+
+
+    // Constructors
+
+    /**
+     * @param executor
+     *      Executor running the prerequisite steps and tools
+     */
+    public ToolScheduler(Executor executor) {
+        this.executor = executor;
+    }
+
+    public ToolScheduler(Executor executor, Collection<IPrerequisite> prerequisites) {
+        this(executor);
+        prerequisites.forEach(this::addPrerequisite);
+    }
+
+
+    // Getters and setters
+
+    /**
+     * @return names of the artifacts the registered prerequisite steps produce
+     */
+    public Set<String> getArtifactNames() {
+        return Collections.unmodifiableSet(prerequisites.keySet());
+    }
+
+    public void addPrerequisite(IPrerequisite prerequisite) {
+        if (prerequisites.putIfAbsent(prerequisite.getName(), prerequisite) != null) {
+            throw new IllegalArgumentException("A prerequisite step producing '" + prerequisite.getName() +
+                    "' is already registered.");
+        }
+    }
+
+    /**
+     * @param toolPool
+     *      Pool admitting the tool runs by their resource footprints, or null (default) to run each tool as soon as
+     *      its prerequisites are done. Prerequisite steps always run on the executor.
+     */
+    public void setToolPool(ToolPool toolPool) {
+        this.toolPool = toolPool;
+    }
+
+
+    // Methods
+
+    /**
+     * Run the tools, and the prerequisite steps they need, on a project and wait for all of them.
+     *
+     * @param projectLocation
+     *      Root directory of the project
+     * @return
+     *      {Key: diagnostic name, Value: diagnostic with findings} of all tools, merged in the tools' order
+     * @throws RuntimeException
+     *      The failure of the first failing step or tool
+     */
+    public Map<String, Diagnostic> run(Path projectLocation, Set<ITool> tools) {
+        Map<String, Diagnostic> allDiagnostics = new HashMap<>();
+        runEach(projectLocation, tools).values().forEach(allDiagnostics::putAll);
+        return allDiagnostics;
+    }
+
+    /**
+     * Like {@link #run(Path, Set)}, keeping the diagnostics of each tool apart.
+     *
+     * @return
+     *      {Key: tool, Value: {Key: diagnostic name, Value: diagnostic with findings}}, in the tools' order
+     */
+    public Map<ITool, Map<String, Diagnostic>> runEach(Path projectLocation, Set<ITool> tools) {
+        for (ITool tool : tools) {
+            validate(tool.getPrerequisites(), new ArrayDeque<>(), "tool " + tool.getName());
+        }
+
+        ProjectRun projectRun = new ProjectRun(projectLocation);
+        Map<ITool, CompletableFuture<Map<String, Diagnostic>>> runs = new LinkedHashMap<>();
+        tools.forEach(tool -> runs.put(tool, projectRun.schedule(tool)));
+
+        Map<ITool, Map<String, Diagnostic>> diagnostics = new LinkedHashMap<>();
+        try {
+            CompletableFuture.allOf(runs.values().toArray(new CompletableFuture<?>[0])).join();
+            runs.forEach((tool, run) -> diagnostics.put(tool, run.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+        return diagnostics;
+    }
+
+    /**
+     * Check that registered steps produce the artifacts, and the artifacts they need in turn, without cycles.
+     *
+     * @param validating
+     *      The artifacts whose prerequisites are being checked, innermost first
+     */
+    private void validate(Set<String> names, Deque<String> validating, String requester) {
+        for (String name : names) {
+            IPrerequisite prerequisite = prerequisites.get(name);
+            if (prerequisite == null) {
+                throw new IllegalArgumentException("No prerequisite step produces '" + name + "', needed by " +
+                        requester + ".");
+            }
+            if (validating.contains(name)) {
+                throw new IllegalArgumentException("Prerequisite steps need each other's artifacts: " + name +
+                        " <- " + String.join(" <- ", validating) + ".");
+            }
+            validating.push(name);
+            validate(prerequisite.getPrerequisites(), validating, "prerequisite " + name);
+            validating.pop();
+        }
+    }
+
+    /**
+     * The graph of one project: each artifact is scheduled once. Scheduling happens on the calling thread only, after
+     * the graph was validated.
+     */
+    private class ProjectRun {
+        private final Path projectLocation;
+        private final Map<String, CompletableFuture<Path>> artifacts = new HashMap<>();
+
+        private ProjectRun(Path projectLocation) {
+            this.projectLocation = projectLocation;
+        }
+
+        private CompletableFuture<Map<String, Diagnostic>> schedule(ITool tool) {
+            if (tool.getPrerequisites().isEmpty()) {
+                if (toolPool == null) return tool.runAsync(projectLocation, executor);
+                return toolPool.submit(tool, () -> tool.runAsync(projectLocation, Runnable::run).join());
+            }
+
+            CompletableFuture<Map<String, Path>> inputs = artifacts(tool.getPrerequisites());
+            if (toolPool != null) {
+                return inputs.thenCompose(produced -> toolPool.submit(tool,
+                        () -> tool.runAsync(projectLocation, produced, Runnable::run).join()));
+            }
+            return inputs.thenCompose(produced -> tool.runAsync(projectLocation, produced, executor));
+        }
+
+        /**
+         * @return completes with {Key: artifact name, Value: artifact location} once all the artifacts are produced
+         */
+        private CompletableFuture<Map<String, Path>> artifacts(Set<String> names) {
+            Map<String, CompletableFuture<Path>> inputs = new TreeMap<>();
+            names.forEach(name -> inputs.put(name, artifact(name)));
+            return CompletableFuture.allOf(inputs.values().toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+                Map<String, Path> produced = new HashMap<>();
+                inputs.forEach((name, artifact) -> produced.put(name, artifact.join()));
+                return produced;
+            });
+        }
+
+        private CompletableFuture<Path> artifact(String name) {
+            CompletableFuture<Path> scheduled = artifacts.get(name);
+            if (scheduled != null) return scheduled;
+
+            IPrerequisite prerequisite = prerequisites.get(name);
+            CompletableFuture<Path> artifact = artifacts(prerequisite.getPrerequisites())
+                    .thenApplyAsync(inputs -> {
+                        long start = System.currentTimeMillis();
+                        Path produced = prerequisite.produce(projectLocation, inputs);
+                        System.out.println("* Produced " + name + " of " + projectLocation.getFileName() + " in " +
+                                (System.currentTimeMillis() - start) + " ms");
+                        return produced;
+                    }, executor);
+
+            artifacts.put(name, artifact);
+            return artifact;
+        }
+    }
+}
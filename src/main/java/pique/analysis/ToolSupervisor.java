@@ -0,0 +1,248 @@
+package pique.analysis;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs {@link ITool#analyze(Path)} calls under supervision so a single hanging or straggling tool run can not stall a
+ * whole benchmark.
+ *
+ * The supervisor keeps a window of recent successful run durations per tool. Once a tool has enough history, a run
+ * taking longer than (latency percentile * timeout multiplier) is abandoned with a {@link ToolTimeoutException}.
+ * Optionally, when a run is past (median latency * speculation factor), a speculative duplicate of the run is started
+ * and whichever copy finishes first is used. Speculation is off by default: it is only safe for tools whose runs on the
+ * same project do not overwrite each other's output files.
+ *
+ * Abandoned runs are cancelled by interrupting their thread; a tool that ignores interrupts (e.g. waiting on an
+ * external process) keeps its thread until it returns on its own.
+ */
+public class ToolSupervisor {
+
+    /**
+     * Thrown when a supervised tool run exceeds its timeout
+     */
+    public static class ToolTimeoutException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ToolTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    // Fields
+    private int historySize = 100;
+    private int minimumSamples = 5;
+    private double timeoutPercentile = 0.95;
+    private double timeoutMultiplier = 10.0;
+    private long minimumTimeoutMillis = 60000;
+    private double speculationFactor = 0.0;
+
+    private final Map<String, LatencyHistory> latencies = new ConcurrentHashMap<>();
+    private final AtomicInteger speculativeRuns = new AtomicInteger();
+    private final ExecutorService executor;
+
+
+    // Constructors
+
+    public ToolSupervisor() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "tool-supervisor-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param timeoutPercentile
+     *      Percentile of a tool's historical latency the timeout is based on, e.g. 0.95
+     * @param timeoutMultiplier
+     *      The timeout is this multiple of the latency percentile
+     * @param minimumTimeoutMillis
+     *      Lower bound of the timeout, so fast tools are not cut off by ordinary jitter
+     * @param speculationFactor
+     *      A speculative duplicate run starts once a run exceeds this multiple of the tool's median latency.
+     *      0 disables speculation.
+     */
+    public ToolSupervisor(double timeoutPercentile, double timeoutMultiplier, long minimumTimeoutMillis,
+                          double speculationFactor) {
+        this();
+        if (timeoutPercentile <= 0.0 || timeoutPercentile > 1.0) {
+            throw new IllegalArgumentException("Timeout percentile must be in (0, 1].");
+        }
+        this.timeoutPercentile = timeoutPercentile;
+        this.timeoutMultiplier = timeoutMultiplier;
+        this.minimumTimeoutMillis = minimumTimeoutMillis;
+        this.speculationFactor = speculationFactor;
+    }
+
+
+    // Getters and setters
+
+    public int getMinimumSamples() {
+        return minimumSamples;
+    }
+
+    /**
+     * @param minimumSamples
+     *      Number of successful runs of a tool needed before its runs are timed out or speculated on
+     */
+    public void setMinimumSamples(int minimumSamples) {
+        this.minimumSamples = minimumSamples;
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    public void setHistorySize(int historySize) {
+        this.historySize = historySize;
+    }
+
+    public double getSpeculationFactor() {
+        return speculationFactor;
+    }
+
+    public void setSpeculationFactor(double speculationFactor) {
+        this.speculationFactor = speculationFactor;
+    }
+
+    /**
+     * @return Number of speculative duplicate runs started so far
+     */
+    public int getSpeculativeRuns() {
+        return speculativeRuns.get();
+    }
+
+
+    // Methods
+
+    /**
+     * Add a run duration to a tool's latency history, e.g. to seed the supervisor with durations from a previous run.
+     */
+    public void recordLatency(String toolName, long millis) {
+        latencies.computeIfAbsent(toolName, k -> new LatencyHistory(historySize)).record(millis);
+    }
+
+    /**
+     * @return The current timeout of the tool's runs in milliseconds, or Long.MAX_VALUE if the tool does not have
+     *      enough history yet
+     */
+    public long getTimeoutMillis(String toolName) {
+        LatencyHistory history = latencies.get(toolName);
+        if (history == null || history.size() < minimumSamples) return Long.MAX_VALUE;
+        return Math.max(minimumTimeoutMillis, (long)(history.percentile(timeoutPercentile) * timeoutMultiplier));
+    }
+
+    /**
+     * @return Time after which a speculative duplicate of the tool's run is started, or Long.MAX_VALUE if speculation
+     *      is disabled or the tool does not have enough history yet
+     */
+    public long getSpeculationMillis(String toolName) {
+        LatencyHistory history = latencies.get(toolName);
+        if (speculationFactor <= 0.0 || history == null || history.size() < minimumSamples) return Long.MAX_VALUE;
+        return (long)(history.percentile(0.5) * speculationFactor);
+    }
+
+    /**
+     * Run a tool's analysis under supervision.
+     *
+     * @return
+     *      The location of the analysis results of the first run to finish
+     * @throws ToolTimeoutException
+     *      If no run finished within the tool's timeout
+     */
+    public Path analyze(ITool tool, Path projectLocation) {
+        long timeout = getTimeoutMillis(tool.getName());
+        long speculateAfter = getSpeculationMillis(tool.getName());
+
+        CompletionService<Path> completion = new ExecutorCompletionService<>(executor);
+        Map<Future<Path>, Long> runStarts = new HashMap<>();
+        long start = System.nanoTime();
+        runStarts.put(completion.submit(() -> tool.analyze(projectLocation)), start);
+        int pending = 1;
+
+        try {
+            while (true) {
+                boolean canSpeculate = runStarts.size() == 1 && speculateAfter < timeout;
+                long deadline = canSpeculate ? speculateAfter : timeout;
+                Future<Path> finished = deadline == Long.MAX_VALUE
+                        ? completion.take()
+                        : completion.poll(deadline - millisSince(start), TimeUnit.MILLISECONDS);
+
+                if (finished == null) {
+                    if (canSpeculate) {
+                        System.out.println("\t" + tool.getName() + " on " + projectLocation.getFileName() +
+                                " is past " + speculateAfter + " ms, starting a speculative run");
+                        speculativeRuns.incrementAndGet();
+                        runStarts.put(completion.submit(() -> tool.analyze(projectLocation)), System.nanoTime());
+                        pending++;
+                        continue;
+                    }
+                    throw new ToolTimeoutException(tool.getName() + " did not finish analyzing " + projectLocation +
+                            " within " + timeout + " ms");
+                }
+
+                pending--;
+                try {
+                    Path result = finished.get();
+                    recordLatency(tool.getName(), millisSince(runStarts.get(finished)));
+                    return result;
+                } catch (ExecutionException e) {
+                    // Wait on the remaining copy, if any
+                    if (pending == 0) throw rethrow(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running " + tool.getName() + " on " + projectLocation, e);
+        } finally {
+            runStarts.keySet().forEach(run -> run.cancel(true));
+        }
+    }
+
+    private static long millisSince(long nanoTime) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - nanoTime);
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException) return (RuntimeException)cause;
+        if (cause instanceof Error) throw (Error)cause;
+        return new RuntimeException(cause);
+    }
+
+    /**
+     * Sliding window of a tool's most recent successful run durations
+     */
+    private static class LatencyHistory {
+        private final int capacity;
+        private final Deque<Long> window = new ArrayDeque<>();
+
+        private LatencyHistory(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private synchronized void record(long millis) {
+            if (window.size() == capacity) window.removeFirst();
+            window.addLast(millis);
+        }
+
+        private synchronized int size() {
+            return window.size();
+        }
+
+        /**
+         * Nearest-rank percentile of the window
+         */
+        private synchronized long percentile(double p) {
+            long[] sorted = new long[window.size()];
+            int i = 0;
+            for (long millis : window) sorted[i++] = millis;
+            Arrays.sort(sorted);
+            int rank = (int)Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+        }
+    }
+}
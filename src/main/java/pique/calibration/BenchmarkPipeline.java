@@ -0,0 +1,463 @@
+package pique.calibration;
+
+import pique.analysis.ITool;
+import pique.analysis.ToolSupervisor;
+import pique.evaluation.BenchmarkMeasureEvaluator;
+import pique.evaluation.PluginRegistry;
+import pique.evaluation.Project;
+import pique.model.Diagnostic;
+import pique.model.QualityModel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Staged benchmark repository analysis:
+ *     (1) discovery:  find the benchmark project roots in the repository
+ *     (2) analyze:    run the external static analysis tools on a project
+ *     (3) parse:      parse the tool result files into diagnostics
+ *     (4) evaluate:   apply the diagnostics to a clone of the quality model and evaluate its measures
+ *
+ * Each stage runs on its own pool of worker threads and hands projects to the next stage through a bounded queue.
+ * A full queue blocks the stage feeding it (backpressure), so process-bound tool runs and CPU-bound parsing and
+ * evaluation of different projects overlap without buffering an unbounded number of tool results in memory. The tool
+ * instances are shared by all projects, so the analyze and parse stages only use several workers when every tool is
+ * thread-safe (see {@link ITool#isThreadSafe()}).
+ *
+ * When given a {@link ProjectCostEstimator}, discovery collects every project first and hands them to the analysis
+ * stage largest first. Analysis workers pull from that one shared queue as soon as they are idle, which is greedy
+ * longest-processing-time-first scheduling: the largest projects start immediately instead of landing last on an
+ * otherwise finished pool.
+ *
+ * Tool runs go through a {@link ToolSupervisor}. A project on which a tool run times out is excluded from the rest of
+ * the pipeline (and so from the derived thresholds) and listed in the run's {@link BenchmarkReport}.
+ */
+public class BenchmarkPipeline {
+
+    // Work item handed from stage to stage
+    private static class BenchmarkProject {
+        private final Path root;
+        private final Map<ITool, Path> analysisOutputs = new LinkedHashMap<>();
+        private final Map<String, Diagnostic> diagnostics = new HashMap<>();
+        private double cost;
+        private boolean excluded;
+
+        private BenchmarkProject(Path root) {
+            this.root = root;
+        }
+    }
+
+    // Marks the end of a stage's input
+    private static final BenchmarkProject END = new BenchmarkProject(null);
+
+    // Fields
+    private int analysisParallelism;
+    private int parseParallelism;
+    private int evaluationParallelism;
+    private int queueCapacity;
+    private ToolSupervisor toolSupervisor = new ToolSupervisor();
+
+
+    // Constructors
+
+    /**
+     * Analyzes and parses one project at a time, as tools need not be thread-safe, and evaluates projects on all
+     * processors.
+     */
+    public BenchmarkPipeline() {
+        this(1, 1, Runtime.getRuntime().availableProcessors(), 16);
+    }
+
+    /**
+     * @param analysisParallelism
+     *      Number of projects the static analysis tools may run on concurrently. Only used when all tools are
+     *      thread-safe (see {@link ITool#isThreadSafe()}), otherwise projects are analyzed one at a time.
+     * @param parseParallelism
+     *      Number of threads parsing tool results. Likewise only used when all tools are thread-safe.
+     * @param evaluationParallelism
+     *      Number of threads evaluating project measures
+     * @param queueCapacity
+     *      Number of projects that may wait between two stages before the earlier stage blocks
+     */
+    public BenchmarkPipeline(int analysisParallelism, int parseParallelism, int evaluationParallelism,
+                             int queueCapacity) {
+        if (analysisParallelism < 1 || parseParallelism < 1 || evaluationParallelism < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Benchmark pipeline parallelism and queue capacity must be positive.");
+        }
+        this.analysisParallelism = analysisParallelism;
+        this.parseParallelism = parseParallelism;
+        this.evaluationParallelism = evaluationParallelism;
+        this.queueCapacity = queueCapacity;
+    }
+
+
+    // Getters and setters
+
+    public int getAnalysisParallelism() {
+        return analysisParallelism;
+    }
+
+    public void setAnalysisParallelism(int analysisParallelism) {
+        this.analysisParallelism = analysisParallelism;
+    }
+
+    public int getParseParallelism() {
+        return parseParallelism;
+    }
+
+    public void setParseParallelism(int parseParallelism) {
+        this.parseParallelism = parseParallelism;
+    }
+
+    public int getEvaluationParallelism() {
+        return evaluationParallelism;
+    }
+
+    public void setEvaluationParallelism(int evaluationParallelism) {
+        this.evaluationParallelism = evaluationParallelism;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public ToolSupervisor getToolSupervisor() {
+        return toolSupervisor;
+    }
+
+    public void setToolSupervisor(ToolSupervisor toolSupervisor) {
+        this.toolSupervisor = toolSupervisor;
+    }
+
+
+    // Methods
+
+    /**
+     * Run the pipeline over a benchmark repository.
+     *
+     * @param benchmarkRepository
+     *      The root directory containing the items to be used for benchmarking
+     * @param projectRootFlag
+     *      File suffix marking the root directory of a project (see FileUtility.multiProjectCollector)
+     * @param projectFilter
+     *      Discovered projects not accepted by this filter are not analyzed (e.g. already benchmarked projects)
+     * @param costEstimator
+     *      Estimates the analysis cost of each project so the largest are analyzed first. May be null, in which case
+     *      projects are analyzed in discovery order as soon as they are found.
+     * @param qmDescription
+     *      The quality model description. Each project is evaluated on its own clone.
+     * @param tools
+     *      The static analysis tools to run on each project
+     * @param resultConsumer
+     *      Receives (project root, {Key: measure name, Value: measure value}) of every evaluated project. Called
+     *      from evaluation worker threads.
+     * @return
+     *      The run's report, including all project roots discovered in the repository, whether analyzed or not
+     */
+    public BenchmarkReport run(Path benchmarkRepository, String projectRootFlag, Predicate<Path> projectFilter,
+                               ProjectCostEstimator costEstimator, QualityModel qmDescription, Set<ITool> tools,
+                               BiConsumer<Path, Map<String, Double>> resultConsumer) {
+
+        return run(emit -> {
+            try (Stream<Path> flagFiles = Files.find(benchmarkRepository, 2, (path, attr) ->
+                    path.toString().toLowerCase().endsWith(projectRootFlag.toLowerCase()))) {
+                Iterator<Path> iterator = flagFiles.iterator();
+                while (iterator.hasNext()) {
+                    if (!emit.test(iterator.next().getParent().toAbsolutePath())) break;
+                }
+            }
+        }, projectFilter, costEstimator, qmDescription, tools, resultConsumer);
+    }
+
+    /**
+     * Run the pipeline over an explicit collection of project roots, in the given order.
+     */
+    public BenchmarkReport run(Collection<Path> projectRoots, QualityModel qmDescription, Set<ITool> tools,
+                               BiConsumer<Path, Map<String, Double>> resultConsumer) {
+
+        return run(emit -> {
+            for (Path projectRoot : projectRoots) {
+                if (!emit.test(projectRoot.toAbsolutePath())) break;
+            }
+        }, projectRoot -> true, null, qmDescription, tools, resultConsumer);
+    }
+
+    /**
+     * Project discovery stage: passes each project root it finds to the emitter, until the emitter returns false.
+     */
+    private interface Discovery {
+        void discover(Predicate<Path> emitter) throws IOException;
+    }
+
+    private BenchmarkReport run(Discovery discovery, Predicate<Path> projectFilter, ProjectCostEstimator costEstimator,
+                                QualityModel qmDescription, Set<ITool> tools,
+                                BiConsumer<Path, Map<String, Double>> resultConsumer) {
+
+        long runStart = System.nanoTime();
+        BenchmarkReport report = new BenchmarkReport();
+
+        BlockingQueue<BenchmarkProject> toAnalyze = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<BenchmarkProject> toParse = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<BenchmarkProject> toEvaluate = new ArrayBlockingQueue<>(queueCapacity);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicInteger evaluated = new AtomicInteger();
+        AtomicLong firstAnalysisStart = new AtomicLong(Long.MAX_VALUE);
+        AtomicLong lastAnalysisEnd = new AtomicLong(Long.MIN_VALUE);
+
+        // Tool instances are shared by all projects: only thread-safe tools run on several projects at once
+        boolean concurrentTools = tools.stream().allMatch(ITool::isThreadSafe);
+        int analysisThreads = concurrentTools ? analysisParallelism : 1;
+        int parseThreads = concurrentTools ? parseParallelism : 1;
+
+        int threads = 1 + analysisThreads + parseThreads + evaluationParallelism;
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "benchmark-pipeline-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            // (1) discovery
+            executor.submit(() -> {
+                try {
+                    List<BenchmarkProject> accepted = new ArrayList<>();
+                    discovery.discover(projectRoot -> {
+                        if (report.getDiscoveredProjects().add(projectRoot) && projectFilter.test(projectRoot)) {
+                            BenchmarkProject project = new BenchmarkProject(projectRoot);
+                            if (costEstimator == null) dispatch(project, toAnalyze, failure);
+                            else accepted.add(project);
+                        }
+                        return failure.get() == null;
+                    });
+
+                    if (costEstimator != null) {
+                        scheduleLongestFirst(accepted, costEstimator, analysisThreads, report);
+                        for (BenchmarkProject project : accepted) {
+                            if (!dispatch(project, toAnalyze, failure)) break;
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    endStage(toAnalyze, analysisThreads);
+                }
+            });
+
+            // (2) analyze
+            AtomicInteger analysisWorkers = new AtomicInteger(analysisThreads);
+            for (int i = 0; i < analysisThreads; i++) {
+                executor.submit(stageWorker(toAnalyze, toParse, analysisWorkers, parseThreads, failure,
+                        project -> {
+                            long start = System.nanoTime();
+                            firstAnalysisStart.accumulateAndGet(start, Math::min);
+                            for (ITool tool : tools) {
+                                try {
+                                    project.analysisOutputs.put(tool, toolSupervisor.analyze(tool, project.root));
+                                } catch (ToolSupervisor.ToolTimeoutException e) {
+                                    System.out.println("\tExcluding project " + project.root.getFileName() +
+                                            " from the benchmark: " + e.getMessage());
+                                    report.getExcludedProjects().put(project.root, e.getMessage());
+                                    project.excluded = true;
+                                    break;
+                                }
+                            }
+                            long end = System.nanoTime();
+                            lastAnalysisEnd.accumulateAndGet(end, Math::max);
+                            report.getAnalysisMillis().put(project.root, TimeUnit.NANOSECONDS.toMillis(end - start));
+                        }));
+            }
+
+            // (3) parse
+            AtomicInteger parseWorkers = new AtomicInteger(parseThreads);
+            for (int i = 0; i < parseThreads; i++) {
+                executor.submit(stageWorker(toParse, toEvaluate, parseWorkers, evaluationParallelism, failure,
+                        project -> project.analysisOutputs.forEach((tool, output) ->
+                                project.diagnostics.putAll(tool.parseAnalysis(output)))));
+            }
+
+            // (4) evaluate
+            AtomicInteger evaluationWorkers = new AtomicInteger(evaluationParallelism);
+            for (int i = 0; i < evaluationParallelism; i++) {
+                executor.submit(stageWorker(toEvaluate, null, evaluationWorkers, 0, failure, project -> {
+                    resultConsumer.accept(project.root, evaluateProject(project, qmDescription));
+                    System.out.println("\tFinished analyzing project " + project.root.getFileName() + " ("
+                            + evaluated.incrementAndGet() + " analyzed)");
+                }));
+            }
+
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Wait for every stage to drain
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Benchmark pipeline was interrupted.", e);
+        }
+
+        if (failure.get() != null) {
+            throw new RuntimeException("Benchmark pipeline failed: " + failure.get().getMessage(), failure.get());
+        }
+
+        if (!report.getAnalysisMillis().isEmpty()) {
+            report.setActualMakespanMillis(
+                    TimeUnit.NANOSECONDS.toMillis(lastAnalysisEnd.get() - firstAnalysisStart.get()));
+        }
+        report.setWallClockMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - runStart));
+        return report;
+    }
+
+    /**
+     * Estimate the cost of every project (scanning project directories in parallel), order them largest first and
+     * record the makespan an LPT schedule of those costs over the analysis workers is predicted to have.
+     */
+    private void scheduleLongestFirst(List<BenchmarkProject> projects, ProjectCostEstimator costEstimator,
+                                      int analysisThreads, BenchmarkReport report) {
+        projects.parallelStream().forEach(project -> {
+            long bytes = costEstimator.scanBytes(project.root);
+            report.getProjectBytes().put(project.root, bytes);
+            project.cost = costEstimator.estimate(project.root, bytes);
+        });
+        projects.sort(Comparator.comparingDouble((BenchmarkProject project) -> project.cost).reversed());
+
+        List<Double> costs = new ArrayList<>();
+        projects.forEach(project -> costs.add(project.cost));
+        report.setPrediction(ProjectCostEstimator.predictMakespan(costs, analysisThreads),
+                costEstimator.isCalibrated());
+    }
+
+    /**
+     * Hand a project to the analysis stage, blocking while its queue is full.
+     *
+     * @return false if the pipeline failed or was interrupted and discovery should stop
+     */
+    private boolean dispatch(BenchmarkProject project, BlockingQueue<BenchmarkProject> toAnalyze,
+                             AtomicReference<Throwable> failure) {
+        try {
+            toAnalyze.put(project);
+        } catch (InterruptedException e) {
+            failure.compareAndSet(null, e);
+            Thread.currentThread().interrupt();
+        }
+        return failure.get() == null;
+    }
+
+    /**
+     * A stage worker takes projects from its input queue until it receives the end marker. Excluded projects are
+     * not passed on. After a failure anywhere
+     * in the pipeline, workers keep draining their input (without doing work) so that no upstream stage blocks
+     * forever on a full queue. The last worker of a stage to finish passes one end marker to each downstream worker.
+     */
+    private Runnable stageWorker(BlockingQueue<BenchmarkProject> input, BlockingQueue<BenchmarkProject> output,
+                                 AtomicInteger activeWorkers, int downstreamWorkers,
+                                 AtomicReference<Throwable> failure, Consumer<BenchmarkProject> work) {
+        return () -> {
+            try {
+                BenchmarkProject project;
+                while ((project = input.take()) != END) {
+                    if (failure.get() != null) continue;
+                    try {
+                        work.accept(project);
+                        if (output != null && !project.excluded) output.put(project);
+                    } catch (RuntimeException | Error e) {
+                        failure.compareAndSet(null, new RuntimeException("Project " + project.root + ": " +
+                                e.getMessage(), e));
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            } finally {
+                if (activeWorkers.decrementAndGet() == 0 && output != null) endStage(output, downstreamWorkers);
+            }
+        };
+    }
+
+    private void endStage(BlockingQueue<BenchmarkProject> output, int downstreamWorkers) {
+        try {
+            for (int i = 0; i < downstreamWorkers; i++) output.put(END);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Evaluate a single benchmark project up to the Measure level.
+     *
+     * @return {Key: measure name, Value: measure value (after normalization)}
+     */
+    private Map<String, Double> evaluateProject(BenchmarkProject benchmarkProject, QualityModel qmDescription) {
+
+        // Clone the QM. Cloning reads (and so evaluates) the description's nodes, shared by all evaluation workers.
+        // TODO (1.0): Currently need to use .clone() for benchmark repository quality model sharing. This will be
+        //  confusing and problematic to people not using the default benchmarker.
+        QualityModel clonedQM;
+        synchronized (qmDescription) {
+            clonedQM = qmDescription.clone();
+        }
+
+        // Instantiate new project object
+        Project project = new Project(benchmarkProject.root.getFileName().toString(), benchmarkProject.root, clonedQM);
+
+        // TODO: temp fix
+        // Set measures to not use a utility function during their node evaluation
+        project.getQualityModel().getMeasures().values().forEach(measure -> {
+            measure.setEvaluatorObject(PluginRegistry.instance(BenchmarkMeasureEvaluator.class));
+        });
+
+        // Apply collected diagnostics (containing findings) to the project
+        Map<String, Diagnostic> allDiagnostics = benchmarkProject.diagnostics;
+        allDiagnostics.forEach((diagnosticName, diagnostic) -> {
+            project.addFindings(diagnostic);
+        });
+
+        // Run LOC tool to set lines of code
+        int linesOfCode = (int)allDiagnostics.get("loc").getValue();
+        project.setLinesOfCode(linesOfCode);
+
+        // Cloned measures get their own copy of cloneable normalizers (see PluginRegistry#copyOf), so projects can be
+        // evaluated concurrently. Other normalizers are shared with the model description: setting the normalizer
+        // value and evaluating must then not interleave between projects.
+        boolean sharedNormalizers = project.getQualityModel().getMeasures().values().stream()
+                .anyMatch(measure -> !PluginRegistry.isCopied(measure.getNormalizerObject().getClass()));
+        if (sharedNormalizers) {
+            synchronized (qmDescription) {
+                return evaluateMeasures(project, linesOfCode);
+            }
+        }
+        return evaluateMeasures(project, linesOfCode);
+    }
+
+    /**
+     * @return {Key: measure name, Value: measure value (after normalization)}
+     */
+    private Map<String, Double> evaluateMeasures(Project project, int linesOfCode) {
+        // TODO (1.0): need to rethink loc, normalizer, evaluator interactions for benchmark repository
+        //  interactions
+        project.getQualityModel().getMeasures().values().forEach(measure -> {
+            measure.getNormalizerObject().setNormalizerValue(linesOfCode);
+        });
+
+        // Evaluate project up to Measure level (normalize does happen first)
+        project.evaluateMeasures();
+        Map<String, Double> measureValues = new HashMap<>();
+        project.getQualityModel().getMeasures().values().forEach(m -> measureValues.put(m.getName(), m.getValue()));
+        return measureValues;
+    }
+}
@@ -0,0 +1,113 @@
+package pique.calibration;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Summary of a {@link BenchmarkPipeline} run: which projects were found and analyzed, how long each analysis took,
+ * and how the analysis makespan compared to the scheduler's prediction.
+ */
+public class BenchmarkReport {
+
+    // Fields
+    private final Set<Path> discoveredProjects = Collections.synchronizedSet(new LinkedHashSet<>());
+    private final Map<Path, Long> analysisMillis = new ConcurrentHashMap<>();
+    private final Map<Path, Long> projectBytes = new ConcurrentHashMap<>();
+    private final Map<Path, String> excludedProjects = new ConcurrentHashMap<>();
+    private double predictedMakespan = Double.NaN;
+    private boolean predictionInMillis = false;
+    private long actualMakespanMillis;
+    private long wallClockMillis;
+
+
+    // Getters and setters
+
+    /**
+     * @return All project roots found in the benchmark repository, whether analyzed or not
+     */
+    public Set<Path> getDiscoveredProjects() {
+        return discoveredProjects;
+    }
+
+    /**
+     * @return {Key: project root, Value: time spent running the static analysis tools on it}
+     */
+    public Map<Path, Long> getAnalysisMillis() {
+        return analysisMillis;
+    }
+
+    /**
+     * @return {Key: project root, Value: project size on disk, when it was scanned for cost estimation}
+     */
+    public Map<Path, Long> getProjectBytes() {
+        return projectBytes;
+    }
+
+    /**
+     * @return {Key: project root, Value: reason} of the projects left out of the benchmark, e.g. after a tool timeout
+     */
+    public Map<Path, String> getExcludedProjects() {
+        return excludedProjects;
+    }
+
+    /**
+     * @return Predicted makespan of the analysis stage: milliseconds if {@link #isPredictionInMillis()}, otherwise
+     *      bytes of project data on the most loaded analysis worker. NaN if no prediction was made.
+     */
+    public double getPredictedMakespan() {
+        return predictedMakespan;
+    }
+
+    public boolean isPredictionInMillis() {
+        return predictionInMillis;
+    }
+
+    void setPrediction(double predictedMakespan, boolean predictionInMillis) {
+        this.predictedMakespan = predictedMakespan;
+        this.predictionInMillis = predictionInMillis;
+    }
+
+    /**
+     * @return Time from the first project analysis starting to the last one finishing
+     */
+    public long getActualMakespanMillis() {
+        return actualMakespanMillis;
+    }
+
+    void setActualMakespanMillis(long actualMakespanMillis) {
+        this.actualMakespanMillis = actualMakespanMillis;
+    }
+
+    /**
+     * @return Duration of the whole pipeline run
+     */
+    public long getWallClockMillis() {
+        return wallClockMillis;
+    }
+
+    void setWallClockMillis(long wallClockMillis) {
+        this.wallClockMillis = wallClockMillis;
+    }
+
+
+    // Methods
+
+    /**
+     * @return Human-readable summary of the schedule
+     */
+    public String summary() {
+        String predicted;
+        if (Double.isNaN(predictedMakespan)) predicted = "n/a";
+        else if (predictionInMillis) predicted = String.format("%.1f s", predictedMakespan / 1000.0);
+        else predicted = String.format("n/a (no analysis history; largest worker load %.0f bytes)", predictedMakespan);
+
+        return (analysisMillis.size() - excludedProjects.size()) + " projects analyzed, " + excludedProjects.size() +
+                " excluded. Analysis makespan predicted: " + predicted +
+                ", actual: " + String.format("%.1f s", actualMakespanMillis / 1000.0) +
+                ". Total benchmark time: " + String.format("%.1f s", wallClockMillis / 1000.0) + ".";
+    }
+}
@@ -0,0 +1,226 @@
+package pique.calibration;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.annotations.Expose;
+import pique.utility.FileUtility;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The accumulated result of benchmarking a repository: the measure values of every project analyzed so far.
+ *
+ * Keeping this state between runs allows a benchmarker to analyze only the projects that were added to the
+ * benchmark repository since the last run, and to drop the projects that were removed, instead of re-running the
+ * static analysis tools over the whole repository. Per-measure {@link MeasureStatistics} are maintained alongside the
+ * raw values so thresholds can be re-derived without rescanning all projects.
+ */
+public class BenchmarkState {
+
+    // Fields
+    @Expose
+    private Set<String> measureNames = new HashSet<>();
+    // {Key: project root path, Value: {Key: measure name, Value: measure value after normalization}}
+    @Expose
+    private Map<String, Map<String, Double>> projectMeasureValues = new HashMap<>();
+    // Analysis duration and size of each project in the run that analyzed it, used to schedule later runs
+    @Expose
+    private Map<String, Long> projectAnalysisMillis = new HashMap<>();
+    @Expose
+    private Map<String, Long> projectBytes = new HashMap<>();
+
+    private Map<String, MeasureStatistics> measureStatistics = new HashMap<>();
+
+
+    // Getters and setters
+
+    public Set<String> getMeasureNames() {
+        return measureNames;
+    }
+
+    public Set<String> getProjects() {
+        return projectMeasureValues.keySet();
+    }
+
+    public Map<String, Double> getMeasureValues(String project) {
+        return projectMeasureValues.get(project);
+    }
+
+    public Map<String, MeasureStatistics> getMeasureStatistics() {
+        return measureStatistics;
+    }
+
+    /**
+     * @return {Key: measure name, Value: the measure's value in every benchmark project, ascending}
+     */
+    public Map<String, double[]> getMeasureValueArrays() {
+        Map<String, double[]> valueArrays = new HashMap<>();
+        measureStatistics.forEach((measureName, statistics) -> valueArrays.put(measureName, statistics.toArray()));
+        return valueArrays;
+    }
+
+    public Map<String, Long> getProjectAnalysisMillis() {
+        return projectAnalysisMillis;
+    }
+
+    public Map<String, Long> getProjectBytes() {
+        return projectBytes;
+    }
+
+    public boolean containsProject(String project) {
+        return projectMeasureValues.containsKey(project);
+    }
+
+    public boolean isEmpty() {
+        return projectMeasureValues.isEmpty();
+    }
+
+
+    // Methods
+
+    /**
+     * Add (or replace) the measure values of a benchmark project.
+     *
+     * @param project
+     *      Identifier of the project, typically its root path
+     * @param measureValues
+     *      {Key: measure name, Value: measure value} of the evaluated project
+     */
+    public void addProject(String project, Map<String, Double> measureValues) {
+        if (containsProject(project)) removeProject(project);
+
+        projectMeasureValues.put(project, new HashMap<>(measureValues));
+        measureValues.forEach((measureName, value) ->
+                measureStatistics.computeIfAbsent(measureName, k -> new MeasureStatistics()).insert(value));
+    }
+
+    /**
+     * Record how long the static analysis tools took on a project and how large the project was at the time.
+     *
+     * @param bytes
+     *      Size of the project, or null if it was not measured
+     */
+    public void recordAnalysis(String project, long millis, Long bytes) {
+        projectAnalysisMillis.put(project, millis);
+        if (bytes != null) projectBytes.put(project, bytes);
+        else projectBytes.remove(project);
+    }
+
+    /**
+     * @return A cost estimator informed by the analysis durations recorded in this state
+     */
+    public ProjectCostEstimator createCostEstimator() {
+        return new ProjectCostEstimator(projectAnalysisMillis, projectBytes);
+    }
+
+    /**
+     * Remove a benchmark project and its values from the per-measure statistics. The project's analysis duration is
+     * kept, since it does not depend on the quality model.
+     *
+     * @return true if the project was part of the benchmark state
+     */
+    public boolean removeProject(String project) {
+        Map<String, Double> measureValues = projectMeasureValues.remove(project);
+        if (measureValues == null) return false;
+
+        measureValues.forEach((measureName, value) -> {
+            MeasureStatistics statistics = measureStatistics.get(measureName);
+            statistics.remove(value);
+            if (statistics.isEmpty()) measureStatistics.remove(measureName);
+        });
+        return true;
+    }
+
+    /**
+     * Drop all benchmark data and associate the state with a (possibly different) set of measures.
+     */
+    public void reset(Set<String> measureNames) {
+        this.measureNames = new HashSet<>(measureNames);
+        this.projectMeasureValues.clear();
+        this.measureStatistics.clear();
+    }
+
+    /**
+     * @return A dictionary of [ Key: measure name, Value: {lowest value seen, highest value seen} ]
+     */
+    public Map<String, Double[]> deriveThresholds() {
+        Map<String, Double[]> measureThresholds = new HashMap<>();
+        measureStatistics.forEach((measureName, statistics) ->
+                measureThresholds.put(measureName, new Double[] { statistics.getMin(), statistics.getMax() }));
+        return measureThresholds;
+    }
+
+    /**
+     * Create a hard-drive file representation of the benchmark state
+     *
+     * @param outputDirectory
+     *      The directory to place the state file into.  Does not need to exist beforehand.
+     * @return
+     *      The path of the exported state file.
+     */
+    public Path exportToJson(String fileName, Path outputDirectory) {
+        return FileUtility.exportObjectToJson(this, outputDirectory, fileName);
+    }
+
+    /**
+     * Write the benchmark state to exactly the given file, whatever its extension.
+     *
+     * @param stateFile
+     *      The state file. Its directory does not need to exist beforehand.
+     * @return
+     *      The path of the exported state file.
+     */
+    public Path exportToJson(Path stateFile) {
+        Gson gson = new GsonBuilder()
+                .disableHtmlEscaping()
+                .excludeFieldsWithoutExposeAnnotation()
+                .setPrettyPrinting()
+                .create();
+
+        try {
+            Path directory = stateFile.toAbsolutePath().getParent();
+            if (directory != null) Files.createDirectories(directory);
+            try (Writer writer = Files.newBufferedWriter(stateFile, StandardCharsets.UTF_8)) {
+                gson.toJson(this, writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write benchmark state file " + stateFile, e);
+        }
+        return stateFile;
+    }
+
+    /**
+     * Load a benchmark state previously written by {@link #exportToJson(String, Path)} or
+     * {@link #exportToJson(Path)}.
+     */
+    public static BenchmarkState importFromJson(Path stateFile) {
+        Gson gson = new GsonBuilder()
+                .excludeFieldsWithoutExposeAnnotation()
+                .create();
+
+        try (Reader reader = Files.newBufferedReader(stateFile)) {
+            BenchmarkState state = gson.fromJson(reader, BenchmarkState.class);
+            state.rebuildStatistics();
+            return state;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read benchmark state file " + stateFile, e);
+        }
+    }
+
+    private void rebuildStatistics() {
+        if (measureNames == null) measureNames = new HashSet<>();
+        if (projectMeasureValues == null) projectMeasureValues = new HashMap<>();
+        if (projectAnalysisMillis == null) projectAnalysisMillis = new HashMap<>();
+        if (projectBytes == null) projectBytes = new HashMap<>();
+
+        measureStatistics = new HashMap<>();
+        projectMeasureValues.values().forEach(measureValues -> measureValues.forEach((measureName, value) ->
+                measureStatistics.computeIfAbsent(measureName, k -> new MeasureStatistics()).insert(value)));
+    }
+}
@@ -31,6 +31,44 @@ public interface IBenchmarker {
     Map<String, Double[]> deriveThresholds(Path benchmarkRepository, QualityModel qmDescription, Set<ITool> tools,
                                            String projectRootFlag);
 
+    /**
+     * Derive the thresholds of a single measure from the values seen for it across the benchmark repository. Used to
+     * re-derive thresholds from resampled benchmark data (see {@link ThresholdBootstrap}).
+     *
+     * @param benchmarkValues
+     *      The measure's value in each benchmark project
+     * @return
+     *      The thresholds this benchmarker would derive from the given values
+     * @throws UnsupportedOperationException
+     *      If the benchmarker does not support threshold re-derivation (see {@link #canComputeThresholds()})
+     */
+    default double[] computeThresholds(double[] benchmarkValues) {
+        throw new UnsupportedOperationException(getName() + " does not support threshold re-derivation.");
+    }
+
+    /**
+     * @return true if the benchmarker overrides {@link #computeThresholds(double[])}. false by default.
+     */
+    default boolean canComputeThresholds() {
+        return false;
+    }
+
+    /**
+     * @return The benchmark data accumulated by previous {@link #deriveThresholds} calls, or null if this benchmarker
+     *      does not support incremental benchmarking
+     */
+    default BenchmarkState getBenchmarkState() {
+        return null;
+    }
+
+    /**
+     * Seed the benchmarker with the benchmark data of a previous run so that only projects added to or removed from
+     * the benchmark repository since then need to be analyzed.
+     */
+    default void setBenchmarkState(BenchmarkState benchmarkState) {
+        throw new UnsupportedOperationException(getName() + " does not support incremental benchmarking.");
+    }
+
     /**
      * @return An identifiable name of the benchmarker
      */
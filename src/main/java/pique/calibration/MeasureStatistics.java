@@ -0,0 +1,81 @@
+package pique.calibration;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Order statistics of the benchmark values seen for a single measure.
+ *
+ * Values are kept as a sorted multiset (value -> number of occurrences) so that benchmark projects can be added and
+ * removed one at a time in O(log n) without rescanning the values of every other project.
+ */
+public class MeasureStatistics {
+
+    // Fields
+    private final TreeMap<Double, Integer> values = new TreeMap<>();
+    private int size = 0;
+
+
+    // Getters and setters
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return The lowest value seen for the measure
+     */
+    public double getMin() {
+        if (isEmpty()) throw new IllegalStateException("No benchmark values exist for this measure.");
+        return values.firstKey();
+    }
+
+    /**
+     * @return The highest value seen for the measure
+     */
+    public double getMax() {
+        if (isEmpty()) throw new IllegalStateException("No benchmark values exist for this measure.");
+        return values.lastKey();
+    }
+
+
+    // Methods
+
+    public void insert(double value) {
+        values.merge(value, 1, Integer::sum);
+        size++;
+    }
+
+    /**
+     * Remove one occurrence of a value.
+     *
+     * @return true if the value existed and was removed
+     */
+    public boolean remove(double value) {
+        Integer count = values.get(value);
+        if (count == null) return false;
+
+        if (count == 1) values.remove(value);
+        else values.put(value, count - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return All values seen for the measure (duplicates included) in ascending order
+     */
+    public double[] toArray() {
+        double[] sorted = new double[size];
+        int i = 0;
+        for (Map.Entry<Double, Integer> entry : values.entrySet()) {
+            for (int j = 0; j < entry.getValue(); j++) {
+                sorted[i++] = entry.getKey();
+            }
+        }
+        return sorted;
+    }
+}
@@ -1,23 +1,31 @@
 package pique.calibration;
 
 import pique.analysis.ITool;
-import pique.evaluation.BenchmarkMeasureEvaluator;
-import pique.evaluation.Project;
-import pique.model.Diagnostic;
 import pique.model.Measure;
+import pique.model.ModelNode;
 import pique.model.QualityModel;
-import pique.utility.FileUtility;
 
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Collectors;
 
 public class NaiveBenchmarker implements IBenchmarker {
+
+    // Benchmark data of previously analyzed projects. Allows re-deriving thresholds by analyzing only the delta.
+    private BenchmarkState benchmarkState = new BenchmarkState();
+    private BenchmarkPipeline pipeline = new BenchmarkPipeline();
+    private BenchmarkReport lastReport;
+
     /**
      * Derive thesholds for all {@link Measure} nodes using a naive approach:
      * (1) threshold[0] = the lowest value seen for the {@link Measure}
      * (2) threshold[1] = the highest value seen for the {@link Measure}
      *
+     * Projects already contained in this benchmarker's {@link BenchmarkState} are not analyzed again, and projects
+     * of the state that no longer exist in the benchmark repository are removed from it. The remaining projects are
+     * analyzed largest first, using the analysis durations recorded in the state (or project sizes) as estimates.
+     * Projects on which a tool run timed out are left out of the thresholds; see {@link #getLastReport()}.
+     *
      * @param benchmarkRepository The root directory containing the items to be used for benchmarking
      * @param qmDescription       The quality model description file
      * @param tools               The collection of static analysis tools needed to audio the benchmark repository
@@ -30,95 +38,128 @@ public class NaiveBenchmarker implements IBenchmarker {
     public Map<String, Double[]> deriveThresholds(Path benchmarkRepository, QualityModel qmDescription, Set<ITool> tools,
                                                   String projectRootFlag) {
 
-        // Collect root paths of each benchmark project
-        Set<Path> projectRoots = FileUtility.multiProjectCollector(benchmarkRepository, projectRootFlag);
-        ArrayList<Project> projects = new ArrayList<>();
+        // Benchmark data collected with a different set of measures can not be reused
+        resetStateIfModelChanged(qmDescription);
 
         System.out.println("* Beginning repository benchmark analysis");
-        System.out.println(projectRoots.size() + " projects to analyze.\n");
-
-        int totalProjects = projectRoots.size();
-        int counter = 0;
-
-        for (Path projectPath : projectRoots) {
-
-            counter++;
-
-            // Clone the QM
-            // TODO (1.0): Currently need to use .clone() for benchmark repository quality model sharing. This will be
-            //  confusing and problematic to people not using the default benchmarker.
-            QualityModel clonedQM = qmDescription.clone();
-
-            // Instantiate new project object
-            Project project = new Project(projectPath.getFileName().toString(), projectPath, clonedQM);
-
-            // TODO: temp fix
-            // Set measures to not use a utility function during their node evaluation
-            project.getQualityModel().getMeasures().values().forEach(measure -> {
-                measure.setEvaluatorObject(new BenchmarkMeasureEvaluator());
-            });
-
-            // Run the static analysis tools process
-            Map<String, Diagnostic> allDiagnostics = new HashMap<>();
-            tools.forEach(tool -> {
-                Path analysisOutput = tool.analyze(projectPath);
-                allDiagnostics.putAll(tool.parseAnalysis(analysisOutput));
-            });
-
-            // Run LOC tool to set lines of code
-            int linesOfCode = (int)allDiagnostics.get("loc").getValue();
-            // TODO (1.0): need to rethink loc, normalizer, evaluator interactions for benchmark repository
-            //  interactions
-            project.setLinesOfCode(linesOfCode);
-            project.getQualityModel().getMeasures().values().forEach(measure -> {
-                measure.getNormalizerObject().setNormalizerValue(linesOfCode);
-            });
-
-            // Apply collected diagnostics (containing findings) to the project
-            allDiagnostics.forEach((diagnosticName, diagnostic) -> {
-                project.addFindings(diagnostic);
-            });
-
-            // Evaluate project up to Measure level (normalize does happen first)
-            project.evaluateMeasures();
-
-            // Add new project (with tool findings information included) to the list
-            projects.add(project);
-
-            // Print information
-            System.out.println("\n\tFinished analyzing project " + project.getName());
-            System.out.println("\t" + counter + " of " + totalProjects + " analyzed.\n");
+        Set<String> previouslyBenchmarked = new HashSet<>(benchmarkState.getProjects());
+
+        // Analyze the projects that were added since the last run
+        BenchmarkReport report = pipeline.run(benchmarkRepository, projectRootFlag,
+                projectRoot -> !previouslyBenchmarked.contains(projectRoot.toString()),
+                benchmarkState.createCostEstimator(), qmDescription, tools, this::addResult);
+        recordAnalyses(report);
+        lastReport = report;
+        Set<Path> projectRoots = report.getDiscoveredProjects();
+
+        // Drop projects that were removed from the repository since the last run
+        Set<String> projects = projectRoots.stream().map(Path::toString).collect(Collectors.toSet());
+        Set<String> removedProjects = benchmarkState.getProjects().stream()
+                .filter(project -> !projects.contains(project))
+                .collect(Collectors.toSet());
+        removedProjects.forEach(benchmarkState::removeProject);
+
+        int reused = previouslyBenchmarked.size() - removedProjects.size();
+        int excluded = report.getExcludedProjects().size();
+        System.out.println("\n" + (projectRoots.size() - reused - excluded) + " projects analyzed, " + reused +
+                " reused from a previous benchmark, " + removedProjects.size() + " removed, " + excluded +
+                " excluded after tool timeouts.");
+        System.out.println(report.summary() + "\n");
+
+        // Identify the lowest and highest of each measure value
+        return benchmarkState.deriveThresholds();
+    }
+
+    /**
+     * Analyze a single project and add its measure values to the benchmark state without re-analyzing the rest of
+     * the benchmark repository.
+     */
+    public void addProject(Path projectRoot, QualityModel qmDescription, Set<ITool> tools) {
+        resetStateIfModelChanged(qmDescription);
+        lastReport = pipeline.run(Collections.singleton(projectRoot), qmDescription, tools, this::addResult);
+        recordAnalyses(lastReport);
+    }
+
+    /**
+     * Remove a single project's measure values from the benchmark state.
+     *
+     * @return true if the project was part of the benchmark state
+     */
+    public boolean removeProject(Path projectRoot) {
+        return benchmarkState.removeProject(projectRoot.toAbsolutePath().toString());
+    }
+
+    /**
+     * @return {lowest value, highest value} of the benchmark values
+     */
+    @Override
+    public double[] computeThresholds(double[] benchmarkValues) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : benchmarkValues) {
+            if (value < min) min = value;
+            if (value > max) max = value;
         }
+        return new double[] { min, max };
+    }
 
-        // Map all values audited for each measure
-        Map<String, ArrayList<Double>> measureBenchmarkData = new HashMap<>();
-        projects.forEach(p -> {
-            p.getQualityModel().getMeasures().values().forEach(m -> {
-                        if (!measureBenchmarkData.containsKey(m.getName())) {
-                            measureBenchmarkData.put(m.getName(), new ArrayList<Double>() {{
-                                add(m.getValue());
-                            }});
-                        } else {
-                            measureBenchmarkData.get(m.getName()).add(m.getValue());
-                        }
-                    }
-            );
-        });
+    @Override
+    public boolean canComputeThresholds() {
+        return true;
+    }
 
-        // Identify the lowest and highest of each measure value
-        Map<String, Double[]> measureThresholds = new HashMap<>();
-        measureBenchmarkData.forEach((measureName, measureValues) -> {
-            measureThresholds.putIfAbsent(measureName, new Double[2]);
-            measureThresholds.get(measureName)[0] = Collections.min(measureValues);
-            measureThresholds.get(measureName)[1] = Collections.max(measureValues);
+    /**
+     * @return The report of the most recent pipeline run, including projects excluded after tool timeouts
+     */
+    public BenchmarkReport getLastReport() {
+        return lastReport;
+    }
 
-        });
+    public BenchmarkPipeline getPipeline() {
+        return pipeline;
+    }
+
+    public void setPipeline(BenchmarkPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    @Override
+    public BenchmarkState getBenchmarkState() {
+        return benchmarkState;
+    }
 
-        return measureThresholds;
+    @Override
+    public void setBenchmarkState(BenchmarkState benchmarkState) {
+        this.benchmarkState = benchmarkState;
     }
 
     @Override
     public String getName() {
         return this.getClass().getCanonicalName();
     }
+
+    private void addResult(Path projectRoot, Map<String, Double> measureValues) {
+        synchronized (benchmarkState) {
+            benchmarkState.addProject(projectRoot.toString(), measureValues);
+        }
+    }
+
+    private void recordAnalyses(BenchmarkReport report) {
+        report.getAnalysisMillis().forEach((projectRoot, millis) ->
+                benchmarkState.recordAnalysis(projectRoot.toString(), millis, report.getProjectBytes().get(projectRoot)));
+    }
+
+    private void resetStateIfModelChanged(QualityModel qmDescription) {
+        Set<String> measureNames = qmDescription.getMeasures().values().stream()
+                .map(ModelNode::getName)
+                .collect(Collectors.toSet());
+
+        if (!benchmarkState.getMeasureNames().equals(measureNames)) {
+            if (!benchmarkState.isEmpty()) {
+                System.out.println("* Quality model measures changed since the previous benchmark; " +
+                        "discarding " + benchmarkState.getProjects().size() + " previously analyzed projects.");
+            }
+            benchmarkState.reset(measureNames);
+        }
+    }
 }
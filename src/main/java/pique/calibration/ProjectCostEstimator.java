@@ -0,0 +1,118 @@
+package pique.calibration;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Estimates how long the static analysis tools will take on a benchmark project, so the largest projects can be
+ * dispatched first (longest-processing-time-first scheduling).
+ *
+ * A project's analysis duration from a previous run is the best estimate. Projects without history are estimated
+ * from their size on disk, converted to milliseconds using the average analysis rate (ms per byte) of the projects
+ * that do have history. Without any history the estimate is left in bytes, which still orders projects correctly.
+ */
+public class ProjectCostEstimator {
+
+    // Fields
+    private final Map<String, Long> previousMillis;
+    private final double millisPerByte;
+
+
+    // Constructors
+
+    public ProjectCostEstimator() {
+        this(Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * @param previousMillis
+     *      {Key: project root path, Value: analysis duration of the project in a previous run}
+     * @param previousBytes
+     *      {Key: project root path, Value: size of the project at the time of that run}
+     */
+    public ProjectCostEstimator(Map<String, Long> previousMillis, Map<String, Long> previousBytes) {
+        this.previousMillis = new HashMap<>(previousMillis);
+
+        long totalMillis = 0;
+        long totalBytes = 0;
+        for (Map.Entry<String, Long> entry : previousMillis.entrySet()) {
+            Long bytes = previousBytes.get(entry.getKey());
+            if (bytes != null && bytes > 0) {
+                totalMillis += entry.getValue();
+                totalBytes += bytes;
+            }
+        }
+        this.millisPerByte = totalBytes > 0 ? (double)totalMillis / totalBytes : Double.NaN;
+    }
+
+
+    // Methods
+
+    /**
+     * @return true if estimates are expressed in milliseconds, false if they are raw project sizes in bytes
+     */
+    public boolean isCalibrated() {
+        return !Double.isNaN(millisPerByte);
+    }
+
+    /**
+     * @param projectRoot
+     *      Root directory of the project
+     * @param bytes
+     *      Size of the project, see {@link #scanBytes(Path)}
+     * @return
+     *      The estimated analysis cost of the project: milliseconds if {@link #isCalibrated()}, bytes otherwise
+     */
+    public double estimate(Path projectRoot, long bytes) {
+        if (!isCalibrated()) return bytes;
+
+        Long millis = previousMillis.get(projectRoot.toString());
+        return millis != null ? millis : bytes * millisPerByte;
+    }
+
+    /**
+     * Fast directory scan summing the size of every regular file under the project root.
+     */
+    public long scanBytes(Path projectRoot) {
+        final long[] bytes = { 0 };
+        try {
+            Files.walkFileTree(projectRoot, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    bytes[0] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return bytes[0];
+    }
+
+    /**
+     * Makespan of greedy longest-processing-time-first list scheduling of the given costs on a number of workers:
+     * each cost, largest first, goes to the currently least loaded worker.
+     */
+    public static double predictMakespan(Collection<Double> costs, int workers) {
+        List<Double> sorted = new ArrayList<>(costs);
+        sorted.sort(Comparator.reverseOrder());
+
+        PriorityQueue<Double> loads = new PriorityQueue<>();
+        for (int i = 0; i < workers; i++) loads.add(0.0);
+        for (double cost : sorted) loads.add(loads.poll() + cost);
+
+        double makespan = 0.0;
+        for (double load : loads) makespan = Math.max(makespan, load);
+        return makespan;
+    }
+}
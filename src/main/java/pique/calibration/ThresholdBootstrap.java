@@ -0,0 +1,123 @@
+package pique.calibration;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Percentile bootstrap of benchmark thresholds.
+ *
+ * Given the benchmark values collected for each measure, resample them (with replacement) a number of times,
+ * re-derive the thresholds of every resample, and report the percentile confidence interval of each threshold.
+ * Resamples run in parallel on the common fork-join pool over primitive arrays; the static analysis tools are not
+ * re-run and no {@link pique.model.QualityModel} is cloned.
+ *
+ * Each resample uses its own random generator seeded from the bootstrap seed and the resample index, so results are
+ * reproducible regardless of how resamples are scheduled across threads.
+ */
+public class ThresholdBootstrap {
+
+    // Fields
+    private final int resamples;
+    private final double confidenceLevel;
+    private final long seed;
+
+
+    // Constructors
+
+    public ThresholdBootstrap(int resamples, double confidenceLevel) {
+        this(resamples, confidenceLevel, 0x5DEECE66DL);
+    }
+
+    /**
+     * @param resamples
+     *      Number of bootstrap resamples (K) per measure
+     * @param confidenceLevel
+     *      Width of the confidence interval, e.g. 0.95
+     * @param seed
+     *      Seed of the resampling random generators
+     */
+    public ThresholdBootstrap(int resamples, double confidenceLevel, long seed) {
+        if (resamples < 1) throw new IllegalArgumentException("At least one bootstrap resample is required.");
+        if (confidenceLevel <= 0.0 || confidenceLevel >= 1.0) {
+            throw new IllegalArgumentException("Confidence level must be between 0 and 1 (exclusive).");
+        }
+        this.resamples = resamples;
+        this.confidenceLevel = confidenceLevel;
+        this.seed = seed;
+    }
+
+
+    // Getters and setters
+
+    public double getConfidenceLevel() {
+        return confidenceLevel;
+    }
+
+    public int getResamples() {
+        return resamples;
+    }
+
+
+    // Methods
+
+    /**
+     * @param benchmarkValues
+     *      {Key: measure name, Value: the measure's values over all benchmark projects}
+     * @param thresholdFunction
+     *      Derives the thresholds of a single measure from its benchmark values (see
+     *      {@link IBenchmarker#computeThresholds(double[])})
+     * @return
+     *      {Key: measure name, Value: intervals} where intervals[i] = {lower bound, upper bound} of threshold i
+     */
+    public Map<String, Double[][]> computeIntervals(Map<String, double[]> benchmarkValues,
+                                                   Function<double[], double[]> thresholdFunction) {
+
+        Map<String, Double[][]> intervals = new HashMap<>();
+        benchmarkValues.forEach((measureName, values) -> {
+            if (values.length > 0) intervals.put(measureName, computeIntervals(values, thresholdFunction));
+        });
+        return intervals;
+    }
+
+    private Double[][] computeIntervals(double[] values, Function<double[], double[]> thresholdFunction) {
+
+        int thresholdCount = thresholdFunction.apply(values).length;
+
+        // resampledThresholds[i][k] = threshold i derived from resample k
+        double[][] resampledThresholds = new double[thresholdCount][resamples];
+
+        IntStream.range(0, resamples).parallel().forEach(k -> {
+            SplittableRandom random = new SplittableRandom(seed + k * 0x9E3779B97F4A7C15L);
+            double[] resample = new double[values.length];
+            for (int j = 0; j < resample.length; j++) {
+                resample[j] = values[random.nextInt(values.length)];
+            }
+
+            double[] thresholds = thresholdFunction.apply(resample);
+            for (int i = 0; i < thresholdCount; i++) {
+                resampledThresholds[i][k] = thresholds[i];
+            }
+        });
+
+        double alpha = 1.0 - confidenceLevel;
+        Double[][] intervals = new Double[thresholdCount][];
+        for (int i = 0; i < thresholdCount; i++) {
+            double[] distribution = resampledThresholds[i];
+            Arrays.sort(distribution);
+            intervals[i] = new Double[] { percentile(distribution, alpha / 2), percentile(distribution, 1 - alpha / 2) };
+        }
+        return intervals;
+    }
+
+    /**
+     * Nearest-rank percentile of an ascending sorted array.
+     */
+    private static double percentile(double[] sorted, double p) {
+        int rank = (int)Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank))];
+    }
+}
@@ -5,6 +5,7 @@ import pique.model.ModelNode;
 /**
  * Evaluator used during benchmark repository analysis
  */
+@Stateless
 public class BenchmarkMeasureEvaluator extends Evaluator {
 
     /**
@@ -4,6 +4,7 @@ import pique.model.Diagnostic;
 import pique.model.ModelNode;
 
 // TODO (1.0) Documentation
+@Stateless
 public class DefaultDiagnosticEvaluator extends Evaluator {
 
     @Override
@@ -3,6 +3,7 @@ package pique.evaluation;
 import pique.model.Finding;
 import pique.model.ModelNode;
 
+@Stateless
 public class DefaultFindingEvaluator extends Evaluator {
 
     @Override
@@ -4,6 +4,7 @@ import pique.model.Measure;
 import pique.model.ModelNode;
 
 // TODO (1.0) Documentation
+@Stateless
 public class DefaultMeasureEvaluator extends Evaluator {
 
     /**
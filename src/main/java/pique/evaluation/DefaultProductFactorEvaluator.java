@@ -3,6 +3,7 @@ package pique.evaluation;
 import pique.model.ModelNode;
 
 // TODO (1.0): Documentation
+@Stateless
 public class DefaultProductFactorEvaluator extends Evaluator {
 
     @Override
@@ -1,6 +1,7 @@
 package pique.evaluation;
 
 // TODO (1.0): default utility function
+@Stateless
 public class DefaultUtility implements IUtilityFunction {
 
     /**
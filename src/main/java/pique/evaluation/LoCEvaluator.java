@@ -4,6 +4,7 @@ import pique.model.ModelNode;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 // TODO (1.0): Documentation
+@Stateless
 public class LoCEvaluator extends Evaluator {
 
     // TODO (1.0): Documentation
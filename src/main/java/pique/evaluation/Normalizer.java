@@ -1,6 +1,11 @@
 package pique.evaluation;
 
-public abstract class Normalizer implements INormalizer {
+/**
+ * Base class of normalizers. A normalizer holds the normalizer value of the node it belongs to; cloned nodes get a
+ * field-by-field copy of it (see {@link #clone()}), so subclasses holding mutable objects should override clone() to
+ * copy them too.
+ */
+public abstract class Normalizer implements INormalizer, Cloneable {
 
     protected String name = this.getClass().getSimpleName();
 
@@ -14,4 +19,13 @@ public abstract class Normalizer implements INormalizer {
     public void setNormalizerValue(double value) {
         this.normalizerValue = value;
     }
+
+    @Override
+    public Normalizer clone() {
+        try {
+            return (Normalizer) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
 }
@@ -0,0 +1,140 @@
+package pique.evaluation;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Factory for the plug-in classes named in quality model files (eval_strategy, normalizer, utility_function,
+ * benchmark_strategy, weights_strategy).
+ *
+ * Each class name is resolved once and its no-argument constructor is cached as a method handle, so instancing a
+ * plug-in for every node of a large model does not repeat the reflective lookup. Classes annotated with
+ * {@link Stateless} are instanced only once and that instance is shared by every caller.
+ *
+ * Cloned model nodes copy their stateful plug-ins through the {@link Cloneable} contract: a plug-in class implementing
+ * it with a public clone() method (like {@link Normalizer}) is copied with all its settings. Other plug-ins are shared
+ * by the node and its clone.
+ */
+public final class PluginRegistry {
+
+    private static class Plugin {
+        private final MethodHandle constructor;
+        private final Method copy;
+        private final Object sharedInstance;
+
+        private Plugin(Class<?> pluginClass) {
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.publicLookup().findConstructor(pluginClass, MethodType.methodType(void.class));
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                handle = null;
+            }
+            this.constructor = handle;
+            this.copy = Cloneable.class.isAssignableFrom(pluginClass) ? publicClone(pluginClass) : null;
+            this.sharedInstance = handle != null && pluginClass.isAnnotationPresent(Stateless.class)
+                    ? construct(pluginClass, handle)
+                    : null;
+        }
+    }
+
+    private static final ConcurrentMap<String, Class<?>> classes = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<Class<?>, Plugin> plugins = new ConcurrentHashMap<>();
+
+    private PluginRegistry() { }
+
+
+    // Methods
+
+    /**
+     * @param fullClassName
+     *      Fully qualified name of a plug-in class with a public no-argument constructor
+     * @return
+     *      The shared instance of a stateless plug-in, otherwise a new instance
+     */
+    public static <T> T instance(String fullClassName) {
+        Class<?> pluginClass = classes.computeIfAbsent(fullClassName, name -> {
+            try {
+                return Class.forName(name);
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+                throw new RuntimeException(e);
+            }
+        });
+        return instance(pluginClass);
+    }
+
+    /**
+     * @return
+     *      The shared instance of a stateless plug-in, otherwise a new instance
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T instance(Class<?> pluginClass) {
+        Plugin plugin = plugins.computeIfAbsent(pluginClass, Plugin::new);
+        if (plugin.sharedInstance != null) return (T) plugin.sharedInstance;
+        if (plugin.constructor == null) {
+            throw new RuntimeException("Plug-in class " + pluginClass.getName() + " does not have a public " +
+                    "no-argument constructor.");
+        }
+        return (T) construct(pluginClass, plugin.constructor);
+    }
+
+    /**
+     * Copy a plug-in for a cloned model node. Cloneable plug-ins are copied with their state, so clones evaluated
+     * concurrently do not interfere; stateless plug-ins and plug-ins that can not be copied are shared.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T copyOf(T plugin) {
+        if (plugin == null) return null;
+
+        Plugin registered = plugins.computeIfAbsent(plugin.getClass(), Plugin::new);
+        if (registered.copy == null || plugin.getClass().isAnnotationPresent(Stateless.class)) return plugin;
+
+        try {
+            return (T) registered.copy.invoke(plugin);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new RuntimeException("Unable to copy plug-in " + plugin.getClass().getName(), e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("Unable to copy plug-in " + plugin.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * @return true if {@link #copyOf(Object)} gives clones of the class's instances their own copy
+     */
+    public static boolean isCopied(Class<?> pluginClass) {
+        return !isStateless(pluginClass) && plugins.computeIfAbsent(pluginClass, Plugin::new).copy != null;
+    }
+
+    /**
+     * @return true if instances of the class are shared
+     */
+    public static boolean isStateless(Class<?> pluginClass) {
+        return pluginClass.isAnnotationPresent(Stateless.class);
+    }
+
+    private static Method publicClone(Class<?> pluginClass) {
+        try {
+            Method clone = pluginClass.getMethod("clone");
+            clone.setAccessible(true);
+            return clone;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private static Object construct(Class<?> pluginClass, MethodHandle constructor) {
+        try {
+            return constructor.invoke();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException("Unable to instance plug-in class " + pluginClass.getName(), e);
+        }
+    }
+}
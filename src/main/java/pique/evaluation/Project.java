@@ -121,13 +121,34 @@ public class Project{
 	 * 		The path of the project json file.
 	 */
 	public Path exportToJson(Path resultsDir) {
+		return exportToJson(resultsDir, ResultDetail.FULL, 0);
+	}
+
+
+	/**
+	 * Create a hard-drive file representation of the project with the given level of detail.
+	 *
+	 * @param resultsDir
+	 * 		The directory to place the project representation file into.  Does not need to exist beforehand.
+	 * @param detail
+	 * 		Which parts of the quality model to write, see {@link ResultDetail}.
+	 * @param findingsPerFile
+	 * 		With {@link ResultDetail#FULL}, the maximum number of findings per findings file written next to the
+	 * 		project file; 0 writes the findings inline.
+	 * @return
+	 * 		The path of the project json file.
+	 */
+	public Path exportToJson(Path resultsDir, ResultDetail detail, int findingsPerFile) {
 
 		String fileName = this.getName() + "_evalResults";
 		Pair<String, String> loc = Pair.of("projectLinesOfCode", String.valueOf(getLinesOfCode()));
 		Pair<String, String> name = Pair.of("projectName", getName());
 
 		QualityModelExport qmExport = new QualityModelExport(getQualityModel(), loc, name);
-		return qmExport.exportToJson(fileName, resultsDir);
+		QualityModelStreamExport streamExport = new QualityModelStreamExport(qmExport);
+		streamExport.setDetail(detail);
+		streamExport.setFindingsPerFile(findingsPerFile);
+		return streamExport.exportToJson(fileName, resultsDir);
 	}
 
 
@@ -0,0 +1,18 @@
+package pique.evaluation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a plug-in class (evaluator, normalizer, utility function) whose instances keep no state between calls.
+ *
+ * The {@link PluginRegistry} shares a single instance of a stateless plug-in between every node and thread that uses
+ * it. Plug-ins without this annotation get a new instance per node; see {@link PluginRegistry#copyOf(Object)} for
+ * cloned nodes.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Stateless {
+}
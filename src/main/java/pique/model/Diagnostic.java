@@ -84,8 +84,8 @@ public class Diagnostic extends ModelNode {
         Map<String, ModelNode> clonedChildren = new HashMap<>();
         getChildren().forEach((k, v) -> clonedChildren.put(k, v.clone()));
 
-        return new Diagnostic(getValue(), getName(), getDescription(), getEvaluatorObject(), getNormalizerObject(),
-                getUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
+        return new Diagnostic(getValue(), getName(), getDescription(), cloneEvaluatorObject(), cloneNormalizerObject(),
+                cloneUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
     }
 
     @Override
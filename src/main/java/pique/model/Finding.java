@@ -100,8 +100,8 @@ public class Finding extends ModelNode {
 
     @Override
     public Finding clone() {
-        return new Finding(getValue(), getName(), getDescription(), getEvaluatorObject(), getNormalizerObject(),
-                getUtilityFunctionObject(), getWeights(), getThresholds(), getChildren(), getFilePath(), getLineNumber(),
+        return new Finding(getValue(), getName(), getDescription(), cloneEvaluatorObject(), cloneNormalizerObject(),
+                cloneUtilityFunctionObject(), getWeights(), getThresholds(), getChildren(), getFilePath(), getLineNumber(),
                 getCharacterNumber(), getSeverity());
     }
 
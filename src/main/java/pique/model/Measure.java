@@ -138,8 +138,11 @@ public class Measure extends ModelNode {
 		Map<String, ModelNode> clonedChildren = new HashMap<>();
 		getChildren().forEach((k, v) -> clonedChildren.put(k, v.clone()));
 
-		return new Measure(getValue(), getName(), getDescription(), getEvaluatorObject(), getNormalizerObject(),
-				getUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
+		Measure clone = new Measure(getValue(), getName(), getDescription(), cloneEvaluatorObject(),
+				cloneNormalizerObject(), cloneUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
+		clone.setPositive(isPositive());
+		clone.setThresholdIntervals(getThresholdIntervals());
+		return clone;
 	}
 
 	@Override
@@ -5,6 +5,7 @@ import pique.evaluation.DefaultUtility;
 import pique.evaluation.IEvaluator;
 import pique.evaluation.INormalizer;
 import pique.evaluation.IUtilityFunction;
+import pique.evaluation.PluginRegistry;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -31,6 +32,8 @@ public abstract class ModelNode {
     @Expose
     protected Double[] thresholds;
     @Expose
+    protected Double[][] threshold_intervals;  // bootstrap confidence interval {lower, upper} of each threshold
+    @Expose
     protected String eval_strategy;
     @Expose
     protected String normalizer;
@@ -193,6 +196,14 @@ public abstract class ModelNode {
         this.thresholds = thresholds;
     }
 
+    public Double[][] getThresholdIntervals() {
+        return threshold_intervals;
+    }
+
+    public void setThresholdIntervals(Double[][] thresholdIntervals) {
+        this.threshold_intervals = thresholdIntervals;
+    }
+
     public double getWeight(String modelNodeName) {
         try {
             return weights.get(modelNodeName);
@@ -227,6 +238,22 @@ public abstract class ModelNode {
      */
     public abstract ModelNode clone();
 
+    /**
+     * Plug-ins for a clone of this node: cloneable plug-ins (e.g. normalizers) are copied with their state so clones
+     * can be evaluated concurrently, others are shared. See {@link PluginRegistry#copyOf(Object)}.
+     */
+    protected IEvaluator cloneEvaluatorObject() {
+        return PluginRegistry.copyOf(getEvaluatorObject());
+    }
+
+    protected INormalizer cloneNormalizerObject() {
+        return PluginRegistry.copyOf(getNormalizerObject());
+    }
+
+    protected IUtilityFunction cloneUtilityFunctionObject() {
+        return PluginRegistry.copyOf(getUtilityFunctionObject());
+    }
+
     /**
      * TODO (1.0): Documentation
      */
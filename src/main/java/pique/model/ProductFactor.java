@@ -45,8 +45,8 @@ public class ProductFactor extends ModelNode {
 		Map<String, ModelNode> clonedChildren = new HashMap<>();
 		getChildren().forEach((k, v) -> clonedChildren.put(k, v.clone()));
 
-		return new ProductFactor(getValue(), getName(), getDescription(), getEvaluatorObject(), getNormalizerObject(),
-				getUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
+		return new ProductFactor(getValue(), getName(), getDescription(), cloneEvaluatorObject(), cloneNormalizerObject(),
+				cloneUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
 	}
 
 	@Override
@@ -54,8 +54,8 @@ public class QualityAspect extends ModelNode {
         Map<String, ModelNode> clonedChildren = new HashMap<>();
         getChildren().forEach((k, v) -> clonedChildren.put(k, v.clone()));
 
-        return new QualityAspect(getValue(), getName(), getDescription(), getEvaluatorObject(), getNormalizerObject(),
-                getUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
+        return new QualityAspect(getValue(), getName(), getDescription(), cloneEvaluatorObject(), cloneNormalizerObject(),
+                cloneUtilityFunctionObject(), getWeights(), getThresholds(), clonedChildren);
     }
 
     @Override
@@ -18,10 +18,6 @@ import java.util.*;
  * of the file that describes the quality model and assign their values to the
  * project (or projects) that we want to evaluate.
  */
-/*
- * TODO:
- *   (1) Add checks immediately after model creation that no duplicate node names by-level exist
- */
 public class QualityModel {
 
     // Fields
@@ -260,6 +256,15 @@ public class QualityModel {
         this.tqi = tqi;
     }
 
+    /**
+     * Hashes the whole model on each call; callers that need the fingerprint more than once keep the result.
+     *
+     * @return Merkle fingerprint of the model as it is now, see {@link QualityModelFingerprint}
+     */
+    public QualityModelFingerprint getFingerprint() {
+        return new QualityModelFingerprint(this);
+    }
+
     public IWeighter getWeighter() {
         return weighter;
     }
@@ -2,7 +2,6 @@ package pique.model;
 
 import com.google.gson.annotations.Expose;
 import org.apache.commons.lang3.tuple.Pair;
-import pique.utility.FileUtility;
 
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -15,14 +14,16 @@ import java.util.Map;
  *
  * There is a much better way to handle this instead of having this class, but that can be a future problem to deal with :)
  */
-// TODO (1.0): Better GSON support.  Expose while limiting depth. Current state will cause problems for large quality
-//  models.  Likely not a difficult fix.
+// TODO (1.0): Better GSON support.  The Gson export nests children recursively, which will cause problems for large
+//  quality models; use QualityModelStreamExport#setMaxDepth to write deeper children as name references instead.
 public class QualityModelExport {
 
     /// Fields ///
     @Expose
     private String name;
     @Expose
+    private String fingerprint;
+    @Expose
     private Map<String, String> additionalData = new HashMap<>();
     @Expose
     private Map<String, String> global_config = new HashMap<>();
@@ -45,6 +46,13 @@ public class QualityModelExport {
 
         // Basic info
         this.name = qualityModel.getName();
+        try {
+            this.fingerprint = qualityModel.getFingerprint().getHash();
+        } catch (RuntimeException e) {
+            // Cycle or dangling child; export without a fingerprint
+            System.out.println("* Exporting quality model " + qualityModel.getName() + " without a fingerprint: " +
+                    e.getMessage());
+        }
         this.global_config.put("benchmark_strategy", qualityModel.getBenchmarker().getName());
         this.global_config.put("weights_strategy", qualityModel.getWeighter().getName());
         if (optional.length > 0 ) { for (Pair<String, String> entry : optional) { additionalData.put(entry.getKey(), entry.getValue()); }}
@@ -78,6 +86,10 @@ public class QualityModelExport {
         return additionalData;
     }
 
+    public Map<String, String> getGlobalConfig() {
+        return global_config;
+    }
+
     public Map<String, ModelNode> getDiagnostics() {
         return diagnostics;
     }
@@ -98,6 +110,10 @@ public class QualityModelExport {
         return name;
     }
 
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
 
     /// Methods ///
     /**
@@ -109,6 +125,6 @@ public class QualityModelExport {
      * 		The path of the exported model file.
      */
     public Path exportToJson(String fileName, Path outputDirectory) {
-        return FileUtility.exportObjectToJson(this, outputDirectory, fileName);
+        return new QualityModelStreamExport(this).exportToJson(fileName, outputDirectory);
     }
 }
@@ -0,0 +1,162 @@
+package pique.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Merkle-style SHA-256 identity of a {@link QualityModel}, for use as a cache key.
+ * <p>
+ * The hash of a node covers its type, name, evaluator, normalizer and utility function classes, weights, thresholds,
+ * the measure's positive flag or diagnostic's tool name, and the names and hashes of its children. The model hash
+ * covers the benchmarker and weighter classes and the TQI node's hash. Everything that changes evaluation results is
+ * covered; values, descriptions, threshold intervals and findings are not. Children and weights are hashed in name
+ * order, so the hash does not depend on map iteration order.
+ * </p>
+ * <p>
+ * Each node is hashed once however many parents it has. The hash of every node (i.e. of the subtree below it) can
+ * be queried, so results cached per subtree can be reused after a small model edit changes only the hashes on the
+ * path from the edited node up to the TQI.
+ * The fingerprint is a snapshot: it does not follow later changes to the model.
+ * </p>
+ */
+public class QualityModelFingerprint {
+
+    private static final byte[] MODEL_TAG = "pique.QualityModel/1".getBytes(StandardCharsets.UTF_8);
+
+    // Fields
+    private final String hash;
+    private final Map<ModelNode, byte[]> nodeHashes = new IdentityHashMap<>();
+    private final Map<String, String> subtreeHashes = new HashMap<>();
+    private final MessageDigest digest;
+
+
+    // Constructor
+
+    public QualityModelFingerprint(QualityModel qualityModel) {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+
+        byte[] tqiHash = hash(qualityModel.getTqi(), Collections.newSetFromMap(new IdentityHashMap<>()));
+        digest.update(MODEL_TAG);
+        update(className(qualityModel.getBenchmarker()));
+        update(className(qualityModel.getWeighter()));
+        digest.update(tqiHash);
+        this.hash = hex(digest.digest());
+    }
+
+
+    // Getters
+
+    /**
+     * @return hex SHA-256 of the model
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return hex SHA-256 of the subtree below the named node, or null if the model has no such node
+     */
+    public String getSubtreeHash(String nodeName) {
+        return subtreeHashes.get(nodeName);
+    }
+
+    /**
+     * @return {Key: node name, Value: hex SHA-256 of the subtree below the node} of every node of the model
+     */
+    public Map<String, String> getSubtreeHashes() {
+        return Collections.unmodifiableMap(subtreeHashes);
+    }
+
+    @Override
+    public String toString() {
+        return hash;
+    }
+
+
+    // Methods
+
+    private byte[] hash(ModelNode node, Set<ModelNode> inProgress) {
+        byte[] known = nodeHashes.get(node);
+        if (known != null) return known;
+        if (!inProgress.add(node)) {
+            throw new RuntimeException("Unable to fingerprint quality model: node '" + node.getName() + "' is on a cycle.");
+        }
+
+        // Children first, each shared subtree only once
+        SortedMap<String, byte[]> childHashes = new TreeMap<>();
+        for (Map.Entry<String, ModelNode> child : node.getChildren().entrySet()) {
+            if (child.getValue() instanceof Finding) continue;
+            childHashes.put(child.getKey(), hash(child.getValue(), inProgress));
+        }
+
+        digest.reset();
+        update(node.getClass().getName());
+        update(node.getName());
+        update(className(node.getEvaluatorObject()));
+        update(className(node.getNormalizerObject()));
+        update(className(node.getUtilityFunctionObject()));
+        if (node instanceof Measure) digest.update((byte) (((Measure) node).isPositive() ? 1 : 0));
+        if (node instanceof Diagnostic) update(((Diagnostic) node).getToolName());
+
+        SortedMap<String, Double> weights = node.getWeights() == null
+                ? new TreeMap<>()
+                : new TreeMap<>(node.getWeights());
+        update(weights.size());
+        weights.forEach((name, weight) -> {
+            update(name);
+            update(weight);
+        });
+
+        Double[] thresholds = node.getThresholds();
+        update(thresholds == null ? -1 : thresholds.length);
+        if (thresholds != null) for (Double threshold : thresholds) update(threshold);
+
+        update(childHashes.size());
+        childHashes.forEach((name, childHash) -> {
+            update(name);
+            digest.update(childHash);
+        });
+
+        byte[] nodeHash = digest.digest();
+        inProgress.remove(node);
+        nodeHashes.put(node, nodeHash);
+        subtreeHashes.put(node.getName(), hex(nodeHash));
+        return nodeHash;
+    }
+
+    private void update(String value) {
+        if (value == null) {
+            update(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        update(bytes.length);
+        digest.update(bytes);
+    }
+
+    private void update(int value) {
+        digest.update(ByteBuffer.allocate(4).putInt(value).array());
+    }
+
+    private void update(Double value) {
+        digest.update(ByteBuffer.allocate(8)
+                .putLong(value == null ? 0x7ff8dead00000000L : Double.doubleToLongBits(value)).array());
+    }
+
+    private static String className(Object plugin) {
+        return plugin == null ? null : plugin.getClass().getName();
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return hex.toString();
+    }
+}
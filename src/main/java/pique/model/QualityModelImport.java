@@ -10,9 +10,8 @@ import pique.calibration.NaiveBenchmarker;
 import pique.calibration.NaiveWeighter;
 import pique.evaluation.*;
 
-import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.lang.reflect.InvocationTargetException;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
 
@@ -36,6 +35,7 @@ import java.util.*;
 public class QualityModelImport {
 
     // Private Fields
+    private final Path qmFileLocation;
     private QualityModel qualityModel = new QualityModel();
 
     private ModelNode tqi;
@@ -43,6 +43,8 @@ public class QualityModelImport {
     private Map<String, ModelNode> productFactors = new HashMap<>();
     private Map<String, ModelNode> measures = new HashMap<>();
     private Map<String, ModelNode> diagnostics = new HashMap<>();
+    // {Key: node name, Value: node} of every node in the file, built once all layers are instanced
+    private Map<String, ModelNode> allModelNodes;
 
     private JsonObject jsonQm;
     private JsonObject jsonTqi;
@@ -56,10 +58,10 @@ public class QualityModelImport {
     // Constructor
 
     public QualityModelImport(Path qmFileLocation) {
-        try {
-            FileReader fr = new FileReader(qmFileLocation.toString());
+        this.qmFileLocation = qmFileLocation;
+        try (FileReader fr = new FileReader(qmFileLocation.toString())) {
             jsonQm = new JsonParser().parse(fr).getAsJsonObject();
-        } catch (FileNotFoundException e) {
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
@@ -70,8 +72,8 @@ public class QualityModelImport {
     /**
      * One-shot run of model import.
      * <p>
-     * Note: The procedures assume that each model node name is unique.
-     * TODO (1.0): Pre-check that all model node names in the QM file are unique
+     * Note: The procedures assume that each model node name is unique. This, and that the children lists form an
+     * acyclic graph, is checked by {@link QualityModelValidator} once the edges are connected.
      *
      * @return A PIQUE JVM object of the quality model file.
      */
@@ -96,14 +98,17 @@ public class QualityModelImport {
         measures = instanceMeasuresFromJson(jsonMeasures);
         diagnostics = instanceDiagnosticsFromJson(jsonDiagnostics);
 
+        allModelNodes = indexModelNodes(tqi, qualityAspects, productFactors, measures, diagnostics);
+
         // Use ModelNode instances to connect edges using name matching, bottom to top
         jsonMeasures.entrySet().forEach(jsonEntry -> connectNodeEdges(jsonEntry, NodeType.MEASURE));
         jsonProductFactors.entrySet().forEach(jsonEntry -> connectNodeEdges(jsonEntry, NodeType.PRODUCT_FACTOR));
         jsonQualityAspects.entrySet().forEach(jsonEntry -> connectNodeEdges(jsonEntry, NodeType.QUALITY_ASPECT));
         jsonTqi.entrySet().forEach(jsonEntry -> connectNodeEdges(jsonEntry, NodeType.TQI));
-
         // Connect the TQI node to the quality model
         qualityModel.setTqi((Tqi)tqi);
+        QualityModelValidator.validate(qualityModel, qualityAspects, productFactors, measures, diagnostics)
+                .report(qmFileLocation);
 
         // With nodes instances, children connected, and configurations assigned to properties, finally return the
         // object.
@@ -112,7 +117,8 @@ public class QualityModelImport {
 
     /**
      * Parse the quality model file for "children" entries and connect the child node instances using name matching.
-     * This method assumes {@link ModelNode} instances already exist for each node described in the quality model file.
+     * This method assumes {@link ModelNode} instances already exist for each node described in the quality model file
+     * and are indexed in allModelNodes.
      *
      * @param targetNodeJson
      *      The JsonElement representation of the connect node to connect children to.
@@ -123,14 +129,6 @@ public class QualityModelImport {
         String targetNodeName = targetNodeJson.getKey();
         JsonObject targetNodeValues = targetNodeJson.getValue().getAsJsonObject();
 
-        // Make a single map collection of all model nodes (useful later)
-        Map<String, ModelNode> allModelNodes = new HashMap<>();
-        allModelNodes.put(tqi.getName(), tqi);
-        allModelNodes.putAll(qualityAspects);
-        allModelNodes.putAll(productFactors);
-        allModelNodes.putAll(measures);
-        allModelNodes.putAll(diagnostics);
-
         // If child nodes are explicitly listed in the qm file, directly make the connections
         if (targetNodeValues.get("children") != null) {
 
@@ -140,8 +138,7 @@ public class QualityModelImport {
             children.entrySet().forEach(childJsonElement -> childrenNames.add(childJsonElement.getKey()));
 
             // Add the specified children to the ModelNode
-            ModelNode rootNode = allModelNodes.get(targetNodeName);
-            childrenNames.forEach(name -> rootNode.setChild(allModelNodes.get(name)));
+            connectChildren(allModelNodes.get(targetNodeName), childrenNames, allModelNodes);
         }
 
         // Otherwise, assume fully connected using the node type below it (e.g. if targetNodeJson is of type
@@ -168,33 +165,77 @@ public class QualityModelImport {
         }
     }
 
-    private IEvaluator getEvluatorFromConfiguration(JsonObject jsonQmNode, String nodeTypeQm) {
-        if (jsonQmNode.get("eval_strategy") != null) {
-            String fullClassName = jsonQmNode.get("eval_strategy").getAsString();
-            try {
-                return (IEvaluator) Class.forName(fullClassName).getConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
+    /**
+     * @return {Key: node name, Value: node} of the given node layers
+     */
+    @SafeVarargs
+    static Map<String, ModelNode> indexModelNodes(ModelNode tqi, Map<String, ModelNode>... layers) {
+        int size = 1;
+        for (Map<String, ModelNode> layer : layers) size += layer.size();
+
+        Map<String, ModelNode> allModelNodes = new HashMap<>(size * 4 / 3 + 1);
+        allModelNodes.put(tqi.getName(), tqi);
+        for (Map<String, ModelNode> layer : layers) allModelNodes.putAll(layer);
+        return allModelNodes;
+    }
+
+    /**
+     * Connect the named children to a node using the node index.
+     *
+     * @throws RuntimeException
+     *      If a child name does not match any node of the quality model
+     */
+    static void connectChildren(ModelNode parent, List<String> childrenNames, Map<String, ModelNode> allModelNodes) {
+        for (String childName : childrenNames) {
+            ModelNode child = allModelNodes.get(childName);
+            if (child == null) {
+                throw new RuntimeException("Node '" + parent.getName() + "' lists child '" + childName + "', but no " +
+                        "node with that name exists in the quality model file.");
             }
+            parent.setChild(child);
+        }
+    }
+
+    private IEvaluator getEvluatorFromConfiguration(JsonObject jsonQmNode, String nodeTypeQm) {
+        String fullClassName = jsonQmNode.get("eval_strategy") != null
+                ? jsonQmNode.get("eval_strategy").getAsString()
+                : null;
+        return instanceEvaluator(fullClassName, nodeTypeQm);
+    }
+
+    /**
+     * Instance a plug-in class (evaluator, normalizer, utility function, benchmarker, weighter) by its fully
+     * qualified class name. See {@link PluginRegistry} for constructor caching and sharing of stateless plug-ins.
+     */
+    static <T> T instancePlugin(String fullClassName) {
+        return PluginRegistry.instance(fullClassName);
+    }
+
+    /**
+     * @param fullClassName
+     *      The node's 'eval_strategy' configuration, or null to use the default evaluator of the node type
+     */
+    static IEvaluator instanceEvaluator(String fullClassName, String nodeTypeQm) {
+        if (fullClassName != null) {
+            return instancePlugin(fullClassName);
         }
         else {
             switch (nodeTypeQm.toLowerCase()) {
                 case "diagnostic":
-                    return new DefaultDiagnosticEvaluator();
+                    return PluginRegistry.instance(DefaultDiagnosticEvaluator.class);
                 case "factor":
                 case "qualityaspect":
                 case "quality_aspect":
                 case "quality aspect":
-                    return new DefaultFactorEvaluator();
+                    return PluginRegistry.instance(DefaultFactorEvaluator.class);
                 case "finding":
-                    return new DefaultFindingEvaluator();
+                    return PluginRegistry.instance(DefaultFindingEvaluator.class);
                 case "measure":
-                    return new DefaultMeasureEvaluator();
+                    return PluginRegistry.instance(DefaultMeasureEvaluator.class);
                 case "productfactor":
                 case "product factor":
                 case "product_factor":
-                    return new DefaultProductFactorEvaluator();
+                    return PluginRegistry.instance(DefaultProductFactorEvaluator.class);
                 default:
                     throw new RuntimeException("switch statement did not match nodeTypeQm parameter.");
             }
@@ -202,18 +243,13 @@ public class QualityModelImport {
     }
 
     private INormalizer getNormalizerFromConfiguration(JsonObject jsonQmNode) {
-        if (jsonQmNode.get("normalizer") != null) {
-            String fullClassName = jsonQmNode.get("normalizer").getAsString();
-            try {
-                return (INormalizer) Class.forName(fullClassName).getConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
-            }
-        }
-        else {
-            return new DefaultNormalizer();
-        }
+        return instanceNormalizer(jsonQmNode.get("normalizer") != null
+                ? jsonQmNode.get("normalizer").getAsString()
+                : null);
+    }
+
+    static INormalizer instanceNormalizer(String fullClassName) {
+        return fullClassName != null ? instancePlugin(fullClassName) : PluginRegistry.instance(DefaultNormalizer.class);
     }
 
     private Double[] getThresholdsFromConfiguration(JsonObject jsonQmNode) {
@@ -232,21 +268,33 @@ public class QualityModelImport {
         }
     }
 
-    private IUtilityFunction getUtilityFunctionFromConfiguration(JsonObject jsonQmNode) {
-        if (jsonQmNode.get("utility_function") != null) {
-            String fullClassName = jsonQmNode.get("utility_function").getAsString();
-            try {
-                return (IUtilityFunction) Class.forName(fullClassName).getConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
+    private Double[][] getThresholdIntervalsFromConfiguration(JsonObject jsonQmNode) {
+        if (jsonQmNode.get("threshold_intervals") != null && jsonQmNode.get("threshold_intervals").isJsonArray()) {
+
+            JsonArray jsonIntervals = jsonQmNode.getAsJsonArray("threshold_intervals");
+            Double[][] intervals = new Double[jsonIntervals.size()][];
+            for (int i = 0; i < intervals.length; i++) {
+                JsonArray jsonInterval = jsonIntervals.get(i).getAsJsonArray();
+                intervals[i] = new Double[] { jsonInterval.get(0).getAsDouble(), jsonInterval.get(1).getAsDouble() };
             }
+
+            return intervals;
         }
         else {
-            return new DefaultUtility();
+            return null;
         }
     }
 
+    private IUtilityFunction getUtilityFunctionFromConfiguration(JsonObject jsonQmNode) {
+        return instanceUtilityFunction(jsonQmNode.get("utility_function") != null
+                ? jsonQmNode.get("utility_function").getAsString()
+                : null);
+    }
+
+    static IUtilityFunction instanceUtilityFunction(String fullClassName) {
+        return fullClassName != null ? instancePlugin(fullClassName) : PluginRegistry.instance(DefaultUtility.class);
+    }
+
     private Map<String, Double> getWeightsFromConfiguration(JsonObject jsonQmNode) {
         if (jsonQmNode.get("weights") != null) {
 
@@ -270,18 +318,16 @@ public class QualityModelImport {
      */
     private IBenchmarker instanceBenchmarkerFromJson() {
         if (jsonQm.getAsJsonObject("global_config") != null && jsonQm.getAsJsonObject("global_config").get("benchmark_strategy") != null) {
-            String fullClassName = jsonQm.getAsJsonObject("global_config").get("benchmark_strategy").getAsString();
-            try {
-                return (IBenchmarker) Class.forName(fullClassName).getConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                e.printStackTrace();
-                throw new RuntimeException();
-            }
+            return instanceBenchmarker(jsonQm.getAsJsonObject("global_config").get("benchmark_strategy").getAsString());
         } else {
-            return new NaiveBenchmarker();
+            return instanceBenchmarker(null);
         }
     }
 
+    static IBenchmarker instanceBenchmarker(String fullClassName) {
+        return fullClassName != null ? instancePlugin(fullClassName) : PluginRegistry.instance(NaiveBenchmarker.class);
+    }
+
     /**
      * Example from measuresJson node:
          "diagnostics": {
@@ -365,6 +411,7 @@ public class QualityModelImport {
             // Instance the measure
             Measure m = new Measure(measureName, measureDescription, evaluator, normalizer, utilityFunction, weights,
                     thresholds, positive);
+            m.setThresholdIntervals(getThresholdIntervalsFromConfiguration(jsonMeasure));
 
 
             // Add to the collection
@@ -504,16 +551,14 @@ public class QualityModelImport {
      */
     private IWeighter instanceWeighterFromJson() {
         if (jsonQm.getAsJsonObject("global_config") != null && jsonQm.getAsJsonObject("global_config").get("weights_strategy") != null) {
-            String fullClassName = jsonQm.getAsJsonObject("global_config").get("weights_strategy").getAsString();
-            try {
-                return (IWeighter) Class.forName(fullClassName).getConstructor().newInstance();
-            } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException | ClassNotFoundException e) {
-                e.printStackTrace();
-                throw new RuntimeException();
-            }
+            return instanceWeighter(jsonQm.getAsJsonObject("global_config").get("weights_strategy").getAsString());
         } else {
-            return new NaiveWeighter();
+            return instanceWeighter(null);
         }
     }
 
+    static IWeighter instanceWeighter(String fullClassName) {
+        return fullClassName != null ? instancePlugin(fullClassName) : PluginRegistry.instance(NaiveWeighter.class);
+    }
+
 }
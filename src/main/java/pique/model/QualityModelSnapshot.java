@@ -0,0 +1,470 @@
+package pique.model;
+
+import pique.calibration.IBenchmarker;
+import pique.calibration.IWeighter;
+import pique.evaluation.IEvaluator;
+import pique.evaluation.INormalizer;
+import pique.evaluation.IUtilityFunction;
+import pique.evaluation.PluginRegistry;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary snapshot of a (derived) {@link QualityModel}, for starting evaluations without parsing the JSON
+ * quality model file.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ *   header:   int magic "PQMS" | short version | short reserved | long source file CRC32 | int payload length |
+ *             int payload CRC32
+ *   payload:  string table      int count, then per string: int UTF-8 byte length, bytes
+ *             model             int name | int benchmarker class | int weighter class       (string ids)
+ *             nodes             int count, then per node: byte type tag | int name | int description |
+ *                               int evaluator class | int normalizer class | int utility function class |
+ *                               int tool name (-1 if none) | byte positive
+ *             tqi               int node index
+ *             edges (CSR)       int[count + 1] row offsets | int[edges] child node indices
+ *             weights (CSR)     int[count + 1] row offsets | int[weights] child name ids | double[weights] values |
+ *                               byte[weights] present (0 for a null weight, written as value 0)
+ *             thresholds        per node: int length (-1 for null), then nullable doubles
+ *             intervals         per node: int length (-1 for null), then per interval: byte present, then
+ *                               {lower, upper} nullable doubles
+ * </pre>
+ * A nullable double is a byte present flag (0 for null), followed by the double if present.
+ * Plug-ins are stored as class-name string ids and instanced through the {@link PluginRegistry}. The source file
+ * checksum identifies the JSON file a snapshot was compiled from, so a snapshot whose JSON file has since changed can
+ * be detected as stale and rebuilt (see {@link #loadOrImport(Path, Path)}). Snapshots are loaded through a
+ * memory-mapped buffer.
+ * </p>
+ */
+public final class QualityModelSnapshot {
+
+    public static final int MAGIC = 0x50514D53;  // "PQMS"
+    public static final short VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 8 + 4 + 4;
+
+    // Node type tags
+    private static final byte TQI = 0;
+    private static final byte QUALITY_ASPECT = 1;
+    private static final byte PRODUCT_FACTOR = 2;
+    private static final byte MEASURE = 3;
+    private static final byte DIAGNOSTIC = 4;
+
+    private QualityModelSnapshot() { }
+
+
+    // Methods
+
+    /**
+     * Import a quality model, using its snapshot if the snapshot exists and was compiled from the current version of
+     * the JSON file. Otherwise the JSON file is imported and the snapshot (re)written. Loaded snapshots are validated
+     * once per model version (see {@link QualityModelValidator#validate(QualityModel)}).
+     */
+    public static QualityModel loadOrImport(Path qmFile, Path snapshotFile) {
+        if (isCurrent(snapshotFile, qmFile)) {
+            try {
+                QualityModel qualityModel = load(snapshotFile);
+                QualityModelValidator.validate(qualityModel).report(snapshotFile);
+                return qualityModel;
+            } catch (RuntimeException e) {
+                System.out.println("* Unable to load quality model snapshot " + snapshotFile + " (" + e.getMessage() +
+                        "), importing " + qmFile + " instead.");
+            }
+        }
+        QualityModel qualityModel = new QualityModelStreamImport(qmFile).importQualityModel();
+        export(qualityModel, qmFile, snapshotFile);
+        return qualityModel;
+    }
+
+    /**
+     * Compile a quality model to an in-memory snapshot payload, for instancing independent copies of the model with
+     * {@link #instance(ByteBuffer)} (e.g. one per project evaluated concurrently) without importing it again.
+     */
+    public static ByteBuffer compile(QualityModel qualityModel) {
+        try {
+            return ByteBuffer.wrap(encode(qualityModel)).asReadOnlyBuffer();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to compile quality model " + qualityModel.getName(), e);
+        }
+    }
+
+    /**
+     * @param compiled
+     *      A payload from {@link #compile(QualityModel)}. It is not modified, so it can be shared between threads.
+     * @return a new instance of the compiled quality model
+     */
+    public static QualityModel instance(ByteBuffer compiled) {
+        return decode(compiled.duplicate());
+    }
+
+    /**
+     * @return true if the snapshot file exists, has a supported version, and was compiled from the given JSON file in
+     *      its current state
+     */
+    public static boolean isCurrent(Path snapshotFile, Path qmFile) {
+        if (!Files.isRegularFile(snapshotFile) || !Files.isRegularFile(qmFile)) return false;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) return false;
+            in.readShort();
+            return in.readLong() == checksum(qmFile);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a snapshot of a quality model that did not come from a JSON file.
+     */
+    public static Path export(QualityModel qualityModel, Path snapshotFile) {
+        return export(qualityModel, null, snapshotFile);
+    }
+
+    /**
+     * @param qualityModel
+     *      The model to write
+     * @param qmFile
+     *      The JSON file the model was imported from, or null
+     * @param snapshotFile
+     *      The snapshot file to (over)write. Its directory does not need to exist beforehand.
+     * @return
+     *      The path of the snapshot file
+     */
+    public static Path export(QualityModel qualityModel, Path qmFile, Path snapshotFile) {
+        try {
+            byte[] payload = encode(qualityModel);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            if (snapshotFile.toAbsolutePath().getParent() != null) {
+                Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(snapshotFile)))) {
+                out.writeInt(MAGIC);
+                out.writeShort(VERSION);
+                out.writeShort(0);
+                out.writeLong(qmFile != null ? checksum(qmFile) : 0L);
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            }
+            return snapshotFile;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write quality model snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Load a quality model from a snapshot file.
+     *
+     * @throws RuntimeException
+     *      If the file is not a snapshot, has an unsupported version, or is corrupted
+     */
+    public static QualityModel load(Path snapshotFile) {
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                throw new RuntimeException(snapshotFile + " is not a quality model snapshot.");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new RuntimeException("Unsupported quality model snapshot version " + version + ".");
+            }
+            buffer.getShort();
+            buffer.getLong();
+            int payloadLength = buffer.getInt();
+            int payloadChecksum = buffer.getInt();
+            if (buffer.remaining() != payloadLength) {
+                throw new RuntimeException("Quality model snapshot " + snapshotFile + " is truncated.");
+            }
+
+            ByteBuffer payload = buffer.slice();
+            CRC32 crc = new CRC32();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != payloadChecksum) {
+                throw new RuntimeException("Quality model snapshot " + snapshotFile + " is corrupted.");
+            }
+            return decode(payload);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read quality model snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * @return CRC32 of the file's contents
+     */
+    public static long checksum(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            return crc.getValue();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read " + file, e);
+        }
+    }
+
+    //region Encoding
+
+    private static byte[] encode(QualityModel qualityModel) throws IOException {
+
+        // Index the nodes (by identity: shared nodes of the model DAG are stored once), parents before children
+        List<ModelNode> nodes = new ArrayList<>();
+        Map<ModelNode, Integer> nodeIndex = new IdentityHashMap<>();
+        Deque<ModelNode> queue = new ArrayDeque<>();
+        queue.add(qualityModel.getTqi());
+        nodeIndex.put(qualityModel.getTqi(), 0);
+        nodes.add(qualityModel.getTqi());
+        while (!queue.isEmpty()) {
+            for (ModelNode child : queue.removeFirst().getChildren().values()) {
+                if (!nodeIndex.containsKey(child)) {
+                    nodeIndex.put(child, nodes.size());
+                    nodes.add(child);
+                    queue.addLast(child);
+                }
+            }
+        }
+
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+
+        out.writeInt(strings.id(qualityModel.getName()));
+        out.writeInt(strings.id(qualityModel.getBenchmarker().getClass().getName()));
+        out.writeInt(strings.id(qualityModel.getWeighter().getClass().getName()));
+
+        out.writeInt(nodes.size());
+        for (ModelNode node : nodes) {
+            out.writeByte(typeTag(node));
+            out.writeInt(strings.id(node.getName()));
+            out.writeInt(strings.id(node.getDescription()));
+            out.writeInt(strings.id(node.getEvaluatorObject().getClass().getName()));
+            out.writeInt(strings.id(node.getNormalizerObject().getClass().getName()));
+            out.writeInt(strings.id(node.getUtilityFunctionObject().getClass().getName()));
+            out.writeInt(node instanceof Diagnostic ? strings.id(((Diagnostic) node).getToolName()) : -1);
+            out.writeByte(node instanceof Measure && ((Measure) node).isPositive() ? 1 : 0);
+        }
+        out.writeInt(0);
+
+        // Edges
+        int offset = 0;
+        out.writeInt(offset);
+        for (ModelNode node : nodes) {
+            offset += node.getChildren().size();
+            out.writeInt(offset);
+        }
+        for (ModelNode node : nodes) {
+            for (ModelNode child : node.getChildren().values()) out.writeInt(nodeIndex.get(child));
+        }
+
+        // Weights
+        offset = 0;
+        out.writeInt(offset);
+        for (ModelNode node : nodes) {
+            offset += node.getWeights().size();
+            out.writeInt(offset);
+        }
+        for (ModelNode node : nodes) {
+            for (String weightName : node.getWeights().keySet()) out.writeInt(strings.id(weightName));
+        }
+        for (ModelNode node : nodes) {
+            for (Double weight : node.getWeights().values()) out.writeDouble(weight == null ? 0 : weight);
+        }
+        for (ModelNode node : nodes) {
+            for (Double weight : node.getWeights().values()) out.writeByte(weight == null ? 0 : 1);
+        }
+
+        // Thresholds and threshold intervals
+        for (ModelNode node : nodes) {
+            Double[] thresholds = node.getThresholds();
+            out.writeInt(thresholds == null ? -1 : thresholds.length);
+            if (thresholds != null) for (Double threshold : thresholds) writeNullable(out, threshold);
+        }
+        for (ModelNode node : nodes) {
+            Double[][] intervals = node.getThresholdIntervals();
+            out.writeInt(intervals == null ? -1 : intervals.length);
+            if (intervals != null) {
+                for (Double[] interval : intervals) {
+                    out.writeByte(interval == null ? 0 : 1);
+                    if (interval == null) continue;
+                    writeNullable(out, interval[0]);
+                    writeNullable(out, interval[1]);
+                }
+            }
+        }
+        out.flush();
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(body.size() + strings.bytes + 4 * strings.size() + 4);
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        strings.write(payloadOut);
+        body.writeTo(payloadOut);
+        payloadOut.flush();
+        return payload.toByteArray();
+    }
+
+    private static void writeNullable(DataOutputStream out, Double value) throws IOException {
+        out.writeByte(value == null ? 0 : 1);
+        if (value != null) out.writeDouble(value);
+    }
+
+    private static byte typeTag(ModelNode node) {
+        if (node instanceof Tqi) return TQI;
+        if (node instanceof QualityAspect) return QUALITY_ASPECT;
+        if (node instanceof ProductFactor) return PRODUCT_FACTOR;
+        if (node instanceof Measure) return MEASURE;
+        if (node instanceof Diagnostic) return DIAGNOSTIC;
+        throw new RuntimeException("Quality model snapshots do not support " + node.getClass().getSimpleName() +
+                " nodes; snapshot the quality model before evaluating a project.");
+    }
+
+    private static class StringTable {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<byte[]> encoded = new ArrayList<>();
+        private int bytes;
+
+        private int id(String string) {
+            if (string == null) return -1;
+            return ids.computeIfAbsent(string, s -> {
+                byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+                encoded.add(utf8);
+                bytes += utf8.length;
+                return encoded.size() - 1;
+            });
+        }
+
+        private int size() {
+            return encoded.size();
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeInt(encoded.size());
+            for (byte[] utf8 : encoded) {
+                out.writeInt(utf8.length);
+                out.write(utf8);
+            }
+        }
+    }
+
+    //endregion
+
+    //region Decoding
+
+    private static QualityModel decode(ByteBuffer in) {
+        String[] strings = new String[in.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] utf8 = new byte[in.getInt()];
+            in.get(utf8);
+            strings[i] = new String(utf8, StandardCharsets.UTF_8);
+        }
+
+        String name = string(strings, in.getInt());
+        IBenchmarker benchmarker = PluginRegistry.instance(string(strings, in.getInt()));
+        IWeighter weighter = PluginRegistry.instance(string(strings, in.getInt()));
+
+        int nodeCount = in.getInt();
+        ModelNode[] nodes = new ModelNode[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            byte tag = in.get();
+            String nodeName = string(strings, in.getInt());
+            String description = string(strings, in.getInt());
+            IEvaluator evaluator = PluginRegistry.instance(string(strings, in.getInt()));
+            INormalizer normalizer = PluginRegistry.instance(string(strings, in.getInt()));
+            IUtilityFunction utilityFunction = PluginRegistry.instance(string(strings, in.getInt()));
+            String toolName = string(strings, in.getInt());
+            boolean positive = in.get() != 0;
+
+            switch (tag) {
+                case TQI:
+                    nodes[i] = new Tqi(nodeName, description, evaluator, normalizer, utilityFunction, null, null);
+                    break;
+                case QUALITY_ASPECT:
+                    nodes[i] = new QualityAspect(nodeName, description, evaluator, normalizer, utilityFunction, null,
+                            null);
+                    break;
+                case PRODUCT_FACTOR:
+                    nodes[i] = new ProductFactor(nodeName, description, evaluator, normalizer, utilityFunction, null,
+                            null);
+                    break;
+                case MEASURE:
+                    nodes[i] = new Measure(nodeName, description, evaluator, normalizer, utilityFunction, null, null,
+                            positive);
+                    break;
+                case DIAGNOSTIC:
+                    nodes[i] = new Diagnostic(nodeName, description, toolName, evaluator, normalizer, utilityFunction,
+                            null, null);
+                    break;
+                default:
+                    throw new RuntimeException("Unknown node type tag " + tag + " in quality model snapshot.");
+            }
+        }
+        Tqi tqi = (Tqi) nodes[in.getInt()];
+
+        // Edges
+        int[] edgeOffsets = ints(in, nodeCount + 1);
+        int[] childIndices = ints(in, edgeOffsets[nodeCount]);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int e = edgeOffsets[i]; e < edgeOffsets[i + 1]; e++) nodes[i].setChild(nodes[childIndices[e]]);
+        }
+
+        // Weights
+        int[] weightOffsets = ints(in, nodeCount + 1);
+        int[] weightNames = ints(in, weightOffsets[nodeCount]);
+        double[] weightValues = new double[weightOffsets[nodeCount]];
+        in.asDoubleBuffer().get(weightValues);
+        in.position(in.position() + 8 * weightValues.length);
+        byte[] weightPresent = new byte[weightValues.length];
+        in.get(weightPresent);
+        for (int i = 0; i < nodeCount; i++) {
+            for (int w = weightOffsets[i]; w < weightOffsets[i + 1]; w++) {
+                nodes[i].getWeights().put(strings[weightNames[w]], weightPresent[w] != 0 ? weightValues[w] : null);
+            }
+        }
+
+        // Thresholds and threshold intervals
+        for (ModelNode node : nodes) {
+            int length = in.getInt();
+            if (length < 0) continue;
+            Double[] thresholds = new Double[length];
+            for (int t = 0; t < length; t++) thresholds[t] = readNullable(in);
+            node.setThresholds(thresholds);
+        }
+        for (ModelNode node : nodes) {
+            int length = in.getInt();
+            if (length < 0) continue;
+            Double[][] intervals = new Double[length][];
+            for (int t = 0; t < length; t++) {
+                if (in.get() != 0) intervals[t] = new Double[] { readNullable(in), readNullable(in) };
+            }
+            node.setThresholdIntervals(intervals);
+        }
+
+        return new QualityModel(name, tqi, benchmarker, weighter);
+    }
+
+    private static Double readNullable(ByteBuffer in) {
+        return in.get() != 0 ? in.getDouble() : null;
+    }
+
+    private static String string(String[] strings, int id) {
+        return id < 0 ? null : strings[id];
+    }
+
+    private static int[] ints(ByteBuffer in, int count) {
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    //endregion
+}
@@ -0,0 +1,365 @@
+package pique.model;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming writer of a {@link QualityModelExport}.
+ * <p>
+ * Writes the export node by node through a {@link JsonWriter} on a buffered file channel, instead of building the
+ * whole document as one String first (see {@link pique.utility.FileUtility#exportObjectToJson}). The field layout is
+ * the one Gson produces for {@link QualityModelExport}: top-level fields in declaration order, node subclass fields
+ * (positive, toolName) before the {@link ModelNode} fields, and null fields left out. With pretty printing on and
+ * gzip off the output is byte for byte the same as the Gson export.
+ * </p>
+ * <p>
+ * By default every node's children are written out in full, recursively, so a node reachable through several parents
+ * is repeated under each of them. A maximum depth limits how many levels of children are nested under each entry;
+ * beyond it a child is written as a reference, i.e. its name with an empty object, as in quality model description
+ * files. Every model node still appears in full exactly once, in its layer section ("factors", "measures",
+ * "diagnostics"), so a maximum depth of 0 gives an export linear in the model size that both
+ * {@link QualityModelImport} and {@link QualityModelStreamImport} read as is. Findings are not part of any layer
+ * section and are always written in full under their diagnostic.
+ * </p>
+ * <p>
+ * The {@link ResultDetail} decides which parts of the graph are written at all. Parts that are not needed are skipped
+ * while writing and never serialized: {@link ResultDetail#SUMMARY} writes only the "tqi" and "quality_aspects"
+ * sections and {@link ResultDetail#VALUES} leaves out every {@link Finding}. With {@link ResultDetail#FULL} and a
+ * number of findings per file, {@link #exportToJson} writes the findings to numbered files next to the export (same
+ * "diagnostics" layout, a diagnostic's findings may span two files) and lists them under "findings_files".
+ * </p>
+ */
+public class QualityModelStreamExport {
+
+    private static final int BUFFER_BYTES = 1 << 16;
+    private static final Set<String> SUMMARY_LAYERS = new HashSet<>(Arrays.asList("tqi", "quality_aspects"));
+
+    // Fields
+    private final QualityModelExport qmExport;
+    private boolean prettyPrinting = true;
+    private boolean gzip = false;
+    private int maxDepth = Integer.MAX_VALUE;
+    private ResultDetail detail = ResultDetail.FULL;
+    private int findingsPerFile = 0;
+
+
+    // Constructor
+
+    public QualityModelStreamExport(QualityModelExport qmExport) {
+        this.qmExport = qmExport;
+    }
+
+
+    // Getters and setters
+
+    public boolean isPrettyPrinting() {
+        return prettyPrinting;
+    }
+
+    /**
+     * @param prettyPrinting
+     *      false for compact output without whitespace
+     */
+    public void setPrettyPrinting(boolean prettyPrinting) {
+        this.prettyPrinting = prettyPrinting;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    /**
+     * @param gzip
+     *      true to gzip the output file (written with a .json.gz suffix)
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param maxDepth
+     *      Number of levels of children written in full under each node entry; deeper children are written as name
+     *      references. 0 writes every child as a reference.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) throw new IllegalArgumentException("Maximum export depth can not be negative.");
+        this.maxDepth = maxDepth;
+    }
+
+    public ResultDetail getDetail() {
+        return detail;
+    }
+
+    public void setDetail(ResultDetail detail) {
+        this.detail = detail;
+    }
+
+    public int getFindingsPerFile() {
+        return findingsPerFile;
+    }
+
+    /**
+     * @param findingsPerFile
+     *      With {@link ResultDetail#FULL}, the maximum number of findings in each findings file written by
+     *      {@link #exportToJson}. 0 writes the findings inline, under their diagnostics.
+     */
+    public void setFindingsPerFile(int findingsPerFile) {
+        if (findingsPerFile < 0) throw new IllegalArgumentException("Findings per file can not be negative.");
+        this.findingsPerFile = findingsPerFile;
+    }
+
+
+    // Methods
+
+    /**
+     * Create a hard-drive file representation of the model
+     *
+     * @param fileName
+     *      What to name the file.  Should not include the '.json' suffix.
+     * @param outputDirectory
+     *      The directory to place the file into.  Does not need to exist beforehand.
+     * @return
+     *      The path of the exported file.
+     */
+    public Path exportToJson(String fileName, Path outputDirectory) {
+        String baseName = fileName.replaceAll("\\s", "");
+        String suffix = gzip ? ".json.gz" : ".json";
+        Path fileOut = outputDirectory.resolve(baseName + suffix);
+
+        List<Finding> pagedFindings = new ArrayList<>();
+        List<String> findingsFiles = new ArrayList<>();
+        if (detail == ResultDetail.FULL && findingsPerFile > 0) {
+            qmExport.getDiagnostics().values().forEach(diagnostic -> diagnostic.getChildren().values().forEach(child -> {
+                if (child instanceof Finding) pagedFindings.add((Finding) child);
+            }));
+            int files = (pagedFindings.size() + findingsPerFile - 1) / findingsPerFile;
+            for (int i = 1; i <= files; i++) findingsFiles.add(baseName + "_findings_" + i + suffix);
+        }
+
+        try {
+            Files.createDirectories(outputDirectory);
+            deleteFindingsFiles(outputDirectory, baseName);
+            try (Writer writer = openWriter(fileOut)) {
+                write(writer, findingsFiles.isEmpty() ? null : findingsFiles);
+            }
+            for (int i = 0; i < findingsFiles.size(); i++) {
+                int from = i * findingsPerFile;
+                List<Finding> page = pagedFindings.subList(from, Math.min(from + findingsPerFile, pagedFindings.size()));
+                try (Writer writer = openWriter(outputDirectory.resolve(findingsFiles.get(i)))) {
+                    writeFindings(writer, page);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to export quality model to " + fileOut, e);
+        }
+        return fileOut;
+    }
+
+    /**
+     * Write the export as JSON to a writer. The writer is flushed but not closed. Findings are not paged: with
+     * {@link ResultDetail#FULL} they are written inline.
+     */
+    public void write(Writer writer) throws IOException {
+        write(writer, null);
+    }
+
+    /**
+     * Delete the findings files of an earlier export under the same name, so pages it wrote beyond the ones of this
+     * export are not left behind
+     */
+    private static void deleteFindingsFiles(Path outputDirectory, String baseName) throws IOException {
+        Pattern findingsFile = Pattern.compile(Pattern.quote(baseName + "_findings_") + "\\d+\\.json(\\.gz)?");
+        List<Path> stale = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(outputDirectory)) {
+            for (Path file : files) {
+                if (findingsFile.matcher(file.getFileName().toString()).matches()) stale.add(file);
+            }
+        }
+        for (Path file : stale) Files.deleteIfExists(file);
+    }
+
+    private Writer openWriter(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_BYTES);
+        if (gzip) out = new GZIPOutputStream(out, BUFFER_BYTES);
+        return new OutputStreamWriter(out, StandardCharsets.UTF_8);
+    }
+
+    private JsonWriter newJsonWriter(Writer writer) {
+        JsonWriter out = new JsonWriter(writer);
+        if (prettyPrinting) out.setIndent("  ");
+        out.setHtmlSafe(false);
+        out.setSerializeNulls(false);
+        return out;
+    }
+
+    /**
+     * @param findingsFiles
+     *      Names of the files the findings are paged into, or null to write them inline
+     */
+    private void write(Writer writer, List<String> findingsFiles) throws IOException {
+        JsonWriter out = newJsonWriter(writer);
+        boolean writeFindings = detail == ResultDetail.FULL && findingsFiles == null;
+        int depthLimit = detail == ResultDetail.SUMMARY ? 0 : maxDepth;
+
+        out.beginObject();
+        if (qmExport.getName() != null) out.name("name").value(qmExport.getName());
+        if (qmExport.getFingerprint() != null) out.name("fingerprint").value(qmExport.getFingerprint());
+        out.name("additionalData");
+        writeStrings(out, qmExport.getAdditionalData());
+        out.name("global_config");
+        writeStrings(out, qmExport.getGlobalConfig());
+
+        out.name("factors").beginObject();
+        for (Map.Entry<String, Map<String, ModelNode>> layer : qmExport.getFactors().entrySet()) {
+            if (detail == ResultDetail.SUMMARY && !SUMMARY_LAYERS.contains(layer.getKey())) continue;
+            out.name(layer.getKey());
+            writeNodes(out, layer.getValue(), depthLimit, writeFindings);
+        }
+        out.endObject();
+
+        if (detail != ResultDetail.SUMMARY) {
+            out.name("measures");
+            writeNodes(out, qmExport.getMeasures(), depthLimit, writeFindings);
+            out.name("diagnostics");
+            writeNodes(out, qmExport.getDiagnostics(), depthLimit, writeFindings);
+        }
+        if (findingsFiles != null) {
+            out.name("findings_files").beginArray();
+            for (String findingsFile : findingsFiles) out.value(findingsFile);
+            out.endArray();
+        }
+        out.endObject();
+        out.flush();
+    }
+
+    /**
+     * Write one page of findings, grouped by diagnostic as {"diagnostics": {diagnostic name: {finding name: ...}}}
+     */
+    private void writeFindings(Writer writer, List<Finding> findings) throws IOException {
+        Set<Finding> page = Collections.newSetFromMap(new IdentityHashMap<>());
+        page.addAll(findings);
+
+        JsonWriter out = newJsonWriter(writer);
+        out.beginObject();
+        out.name("diagnostics").beginObject();
+        for (Map.Entry<String, ModelNode> diagnostic : qmExport.getDiagnostics().entrySet()) {
+            boolean started = false;
+            for (Map.Entry<String, ModelNode> child : diagnostic.getValue().getChildren().entrySet()) {
+                if (!page.contains(child.getValue())) continue;
+                if (!started) {
+                    out.name(diagnostic.getKey()).beginObject();
+                    started = true;
+                }
+                out.name(child.getKey());
+                writeNode(out, child.getValue(), 0, Integer.MAX_VALUE, true);
+            }
+            if (started) out.endObject();
+        }
+        out.endObject();
+        out.endObject();
+        out.flush();
+    }
+
+    private void writeStrings(JsonWriter out, Map<String, String> strings) throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, String> entry : strings.entrySet()) out.name(entry.getKey()).value(entry.getValue());
+        out.endObject();
+    }
+
+    private void writeNodes(JsonWriter out, Map<String, ModelNode> nodes, int depthLimit, boolean writeFindings)
+            throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, ModelNode> entry : nodes.entrySet()) {
+            out.name(entry.getKey());
+            writeNode(out, entry.getValue(), 0, depthLimit, writeFindings);
+        }
+        out.endObject();
+    }
+
+    private void writeChildren(JsonWriter out, Map<String, ModelNode> children, int depth, int depthLimit,
+                               boolean writeFindings) throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, ModelNode> entry : children.entrySet()) {
+            boolean finding = entry.getValue() instanceof Finding;
+            if (finding && !writeFindings) continue;
+            out.name(entry.getKey());
+            if (depth < depthLimit || finding) {
+                writeNode(out, entry.getValue(), depth + 1, depthLimit, writeFindings);
+            }
+            else {
+                out.beginObject().endObject();
+            }
+        }
+        out.endObject();
+    }
+
+    /**
+     * Write a node and, recursively, its children up to the depth limit. Field values are read directly (not through
+     * {@link ModelNode#getValue()}) so writing does not re-evaluate the model.
+     */
+    void writeNode(JsonWriter out, ModelNode node, int depth, int depthLimit, boolean writeFindings)
+            throws IOException {
+        if (node == null) {
+            out.nullValue();
+            return;
+        }
+
+        out.beginObject();
+        if (node instanceof Measure) out.name("positive").value(((Measure) node).isPositive());
+        if (node instanceof Diagnostic) out.name("toolName").value(((Diagnostic) node).getToolName());
+
+        out.name("name").value(node.name);
+        out.name("value").value(node.value);
+        out.name("description").value(node.description);
+        if (node.children != null) {
+            out.name("children");
+            writeChildren(out, node.children, depth, depthLimit, writeFindings);
+        }
+        if (node.weights != null) {
+            out.name("weights").beginObject();
+            for (Map.Entry<String, Double> weight : node.weights.entrySet()) {
+                out.name(weight.getKey()).value(weight.getValue());
+            }
+            out.endObject();
+        }
+        if (node.thresholds != null) {
+            out.name("thresholds");
+            writeDoubles(out, node.thresholds);
+        }
+        if (node.threshold_intervals != null) {
+            out.name("threshold_intervals").beginArray();
+            for (Double[] interval : node.threshold_intervals) {
+                if (interval == null) out.nullValue();
+                else writeDoubles(out, interval);
+            }
+            out.endArray();
+        }
+        out.name("eval_strategy").value(node.eval_strategy);
+        out.name("normalizer").value(node.normalizer);
+        out.name("utility_function").value(node.utility_function);
+        out.endObject();
+    }
+
+    private void writeDoubles(JsonWriter out, Double[] values) throws IOException {
+        out.beginArray();
+        for (Double value : values) out.value(value);
+        out.endArray();
+    }
+}
@@ -0,0 +1,321 @@
+package pique.model;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import pique.evaluation.IEvaluator;
+import pique.evaluation.INormalizer;
+import pique.evaluation.IUtilityFunction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Streaming alternative to {@link QualityModelImport} for large quality model files.
+ * <p>
+ * {@link QualityModelImport} parses the whole file into a Gson tree before walking it. This importer reads the file
+ * once with a {@link JsonReader}: each node is instanced as soon as its JSON object has been read, and only the names
+ * of its children are kept until every node exists and the edges can be connected. Nested "children" content (as
+ * written by {@link QualityModelExport}), node values and any unrecognized entries are skipped without being
+ * materialized, so intermediate memory is bounded by the node count rather than the file size.
+ * </p>
+ * <p>
+ * The resulting {@link QualityModel} is the same as the one produced by {@link QualityModelImport}: same nodes,
+ * configuration, plug-in classes and edges, including the fully connected default when a node lists no children.
+ * </p>
+ */
+public class QualityModelStreamImport {
+
+    // Child names of a node, connected once all nodes exist. Null childNames means fully connected.
+    private static class PendingEdges {
+        private final ModelNode parent;
+        private final List<String> childNames;
+
+        private PendingEdges(ModelNode parent, List<String> childNames) {
+            this.parent = parent;
+            this.childNames = childNames;
+        }
+    }
+
+    // The configuration of a single node as read from the file
+    private static class NodeConfiguration {
+        private String description;
+        private String toolName;
+        private Boolean positive;
+        private String evalStrategy;
+        private String normalizer;
+        private String utilityFunction;
+        private Map<String, Double> weights;
+        private Double[] thresholds;
+        private Double[][] thresholdIntervals;
+        private List<String> childNames;
+    }
+
+    // Private Fields
+    private final Path qmFileLocation;
+
+    private ModelNode tqi;
+    private Map<String, ModelNode> qualityAspects = new HashMap<>();
+    private Map<String, ModelNode> productFactors = new HashMap<>();
+    private Map<String, ModelNode> measures = new HashMap<>();
+    private Map<String, ModelNode> diagnostics = new HashMap<>();
+    private Map<NodeType, List<PendingEdges>> pendingEdges = new EnumMap<>(NodeType.class);
+
+
+    // Constructor
+
+    public QualityModelStreamImport(Path qmFileLocation) {
+        this.qmFileLocation = qmFileLocation;
+    }
+
+
+    // Methods
+
+    /**
+     * One-shot run of model import.
+     *
+     * @return A PIQUE JVM object of the quality model file.
+     */
+    public QualityModel importQualityModel() {
+        QualityModel qualityModel = new QualityModel();
+        String benchmarkStrategy = null;
+        String weightsStrategy = null;
+
+        try (JsonReader reader = new JsonReader(Files.newBufferedReader(qmFileLocation))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        qualityModel.setName(reader.nextString());
+                        break;
+                    case "global_config":
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String key = reader.nextName();
+                            if (key.equals("benchmark_strategy")) benchmarkStrategy = reader.nextString();
+                            else if (key.equals("weights_strategy")) weightsStrategy = reader.nextString();
+                            else reader.skipValue();
+                        }
+                        reader.endObject();
+                        break;
+                    case "factors":
+                        readFactors(reader);
+                        break;
+                    case "measures":
+                        readLayer(reader, NodeType.MEASURE, measures);
+                        break;
+                    case "diagnostics":
+                        readLayer(reader, NodeType.DIAGNOSTIC, diagnostics);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read quality model file " + qmFileLocation, e);
+        }
+
+        qualityModel.setBenchmarker(QualityModelImport.instanceBenchmarker(benchmarkStrategy));
+        qualityModel.setWeighter(QualityModelImport.instanceWeighter(weightsStrategy));
+
+        // Connect edges using name matching, bottom to top
+        Map<String, ModelNode> allModelNodes = QualityModelImport.indexModelNodes(tqi, qualityAspects, productFactors,
+                measures, diagnostics);
+
+        connectEdges(NodeType.MEASURE, diagnostics, allModelNodes);
+        connectEdges(NodeType.PRODUCT_FACTOR, measures, allModelNodes);
+        connectEdges(NodeType.QUALITY_ASPECT, productFactors, allModelNodes);
+        connectEdges(NodeType.TQI, qualityAspects, allModelNodes);
+        qualityModel.setTqi((Tqi)tqi);
+        QualityModelValidator.validate(qualityModel, qualityAspects, productFactors, measures, diagnostics)
+                .report(qmFileLocation);
+        return qualityModel;
+    }
+
+    private void connectEdges(NodeType nodeType, Map<String, ModelNode> layerBelow,
+                              Map<String, ModelNode> allModelNodes) {
+        for (PendingEdges edges : pendingEdges.getOrDefault(nodeType, Collections.emptyList())) {
+            if (edges.childNames != null) {
+                QualityModelImport.connectChildren(edges.parent, edges.childNames, allModelNodes);
+            }
+            // Otherwise, assume fully connected using the node type below it
+            else {
+                edges.parent.setChildren(layerBelow.values());
+            }
+        }
+    }
+
+    private void readFactors(JsonReader reader) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "tqi":
+                    // Only the first entry describes the TQI
+                    reader.beginObject();
+                    if (reader.hasNext()) {
+                        String tqiName = reader.nextName();
+                        tqi = instanceNode(tqiName, readNodeConfiguration(reader), NodeType.TQI);
+                    }
+                    while (reader.hasNext()) {
+                        reader.nextName();
+                        reader.skipValue();
+                    }
+                    reader.endObject();
+                    break;
+                case "quality_aspects":
+                    readLayer(reader, NodeType.QUALITY_ASPECT, qualityAspects);
+                    break;
+                case "product_factors":
+                    readLayer(reader, NodeType.PRODUCT_FACTOR, productFactors);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readLayer(JsonReader reader, NodeType nodeType, Map<String, ModelNode> layer) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String nodeName = reader.nextName();
+            ModelNode node = instanceNode(nodeName, readNodeConfiguration(reader), nodeType);
+
+            if (layer.containsKey(node.getName())) {
+                throw new RuntimeException("Two " + nodeType.name().toLowerCase().replace('_', ' ') + " nodes with " +
+                        "the same name were found while parsing the quality model file.");
+            }
+            layer.put(node.getName(), node);
+        }
+        reader.endObject();
+    }
+
+    private ModelNode instanceNode(String name, NodeConfiguration config, NodeType nodeType) {
+        INormalizer normalizer = QualityModelImport.instanceNormalizer(config.normalizer);
+        IUtilityFunction utilityFunction = QualityModelImport.instanceUtilityFunction(config.utilityFunction);
+
+        ModelNode node;
+        switch (nodeType) {
+            case TQI:
+                node = new Tqi(name, config.description, evaluator(config, "factor"), normalizer, utilityFunction,
+                        config.weights, config.thresholds);
+                break;
+            case QUALITY_ASPECT:
+                node = new QualityAspect(name, config.description, evaluator(config, "qualityaspect"), normalizer,
+                        utilityFunction, config.weights, config.thresholds);
+                break;
+            case PRODUCT_FACTOR:
+                node = new ProductFactor(name, config.description, evaluator(config, "productfactor"), normalizer,
+                        utilityFunction, config.weights, config.thresholds);
+                break;
+            case MEASURE:
+                if (config.positive == null) {
+                    throw new RuntimeException("Measure " + name + " does not define 'positive'.");
+                }
+                Measure measure = new Measure(name, config.description, evaluator(config, "measure"), normalizer,
+                        utilityFunction, config.weights, config.thresholds, config.positive);
+                measure.setThresholdIntervals(config.thresholdIntervals);
+                node = measure;
+                break;
+            case DIAGNOSTIC:
+                node = new Diagnostic(name, config.description, config.toolName, evaluator(config, "diagnostic"),
+                        normalizer, utilityFunction, config.weights, config.thresholds);
+                break;
+            default:
+                throw new RuntimeException("nodeType did not match a support enum.");
+        }
+
+        if (nodeType != NodeType.DIAGNOSTIC) {
+            pendingEdges.computeIfAbsent(nodeType, k -> new ArrayList<>())
+                    .add(new PendingEdges(node, config.childNames));
+        }
+        return node;
+    }
+
+    private IEvaluator evaluator(NodeConfiguration config, String nodeTypeQm) {
+        return QualityModelImport.instanceEvaluator(config.evalStrategy, nodeTypeQm);
+    }
+
+    private NodeConfiguration readNodeConfiguration(JsonReader reader) throws IOException {
+        NodeConfiguration config = new NodeConfiguration();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "description":
+                    config.description = reader.nextString();
+                    break;
+                case "toolName":
+                    config.toolName = reader.nextString();
+                    break;
+                case "positive":
+                    config.positive = reader.peek() == JsonToken.STRING
+                            ? Boolean.parseBoolean(reader.nextString())
+                            : reader.nextBoolean();
+                    break;
+                case "eval_strategy":
+                    config.evalStrategy = reader.nextString();
+                    break;
+                case "normalizer":
+                    config.normalizer = reader.nextString();
+                    break;
+                case "utility_function":
+                    config.utilityFunction = reader.nextString();
+                    break;
+                case "weights":
+                    config.weights = new HashMap<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        config.weights.put(reader.nextName(), reader.nextDouble());
+                    }
+                    reader.endObject();
+                    break;
+                case "thresholds":
+                    config.thresholds = readDoubles(reader);
+                    if (config.thresholds.length == 0) config.thresholds = null;
+                    break;
+                case "threshold_intervals":
+                    config.thresholdIntervals = readThresholdIntervals(reader);
+                    break;
+                case "children":
+                    // Only the child names are needed; nested node content is skipped
+                    config.childNames = new ArrayList<>();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        config.childNames.add(reader.nextName());
+                        reader.skipValue();
+                    }
+                    reader.endObject();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return config;
+    }
+
+    private Double[] readDoubles(JsonReader reader) throws IOException {
+        List<Double> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) values.add(reader.nextDouble());
+        reader.endArray();
+        return values.toArray(new Double[0]);
+    }
+
+    private Double[][] readThresholdIntervals(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        List<Double[]> intervals = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Double[] interval = readDoubles(reader);
+            intervals.add(new Double[] { interval[0], interval[1] });
+        }
+        reader.endArray();
+        return intervals.toArray(new Double[0][]);
+    }
+}
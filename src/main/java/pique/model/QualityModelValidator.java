@@ -0,0 +1,225 @@
+package pique.model;
+
+import java.util.*;
+
+/**
+ * Structural checks of a quality model graph, run by the importers once all edges are connected.
+ * <p>
+ * One pass over the nodes and edges (O(V + E)) reports:
+ * <ul>
+ *     <li>errors: node names declared more than once across layers, children that are not nodes of the model, and
+ *     cycles (found with Kahn's algorithm; {@link ModelNode#getValue()} would recurse forever on them)</li>
+ *     <li>warnings: nodes not reachable from the TQI node, which are never evaluated</li>
+ * </ul>
+ * {@link Finding} children of diagnostics are not part of the model and are not checked.
+ * </p>
+ * <p>
+ * Results of {@link #validate(QualityModel)} and {@link #validate(QualityModel, Map[])} are cached by
+ * {@link QualityModelFingerprint}, so a model loaded again (e.g. from its snapshot by a long-running evaluator, or
+ * imported again from its file) is validated once per model version.
+ * </p>
+ */
+public final class QualityModelValidator {
+
+    /**
+     * Outcome of a validation: errors make the model unusable, warnings do not.
+     */
+    public static class Result {
+        private final List<String> errors = new ArrayList<>();
+        private final List<String> warnings = new ArrayList<>();
+
+        public List<String> getErrors() {
+            return Collections.unmodifiableList(errors);
+        }
+
+        public List<String> getWarnings() {
+            return Collections.unmodifiableList(warnings);
+        }
+
+        public boolean isValid() {
+            return errors.isEmpty();
+        }
+
+        /**
+         * Print the warnings and throw if there are errors.
+         *
+         * @param source
+         *      Where the model comes from, for the messages (e.g. the quality model file)
+         * @throws RuntimeException
+         *      If the model has errors
+         */
+        public void report(Object source) {
+            warnings.forEach(warning -> System.out.println("* Quality model " + source + ": " + warning));
+            if (!isValid()) {
+                throw new RuntimeException("Invalid quality model " + source + ":\n\t" + String.join("\n\t", errors));
+            }
+        }
+    }
+
+    private static final int CACHE_SIZE = 64;
+    private static final Map<String, Result> cache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Result>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Result> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    private QualityModelValidator() { }
+
+
+    // Methods
+
+    /**
+     * Validate the nodes reachable from the TQI node of a quality model, reusing the result of an earlier validation
+     * of the same model version.
+     */
+    public static Result validate(QualityModel qualityModel) {
+        String fingerprint;
+        try {
+            fingerprint = qualityModel.getFingerprint().getHash();
+        } catch (RuntimeException e) {
+            // Not fingerprintable (cycle); validate to report why
+            return validateReachable(qualityModel);
+        }
+
+        Result cached = cache.get(fingerprint);
+        if (cached != null) return cached;
+        Result result = validateReachable(qualityModel);
+        cache.put(fingerprint, result);
+        return result;
+    }
+
+    /**
+     * Validate the declared nodes of a quality model whose TQI node is set, as {@link #validate(ModelNode, Map[])}
+     * does, reusing the result of an earlier validation of the same model version. Used by the importers, which
+     * know the declared nodes, including those not reachable from the TQI node.
+     * <p>
+     * Results are cached by the model's fingerprint and the declared node names of each layer. A model with nodes
+     * the fingerprint does not cover (not reachable from the TQI node) or that can not be fingerprinted is validated
+     * every time.
+     * </p>
+     */
+    @SafeVarargs
+    public static Result validate(QualityModel qualityModel, Map<String, ModelNode>... layers) {
+        String key = declaredFingerprint(qualityModel, layers);
+        if (key == null) return validate(qualityModel.getTqi(), layers);
+
+        Result cached = cache.get(key);
+        if (cached != null) return cached;
+        Result result = validate(qualityModel.getTqi(), layers);
+        cache.put(key, result);
+        return result;
+    }
+
+    /**
+     * @return the model's fingerprint followed by the declared node names of each layer, or null if a declared node
+     *      is not covered by the fingerprint
+     */
+    @SafeVarargs
+    private static String declaredFingerprint(QualityModel qualityModel, Map<String, ModelNode>... layers) {
+        QualityModelFingerprint fingerprint;
+        try {
+            fingerprint = qualityModel.getFingerprint();
+        } catch (RuntimeException e) {
+            // Cycle or dangling child; validate to report why
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder(fingerprint.getHash());
+        for (Map<String, ModelNode> layer : layers) {
+            key.append('/');
+            SortedSet<String> names = new TreeSet<>();
+            for (ModelNode node : layer.values()) names.add(node.getName());
+            for (String name : names) {
+                if (fingerprint.getSubtreeHash(name) == null) return null;
+                key.append(name.length()).append(':').append(name);
+            }
+        }
+        return key.toString();
+    }
+
+    private static Result validateReachable(QualityModel qualityModel) {
+        return validate(qualityModel.getTqi(), qualityModel.getQualityAspects(), qualityModel.getProductFactors(),
+                qualityModel.getMeasures(), qualityModel.getDiagnostics());
+    }
+
+    /**
+     * Validate the graph spanned by the declared nodes of a quality model.
+     *
+     * @param tqi
+     *      The root node
+     * @param layers
+     *      {Key: node name, Value: node} of each layer of declared nodes (quality aspects, product factors, ...)
+     */
+    @SafeVarargs
+    public static Result validate(ModelNode tqi, Map<String, ModelNode>... layers) {
+        Result result = new Result();
+
+        // Declared nodes, and names used by more than one of them
+        Map<ModelNode, Integer> inDegree = new IdentityHashMap<>();
+        Map<String, ModelNode> byName = new HashMap<>();
+        List<ModelNode> declared = new ArrayList<>();
+        declared.add(tqi);
+        for (Map<String, ModelNode> layer : layers) declared.addAll(layer.values());
+        for (ModelNode node : declared) {
+            if (inDegree.put(node, 0) != null) continue;
+            ModelNode named = byName.putIfAbsent(node.getName(), node);
+            if (named != null) {
+                result.errors.add("Node name '" + node.getName() + "' is declared more than once (" +
+                        named.getClass().getSimpleName() + " and " + node.getClass().getSimpleName() + ").");
+            }
+        }
+
+        // Edges: dangling children and in-degrees
+        for (ModelNode node : inDegree.keySet()) {
+            for (Map.Entry<String, ModelNode> child : node.getChildren().entrySet()) {
+                ModelNode childNode = child.getValue();
+                if (childNode instanceof Finding) continue;
+                if (childNode == null || !inDegree.containsKey(childNode)) {
+                    result.errors.add("Node '" + node.getName() + "' lists child '" + child.getKey() + "', which is " +
+                            "not a node of the quality model.");
+                    continue;
+                }
+                inDegree.merge(childNode, 1, Integer::sum);
+            }
+        }
+
+        // Kahn's algorithm: nodes left with incoming edges are on, or below, a cycle
+        Deque<ModelNode> ready = new ArrayDeque<>();
+        inDegree.forEach((node, degree) -> { if (degree == 0) ready.add(node); });
+        Map<ModelNode, Integer> remaining = new IdentityHashMap<>(inDegree);
+        while (!ready.isEmpty()) {
+            ModelNode node = ready.remove();
+            remaining.remove(node);
+            for (ModelNode child : node.getChildren().values()) {
+                if (!remaining.containsKey(child)) continue;
+                if (remaining.merge(child, -1, Integer::sum) == 0) ready.add(child);
+            }
+        }
+        if (!remaining.isEmpty()) {
+            Set<String> names = new TreeSet<>();
+            remaining.keySet().forEach(node -> names.add(node.getName()));
+            result.errors.add("The children lists form a cycle; nodes on or below it: " + names + ".");
+        }
+
+        // Reachability from the TQI node
+        Set<ModelNode> reached = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ModelNode> queue = new ArrayDeque<>();
+        reached.add(tqi);
+        queue.add(tqi);
+        while (!queue.isEmpty()) {
+            for (ModelNode child : queue.remove().getChildren().values()) {
+                if (inDegree.containsKey(child) && reached.add(child)) queue.add(child);
+            }
+        }
+        for (ModelNode node : inDegree.keySet()) {
+            if (!reached.contains(node)) {
+                result.warnings.add("Node '" + node.getName() + "' is not reachable from the TQI node and will " +
+                        "not be evaluated.");
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,247 @@
+package pique.model;
+
+import com.google.gson.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Delta between two evaluation result files (see {@link pique.evaluation.Project#exportToJson}), for storing the
+ * results of consecutive runs of a project without repeating the unchanged part of each file.
+ * <p>
+ * A delta lists the JSON members that changed from the base result to the new result:
+ * <pre>
+ *   {
+ *     "base_hash":   content hash of the base result,
+ *     "result_hash": content hash of the new result,
+ *     "set":    [ {"path": [key, ...], "value": new value}, ... ],   changed values and added members (e.g. findings)
+ *     "remove": [ [key, ...], ... ]                                   removed members (e.g. findings)
+ *   }
+ * </pre>
+ * Paths are the object keys from the document root down to the member. Arrays (thresholds, intervals) are compared
+ * and replaced as a whole.
+ * </p>
+ * <p>
+ * Every object of both documents is hashed once, bottom up, with a 64-bit content hash that does not depend on member
+ * order. The diff only descends into members whose hashes differ, so unchanged node subtrees are skipped without being
+ * compared. Applying a delta checks the base and the reconstructed result against the recorded hashes.
+ * Result files ending in ".gz" are read and written gzipped.
+ * </p>
+ */
+public final class ResultDelta {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private ResultDelta() { }
+
+
+    // Methods
+
+    /**
+     * Write the delta from a previous result file to a new result file.
+     *
+     * @return the path of the delta file
+     */
+    public static Path exportDelta(Path baseFile, Path resultFile, Path deltaFile) {
+        JsonObject delta = diff(readJson(baseFile), readJson(resultFile));
+        writeJson(delta, deltaFile);
+        return deltaFile;
+    }
+
+    /**
+     * Reconstruct a full result file from the previous result file and a delta.
+     *
+     * @return the path of the reconstructed result file
+     */
+    public static Path applyDelta(Path baseFile, Path deltaFile, Path resultFile) {
+        JsonElement result = apply(readJson(baseFile), readJson(deltaFile).getAsJsonObject());
+        writeJson(result, resultFile);
+        return resultFile;
+    }
+
+    /**
+     * @return the delta that turns base into result
+     */
+    public static JsonObject diff(JsonElement base, JsonElement result) {
+        Map<JsonElement, Long> hashes = new IdentityHashMap<>();
+        JsonArray set = new JsonArray();
+        JsonArray remove = new JsonArray();
+        if (hash(base, hashes) != hash(result, hashes)) {
+            if (base.isJsonObject() && result.isJsonObject()) {
+                diff(base.getAsJsonObject(), result.getAsJsonObject(), new JsonArray(), hashes, set, remove);
+            }
+            else {
+                set.add(setOperation(new JsonArray(), result));
+            }
+        }
+
+        JsonObject delta = new JsonObject();
+        delta.addProperty("base_hash", Long.toHexString(hash(base, hashes)));
+        delta.addProperty("result_hash", Long.toHexString(hash(result, hashes)));
+        delta.add("set", set);
+        delta.add("remove", remove);
+        return delta;
+    }
+
+    /**
+     * Apply a delta to the base result it was computed from. The base element is modified in place.
+     *
+     * @return the reconstructed result
+     */
+    public static JsonElement apply(JsonElement base, JsonObject delta) {
+        Map<JsonElement, Long> hashes = new IdentityHashMap<>();
+        if (!Long.toHexString(hash(base, hashes)).equals(delta.get("base_hash").getAsString())) {
+            throw new RuntimeException("The result delta was not computed from this base result.");
+        }
+
+        JsonElement result = base;
+        for (JsonElement removal : delta.getAsJsonArray("remove")) {
+            JsonArray path = removal.getAsJsonArray();
+            parent(result, path).remove(key(path, path.size() - 1));
+        }
+        for (JsonElement operation : delta.getAsJsonArray("set")) {
+            JsonArray path = operation.getAsJsonObject().getAsJsonArray("path");
+            JsonElement value = operation.getAsJsonObject().get("value");
+            if (path.size() == 0) result = value;
+            else parent(result, path).add(key(path, path.size() - 1), value);
+        }
+
+        if (!Long.toHexString(hash(result, new IdentityHashMap<>())).equals(delta.get("result_hash").getAsString())) {
+            throw new RuntimeException("Applying the result delta did not reproduce the recorded result.");
+        }
+        return result;
+    }
+
+    private static void diff(JsonObject base, JsonObject result, JsonArray path, Map<JsonElement, Long> hashes,
+                             JsonArray set, JsonArray remove) {
+        for (Map.Entry<String, JsonElement> member : base.entrySet()) {
+            if (!result.has(member.getKey())) remove.add(append(path, member.getKey()));
+        }
+        for (Map.Entry<String, JsonElement> member : result.entrySet()) {
+            JsonElement baseValue = base.get(member.getKey());
+            JsonElement resultValue = member.getValue();
+            if (baseValue != null && hash(baseValue, hashes) == hash(resultValue, hashes)) continue;
+
+            JsonArray memberPath = append(path, member.getKey());
+            if (baseValue != null && baseValue.isJsonObject() && resultValue.isJsonObject()) {
+                diff(baseValue.getAsJsonObject(), resultValue.getAsJsonObject(), memberPath, hashes, set, remove);
+            }
+            else {
+                set.add(setOperation(memberPath, resultValue));
+            }
+        }
+    }
+
+    private static JsonObject setOperation(JsonArray path, JsonElement value) {
+        JsonObject operation = new JsonObject();
+        operation.add("path", path);
+        operation.add("value", value);
+        return operation;
+    }
+
+    private static JsonArray append(JsonArray path, String key) {
+        JsonArray appended = new JsonArray();
+        appended.addAll(path);
+        appended.add(key);
+        return appended;
+    }
+
+    private static String key(JsonArray path, int index) {
+        return path.get(index).getAsString();
+    }
+
+    private static JsonObject parent(JsonElement root, JsonArray path) {
+        JsonElement node = root;
+        for (int i = 0; i < path.size() - 1; i++) {
+            node = node.getAsJsonObject().get(key(path, i));
+            if (node == null || !node.isJsonObject()) {
+                throw new RuntimeException("The result delta refers to a member missing from the base result: " + path);
+            }
+        }
+        return node.getAsJsonObject();
+    }
+
+    /**
+     * 64-bit content hash of a JSON element, memoized per element. Object members are combined independently of
+     * their order, numbers by value.
+     */
+    private static long hash(JsonElement element, Map<JsonElement, Long> hashes) {
+        Long known = hashes.get(element);
+        if (known != null) return known;
+
+        long hash;
+        if (element == null || element.isJsonNull()) {
+            hash = mix(1);
+        }
+        else if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isNumber()) hash = mix(2 + Double.doubleToLongBits(primitive.getAsDouble()));
+            else if (primitive.isBoolean()) hash = mix(primitive.getAsBoolean() ? 3 : 4);
+            else hash = mix(5 + hash(primitive.getAsString()));
+        }
+        else if (element.isJsonArray()) {
+            hash = 6;
+            for (JsonElement item : element.getAsJsonArray()) hash = mix(hash * 31 + hash(item, hashes));
+        }
+        else {
+            hash = 7;
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                hash += mix(hash(member.getKey()) * 31 + hash(member.getValue(), hashes));
+            }
+            hash = mix(hash);
+        }
+
+        if (element != null) hashes.put(element, hash);
+        return hash;
+    }
+
+    private static long hash(String string) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /** SplitMix64 finalizer */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static JsonElement readJson(Path file) {
+        try (Reader reader = new BufferedReader(new InputStreamReader(openInput(file), StandardCharsets.UTF_8))) {
+            return new JsonParser().parse(reader);
+        } catch (IOException | JsonParseException e) {
+            throw new RuntimeException("Unable to read result file " + file, e);
+        }
+    }
+
+    private static void writeJson(JsonElement element, Path file) {
+        Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+        try {
+            if (file.getParent() != null) Files.createDirectories(file.getParent());
+            OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+            if (file.toString().endsWith(".gz")) out = new GZIPOutputStream(out);
+            try (Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                gson.toJson(element, writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write result file " + file, e);
+        }
+    }
+
+    private static InputStream openInput(Path file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(file));
+        return file.toString().endsWith(".gz") ? new GZIPInputStream(in) : in;
+    }
+}
@@ -0,0 +1,13 @@
+package pique.model;
+
+/**
+ * How much of an evaluated quality model a result export contains. See {@link QualityModelStreamExport#setDetail}.
+ */
+public enum ResultDetail {
+    /** The TQI and quality aspect nodes only, their children written as name references */
+    SUMMARY,
+    /** Every model node and its value, without the findings under the diagnostics */
+    VALUES,
+    /** Every model node and the findings, optionally paged into separate files */
+    FULL
+}
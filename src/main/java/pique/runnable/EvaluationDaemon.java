@@ -0,0 +1,378 @@
+package pique.runnable;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import pique.analysis.ITool;
+import pique.model.QualityModel;
+import pique.model.QualityModelSnapshot;
+import pique.model.QualityModelStreamImport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-running evaluation service: keeps derived quality models loaded and evaluates projects on request, so a request
+ * does not pay for JVM startup, class loading and model import.
+ * <p>
+ * The daemon listens on the loopback interface only. Endpoints:
+ * <pre>
+ *   POST /evaluate?project=&lt;project directory&gt;&amp;model=&lt;model id&gt;
+ *        evaluate the project; the response body streams the project's result file
+ *   GET  /models
+ *        the loaded models: id, file and fingerprint
+ *   POST /models/reload?model=&lt;model id&gt;
+ *        re-import a model from its file
+ * </pre>
+ * At most {@code concurrency} evaluations run at a time and at most {@code queueCapacity} more wait for a slot;
+ * requests beyond that are rejected right away with 503 (Service Unavailable) instead of queuing without bound.
+ * </p>
+ * <p>
+ * Models are registered with an id and a derived quality model file, imported once and kept compiled (see
+ * {@link QualityModelSnapshot#compile}); every evaluation runs on its own instance of the compiled model. A model is
+ * hot-reloaded when its file changes (checked on each request) or on request. Evaluations already running keep the
+ * model they started with. As with {@link MultiProjectEvaluator}, the tools are shared by concurrent evaluations:
+ * evaluations only run concurrently when all tools are thread-safe (see {@link ITool#isThreadSafe()}).
+ * </p>
+ */
+public class EvaluationDaemon {
+
+    /**
+     * A loaded quality model. Replaced as a whole on reload.
+     */
+    private static class LoadedModel {
+        private final Path qmFile;
+        private final long lastModified;
+        private final ByteBuffer compiled;
+        private final String fingerprint;
+
+        private LoadedModel(Path qmFile) throws IOException {
+            this.qmFile = qmFile;
+            this.lastModified = Files.getLastModifiedTime(qmFile).toMillis();
+            QualityModel qualityModel = new QualityModelStreamImport(qmFile).importQualityModel();
+            this.compiled = QualityModelSnapshot.compile(qualityModel);
+            this.fingerprint = qualityModel.getFingerprint().getHash();
+        }
+    }
+
+    // Fields
+    private final int port;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final Set<ITool> tools;
+    private final Path resultsDir;
+    private boolean keepResults = false;
+
+    private final ConcurrentMap<String, LoadedModel> models = new ConcurrentHashMap<>();
+    private final Semaphore admission;
+    private final AtomicLong requestCounter = new AtomicLong();
+    private HttpServer server;
+    private ExecutorService evaluators;
+
+
+    // Constructor
+
+    /**
+     * @param port
+     *      Loopback port to listen on, or 0 for any free port (see {@link #getPort()})
+     * @param concurrency
+     *      Maximum number of evaluations running at the same time. Only used when all tools are thread-safe (see
+     *      {@link ITool#isThreadSafe()}), otherwise evaluations run one at a time.
+     * @param queueCapacity
+     *      Maximum number of evaluation requests waiting for a free slot
+     * @param tools
+     *      Analyzers provided by the language-specific instance, shared by all evaluations
+     * @param resultsDir
+     *      Directory the evaluations write their results into
+     */
+    public EvaluationDaemon(int port, int concurrency, int queueCapacity, Set<ITool> tools, Path resultsDir) {
+        if (concurrency < 1) throw new IllegalArgumentException("Concurrency must be at least 1.");
+        if (queueCapacity < 0) throw new IllegalArgumentException("Queue capacity can not be negative.");
+        this.port = port;
+        this.concurrency = tools.stream().allMatch(ITool::isThreadSafe) ? concurrency : 1;
+        this.queueCapacity = queueCapacity;
+        this.tools = tools;
+        this.resultsDir = resultsDir;
+        this.admission = new Semaphore(this.concurrency + queueCapacity);
+    }
+
+
+    // Getters and setters
+
+    /**
+     * @return the port the daemon listens on, once started
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    /**
+     * @return the maximum number of evaluations running at the same time: 1 unless all tools are thread-safe
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public boolean isKeepResults() {
+        return keepResults;
+    }
+
+    /**
+     * @param keepResults
+     *      true to keep each request's results directory (default: deleted once the result file was streamed
+     *      back or the evaluation failed)
+     */
+    public void setKeepResults(boolean keepResults) {
+        this.keepResults = keepResults;
+    }
+
+
+    // Methods
+
+    /**
+     * Load a derived quality model under an id, replacing the model previously loaded under it.
+     */
+    public void loadModel(String modelId, Path qmFile) {
+        try {
+            models.put(modelId, new LoadedModel(qmFile));
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to load quality model " + qmFile, e);
+        }
+        System.out.println("* Loaded quality model '" + modelId + "' from " + qmFile + " (" +
+                models.get(modelId).fingerprint + ")");
+    }
+
+    /**
+     * @return fingerprint of the model currently loaded under the id, or null
+     */
+    public String getModelFingerprint(String modelId) {
+        LoadedModel model = models.get(modelId);
+        return model != null ? model.fingerprint : null;
+    }
+
+    public void start() throws IOException {
+        AtomicInteger threadCounter = new AtomicInteger();
+        evaluators = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "evaluation-daemon-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/evaluate", this::handleEvaluate);
+        server.createContext("/models/reload", this::handleReload);
+        server.createContext("/models", this::handleModels);
+        // Request threads only wait for evaluations; admission control bounds how many wait
+        server.setExecutor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "evaluation-daemon-http-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.start();
+        System.out.println("* Evaluation daemon listening on " + server.getAddress());
+    }
+
+    public void stop() {
+        if (server != null) server.stop(0);
+        if (evaluators != null) evaluators.shutdownNow();
+    }
+
+    /**
+     * Evaluate a project with a loaded model, as a request to the daemon would.
+     *
+     * @return the project's result file
+     */
+    public Path evaluate(Path projectDir, String modelId) {
+        return evaluate(projectDir, requestDir(modelId), currentModel(modelId));
+    }
+
+    private Path evaluate(Path projectDir, Path requestDir, LoadedModel model) {
+        return new SingleProjectEvaluator().runEvaluator(projectDir, requestDir,
+                QualityModelSnapshot.instance(model.compiled), tools);
+    }
+
+    /**
+     * @return a new directory for the results of one evaluation
+     */
+    private Path requestDir(String modelId) {
+        return resultsDir.resolve(modelId).resolve(String.valueOf(requestCounter.incrementAndGet()));
+    }
+
+    /**
+     * @return the model loaded under the id, reloaded first if its file changed since. A failed reload, e.g. of a
+     *      file still being written, keeps the loaded model.
+     */
+    private LoadedModel currentModel(String modelId) {
+        LoadedModel model = models.get(modelId);
+        if (model == null) throw new IllegalArgumentException("No quality model loaded with id '" + modelId + "'.");
+        try {
+            if (Files.getLastModifiedTime(model.qmFile).toMillis() == model.lastModified) return model;
+        } catch (IOException e) {
+            System.out.println("* Unable to check quality model " + model.qmFile + " for changes: " + e.getMessage());
+            return model;
+        }
+        try {
+            synchronized (models) {
+                if (models.get(modelId) == model) loadModel(modelId, model.qmFile);
+            }
+            return models.get(modelId);
+        } catch (RuntimeException e) {
+            System.out.println("* Reload of quality model '" + modelId + "' failed, keeping the loaded model: " +
+                    e.getMessage());
+            return model;
+        }
+    }
+
+    private void handleEvaluate(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Use POST.");
+                return;
+            }
+            Map<String, String> query = query(exchange);
+            if (query.get("project") == null || query.get("model") == null) {
+                respond(exchange, 400, "The 'project' and 'model' parameters are required.");
+                return;
+            }
+            if (!admission.tryAcquire()) {
+                respond(exchange, 503, "Evaluation queue is full, retry later.");
+                return;
+            }
+
+            // The model is resolved once, so the response names the model the evaluation used
+            Path requestDir = requestDir(query.get("model"));
+            try {
+                LoadedModel model;
+                Path result;
+                try {
+                    model = currentModel(query.get("model"));
+                    Future<Path> evaluation = evaluators.submit(() ->
+                            evaluate(Paths.get(query.get("project")), requestDir, model));
+                    result = evaluation.get();
+                } catch (IllegalArgumentException e) {
+                    respond(exchange, 400, e.getMessage());
+                    return;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    respond(exchange, cause instanceof IllegalArgumentException ? 400 : 500,
+                            String.valueOf(cause.getMessage()));
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    respond(exchange, 503, "Evaluation daemon is stopping.");
+                    return;
+                } finally {
+                    admission.release();
+                }
+
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.getResponseHeaders().set("X-Model-Fingerprint", model.fingerprint);
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream body = exchange.getResponseBody()) {
+                    Files.copy(result, body);
+                }
+            } finally {
+                // Failed evaluations leave their directory too
+                if (!keepResults) deleteRequestDir(requestDir);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void deleteRequestDir(Path requestDir) {
+        try {
+            if (Files.exists(requestDir)) FileUtils.deleteDirectory(requestDir.toFile());
+        } catch (IOException e) {
+            System.out.println("* Unable to delete request results " + requestDir + ": " + e.getMessage());
+        }
+    }
+
+    private void handleModels(HttpExchange exchange) throws IOException {
+        try {
+            JsonObject loaded = new JsonObject();
+            models.forEach((id, model) -> {
+                JsonObject entry = new JsonObject();
+                entry.addProperty("file", model.qmFile.toString());
+                entry.addProperty("fingerprint", model.fingerprint);
+                loaded.add(id, entry);
+            });
+            respondJson(exchange, loaded);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleReload(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, "Use POST.");
+                return;
+            }
+            String modelId = query(exchange).get("model");
+            LoadedModel model = modelId != null ? models.get(modelId) : null;
+            if (model == null) {
+                respond(exchange, 404, "No quality model loaded with id '" + modelId + "'.");
+                return;
+            }
+            try {
+                loadModel(modelId, model.qmFile);
+            } catch (RuntimeException e) {
+                respond(exchange, 500, "Reload failed, keeping the loaded model: " + e.getMessage());
+                return;
+            }
+            JsonObject reloaded = new JsonObject();
+            reloaded.addProperty(modelId, getModelFingerprint(modelId));
+            respondJson(exchange, reloaded);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return parameters;
+        for (String parameter : query.split("&")) {
+            int split = parameter.indexOf('=');
+            if (split < 0) continue;
+            parameters.put(URLDecoder.decode(parameter.substring(0, split), "UTF-8"),
+                    URLDecoder.decode(parameter.substring(split + 1), "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] body = (message + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void respondJson(HttpExchange exchange, JsonObject json) throws IOException {
+        byte[] body = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create().toJson(json)
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
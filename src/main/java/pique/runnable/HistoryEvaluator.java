@@ -0,0 +1,384 @@
+package pique.runnable;
+
+import com.google.gson.*;
+import org.apache.commons.io.FileUtils;
+import pique.analysis.ITool;
+import pique.evaluation.Project;
+import pique.model.ModelNode;
+import pique.model.QualityModel;
+import pique.model.QualityModelSnapshot;
+import pique.model.QualityModelStreamImport;
+import pique.utility.GitUtility;
+import pique.utility.GitUtility.Commit;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Behavioral class responsible for evaluating a project at every commit of its git history, producing a time series
+ * of node values (TQI, quality aspects and product factors) per commit.
+ * <p>
+ * The commits are walked with the local git client (see {@link GitUtility}) in detached worktrees, so the repository's
+ * own working tree is never touched. The commits are split into one contiguous run per worktree and the worktrees are
+ * evaluated in parallel. Within a run, each commit is evaluated incrementally from the previous one: only the files
+ * git reports as changed between the two commits are analyzed again by file-local tools
+ * ({@link ITool#isFileLocal()}), the findings of unchanged files (same blob) are reused, and tools not affected by any
+ * changed file are not run at all.
+ * </p>
+ * <p>
+ * The series is written to {@code <repository name>_history.json} in the results directory:
+ * <pre>
+ *   {"repository": ..., "quality_model": ..., "fingerprint": ..., "nodes": [node name, ...],
+ *    "commits": [{"commit": id, "time": committer time (s), "values": [value per node, ...]}, ...]}
+ * </pre>
+ * ordered by commit time. Commits already in the series for the same model fingerprint are not evaluated again, so
+ * a later run over a longer range only evaluates the new commits.
+ * </p>
+ */
+public class HistoryEvaluator {
+
+    public static final String HISTORY_FILE_SUFFIX = "_history";
+
+    /**
+     * The values of one commit in the series
+     */
+    private static class Sample {
+        private final String commit;
+        private final long time;
+        private final double[] values;
+
+        private Sample(String commit, long time, double[] values) {
+            this.commit = commit;
+            this.time = time;
+            this.values = values;
+        }
+    }
+
+    // Fields
+    private final QualityModel qualityModel;
+    private final ByteBuffer compiledModel;
+    private final String fingerprint;
+    private final List<String> nodeNames = new ArrayList<>();
+    private int parallelism = 1;
+
+    private int evaluatedCommits;
+    private int reusedCommits;
+    private final Map<String, String> failures = new ConcurrentSkipListMap<>();
+
+
+    // Constructors
+
+    /**
+     * @param qmLocation
+     *      Path to a completely derived quality model file
+     */
+    public HistoryEvaluator(Path qmLocation) {
+        this(new QualityModelStreamImport(qmLocation).importQualityModel());
+    }
+
+    /**
+     * @param qualityModel
+     *      A completely derived quality model. It is not modified by evaluations.
+     */
+    public HistoryEvaluator(QualityModel qualityModel) {
+        this.qualityModel = qualityModel;
+        this.compiledModel = QualityModelSnapshot.compile(qualityModel);
+        this.fingerprint = qualityModel.getFingerprint().getHash();
+
+        nodeNames.add(qualityModel.getTqi().getName());
+        nodeNames.addAll(new TreeSet<>(qualityModel.getQualityAspects().keySet()));
+        nodeNames.addAll(new TreeSet<>(qualityModel.getProductFactors().keySet()));
+    }
+
+
+    // Getters and setters
+
+    /**
+     * @return names of the nodes in the series, in the order of each commit's values
+     */
+    public List<String> getNodeNames() {
+        return Collections.unmodifiableList(nodeNames);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *      Number of worktrees evaluated at the same time (default: 1). The tool instances are shared by the
+     *      worktrees, so worktrees are only evaluated concurrently when all tools are thread-safe (see
+     *      {@link ITool#isThreadSafe()}).
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return number of commits evaluated by the last run
+     */
+    public int getEvaluatedCommits() {
+        return evaluatedCommits;
+    }
+
+    /**
+     * @return number of commits of the last run whose values were taken from the existing series
+     */
+    public int getReusedCommits() {
+        return reusedCommits;
+    }
+
+    /**
+     * @return {Key: commit id, Value: error message} of the commits that failed in the last run
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+
+    // Methods
+
+    /**
+     * Evaluate the commits of a revision range and add them to the repository's series.
+     *
+     * @param repository
+     *      Root directory of a git repository (or of one of its worktrees)
+     * @param revisionRange
+     *      Revision range as understood by git log, e.g. "v1.0..v2.0" or "main". First parents only.
+     * @param resultsDir
+     *      Directory to place the series in. Does not need to exist initially.
+     * @param tools
+     *      Analyzers provided by the language-specific instance, shared by all worktrees.
+     * @return
+     *      The path of the series file
+     */
+    public Path runEvaluator(Path repository, String revisionRange, Path resultsDir, Set<ITool> tools) {
+        return runEvaluator(repository, GitUtility.listCommits(repository, revisionRange), resultsDir, tools);
+    }
+
+    /**
+     * Evaluate commits not in the repository's series yet and add them to it.
+     *
+     * @see #runEvaluator(Path, String, Path, Set)
+     */
+    public Path runEvaluator(Path repository, List<Commit> commits, Path resultsDir, Set<ITool> tools) {
+        long start = System.currentTimeMillis();
+        failures.clear();
+        resultsDir.toFile().mkdirs();
+        Path historyFile = getHistoryFile(repository, resultsDir);
+        Map<String, Sample> history = read(historyFile);
+
+        List<Commit> missing = commits.stream().filter(commit -> !history.containsKey(commit.getId()))
+                .collect(Collectors.toList());
+        Map<String, double[]> values = evaluateCommits(repository, missing, resultsDir.resolve("worktrees"), tools);
+        for (Commit commit : missing) {
+            if (values.containsKey(commit.getId())) {
+                history.put(commit.getId(), new Sample(commit.getId(), commit.getTime(), values.get(commit.getId())));
+            }
+        }
+        evaluatedCommits = values.size();
+        reusedCommits = commits.size() - missing.size();
+
+        write(historyFile, repository, history);
+        System.out.println("* Evaluated " + evaluatedCommits + " commits of " + repository.toAbsolutePath().normalize()
+                .getFileName() + " (" + reusedCommits + " from the existing series, " + failures.size() +
+                " failed) in " + String.format("%.1f s", (System.currentTimeMillis() - start) / 1000.0));
+        return historyFile;
+    }
+
+    /**
+     * @return the series file of a repository in a results directory
+     */
+    public Path getHistoryFile(Path repository, Path resultsDir) {
+        return resultsDir.resolve(repository.toAbsolutePath().normalize().getFileName() + HISTORY_FILE_SUFFIX +
+                ".json");
+    }
+
+    /**
+     * Read a series written for this quality model.
+     *
+     * @return
+     *      {Key: commit id, Value: value per node (see {@link #getNodeNames()})} ordered by commit time; empty if the
+     *      file does not exist or was written for a different quality model
+     */
+    public Map<String, double[]> readHistory(Path historyFile) {
+        Map<String, double[]> history = new LinkedHashMap<>();
+        read(historyFile).values().forEach(sample -> history.put(sample.commit, sample.values));
+        return history;
+    }
+
+    /**
+     * Evaluate commits of a repository in parallel worktrees. Commits that fail are left out of the result and
+     * listed by {@link #getFailures()}.
+     *
+     * @param commits
+     *      Commits to evaluate, ideally in history order so consecutive commits differ little
+     * @param workDir
+     *      Directory to create the worktrees in. Does not need to exist initially.
+     * @return
+     *      {Key: commit id, Value: value per node (see {@link #getNodeNames()})}
+     */
+    public Map<String, double[]> evaluateCommits(Path repository, List<Commit> commits, Path workDir,
+                                                 Set<ITool> tools) {
+        Map<String, double[]> values = new ConcurrentHashMap<>();
+        if (commits.isEmpty()) return values;
+
+        int worktrees = Math.min(tools.stream().allMatch(ITool::isThreadSafe) ? parallelism : 1, commits.size());
+        String projectName = repository.toAbsolutePath().normalize().getFileName().toString();
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(worktrees, runnable -> {
+            Thread thread = new Thread(runnable, "history-evaluator-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        List<Future<?>> runs = new ArrayList<>();
+        try {
+            for (int i = 0; i < worktrees; i++) {
+                List<Commit> run = commits.subList(i * commits.size() / worktrees,
+                        (i + 1) * commits.size() / worktrees);
+                // The worktree directory is named after the repository: it is the evaluated project's name
+                Path worktree = workDir.resolve(String.valueOf(i)).resolve(projectName).toAbsolutePath().normalize();
+                runs.add(executor.submit(() -> evaluateRun(repository, run, worktree, tools, values)));
+            }
+            for (Future<?> run : runs) run.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("History evaluation was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return values;
+    }
+
+    /**
+     * Evaluate a contiguous run of commits in one worktree, each incrementally from the previous one.
+     */
+    private void evaluateRun(Path repository, List<Commit> run, Path worktree, Set<ITool> tools,
+                             Map<String, double[]> values) {
+        if (Files.exists(worktree)) {
+            // Left over by an interrupted run
+            GitUtility.git(repository, "worktree", "prune");
+            try {
+                FileUtils.deleteDirectory(worktree.toFile());
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to delete stale worktree " + worktree, e);
+            }
+        }
+        GitUtility.addWorktree(repository, worktree, run.get(0).getId());
+        try {
+            SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+            IncrementalAnalysis analysis = new IncrementalAnalysis(evaluator, worktree, tools);
+            String checkedOut = run.get(0).getId();
+            for (Commit commit : run) {
+                try {
+                    List<Path> changedFiles = new ArrayList<>();
+                    if (!commit.getId().equals(checkedOut)) {
+                        GitUtility.checkout(worktree, commit.getId());
+                        GitUtility.changedFiles(worktree, checkedOut, commit.getId())
+                                .forEach(file -> changedFiles.add(worktree.resolve(file)));
+                        checkedOut = commit.getId();
+                    }
+                    Project project = evaluator.evaluateProject(worktree, QualityModelSnapshot.instance(compiledModel),
+                            analysis.analyze(changedFiles));
+                    values.put(commit.getId(), nodeValues(project.getQualityModel()));
+                } catch (RuntimeException e) {
+                    System.out.println("* Evaluation of commit " + commit.getId() + " failed: " + e.getMessage());
+                    failures.put(commit.getId(), String.valueOf(e.getMessage()));
+                    // Start the next commit from a full analysis
+                    analysis = new IncrementalAnalysis(evaluator, worktree, tools);
+                }
+            }
+        } finally {
+            GitUtility.removeWorktree(repository, worktree);
+        }
+    }
+
+    private double[] nodeValues(QualityModel evaluatedModel) {
+        double[] values = new double[nodeNames.size()];
+        for (int i = 0; i < values.length; i++) {
+            String name = nodeNames.get(i);
+            ModelNode node = i == 0 ? evaluatedModel.getTqi() : evaluatedModel.getQualityAspects().get(name);
+            if (node == null) node = evaluatedModel.getProductFactors().get(name);
+            values[i] = node.getValue();
+        }
+        return values;
+    }
+
+    private Map<String, Sample> read(Path historyFile) {
+        Map<String, Sample> history = new LinkedHashMap<>();
+        if (!Files.isRegularFile(historyFile)) return history;
+
+        try (Reader reader = Files.newBufferedReader(historyFile, StandardCharsets.UTF_8)) {
+            JsonObject series = new JsonParser().parse(reader).getAsJsonObject();
+
+            // A series of another model version, or not a series at all, is started over
+            JsonElement seriesFingerprint = series.get("fingerprint");
+            JsonElement seriesNodes = series.get("nodes");
+            if (seriesFingerprint == null || !fingerprint.equals(seriesFingerprint.getAsString()) ||
+                    seriesNodes == null || series.get("commits") == null) {
+                return history;
+            }
+            List<String> nodes = new ArrayList<>();
+            seriesNodes.getAsJsonArray().forEach(node -> nodes.add(node.getAsString()));
+            if (!nodeNames.equals(nodes)) return history;
+
+            for (JsonElement element : series.getAsJsonArray("commits")) {
+                JsonObject commit = element.getAsJsonObject();
+                JsonArray commitValues = commit.getAsJsonArray("values");
+                double[] values = new double[commitValues.size()];
+                for (int i = 0; i < values.length; i++) values[i] = commitValues.get(i).getAsDouble();
+                String id = commit.get("commit").getAsString();
+                history.put(id, new Sample(id, commit.get("time").getAsLong(), values));
+            }
+            return history;
+        } catch (IOException | RuntimeException e) {
+            // Malformed JSON, or commit entries missing keys or of the wrong type
+            System.out.println("* Ignoring unreadable history file " + historyFile + ": " + e);
+            return new LinkedHashMap<>();
+        }
+    }
+
+    private void write(Path historyFile, Path repository, Map<String, Sample> history) {
+        JsonObject series = new JsonObject();
+        series.addProperty("repository", repository.toAbsolutePath().normalize().getFileName().toString());
+        series.addProperty("quality_model", qualityModel.getName());
+        series.addProperty("fingerprint", fingerprint);
+        JsonArray nodes = new JsonArray();
+        nodeNames.forEach(nodes::add);
+        series.add("nodes", nodes);
+
+        JsonArray commits = new JsonArray();
+        List<Sample> samples = new ArrayList<>(history.values());
+        samples.sort(Comparator.comparingLong(sample -> sample.time));
+        for (Sample sample : samples) {
+            JsonObject commit = new JsonObject();
+            commit.addProperty("commit", sample.commit);
+            commit.addProperty("time", sample.time);
+            JsonArray values = new JsonArray();
+            for (double value : sample.values) values.add(value);
+            commit.add("values", values);
+            commits.add(commit);
+        }
+        series.add("commits", commits);
+
+        try (Writer writer = Files.newBufferedWriter(historyFile, StandardCharsets.UTF_8)) {
+            new GsonBuilder().disableHtmlEscaping().serializeSpecialFloatingPointValues().create()
+                    .toJson(series, writer);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write history " + historyFile, e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package pique.runnable;
+
+import pique.analysis.FindingStore;
+import pique.analysis.IStreamingTool;
+import pique.analysis.ITool;
+import pique.model.Diagnostic;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * The tool results of one project directory whose contents change between analyses (watch mode, a worktree walking
+ * commits). Keeps each tool's findings in a {@link FindingStore} and, given the files changed since the last
+ * analysis, re-runs only the tools affected by them: file-local tools on the changed files, others on the whole
+ * project. The tools re-running on the whole project run in one {@link pique.analysis.ToolScheduler} run, so
+ * prerequisite steps they share run once per analysis. Runs on the changed files bypass the scheduler, so file-local
+ * tools that need it (see {@link #runsOnChangedFiles(ITool)}) re-run on the whole project too.
+ * Not thread-safe: one analysis at a time.
+ */
+class IncrementalAnalysis {
+
+    // Fields
+    private final SingleProjectEvaluator evaluator;
+    private final Path projectDir;
+    private final Set<ITool> tools;
+    private final Map<ITool, FindingStore> findingStores = new HashMap<>();
+    private int toolsRun;
+
+
+    // Constructor
+
+    IncrementalAnalysis(SingleProjectEvaluator evaluator, Path projectDir, Set<ITool> tools) {
+        this.evaluator = evaluator;
+        this.projectDir = projectDir;
+        this.tools = tools;
+    }
+
+
+    // Getters
+
+    /**
+     * @return number of tools run by the last analysis
+     */
+    int getToolsRun() {
+        return toolsRun;
+    }
+
+
+    // Methods
+
+    /**
+     * Bring the tool results up to date. Tools that have not run yet, and all tools when the project directory itself
+     * is among the changed files (e.g. after change events were lost), run on the whole project.
+     *
+     * @param changedFiles
+     *      Files of the project created, modified or deleted since the last analysis
+     * @return
+     *      {Key: diagnostic name, Value: diagnostic with findings} of all tools
+     */
+    Map<String, Diagnostic> analyze(Collection<Path> changedFiles) {
+        boolean everything = changedFiles.contains(projectDir);
+        toolsRun = 0;
+
+        // Tools re-running on the whole project run together, so they share their prerequisite steps
+        Set<ITool> fullRuns = new LinkedHashSet<>();
+        for (ITool tool : tools) {
+            FindingStore findings = findingStores.get(tool);
+            Set<Path> affectedFiles = changedFiles.stream().filter(tool::isAffectedBy)
+                    .collect(Collectors.toCollection(TreeSet::new));
+
+            if (findings == null || everything) {
+                fullRuns.add(tool);
+            } else if (!affectedFiles.isEmpty()) {
+                if (tool.isFileLocal() && runsOnChangedFiles(tool)) {
+                    findings.merge(tool.parseAnalysis(tool.analyze(projectDir, affectedFiles)), affectedFiles);
+                    toolsRun++;
+                } else {
+                    fullRuns.add(tool);
+                }
+            }
+        }
+        if (!fullRuns.isEmpty()) {
+            evaluator.runToolsEach(projectDir, fullRuns).forEach((tool, diagnostics) -> {
+                FindingStore findings = new FindingStore(projectDir);
+                findings.replace(diagnostics);
+                findingStores.put(tool, findings);
+            });
+            toolsRun += fullRuns.size();
+        }
+
+        Map<String, Diagnostic> allDiagnostics = new HashMap<>();
+        for (ITool tool : tools) allDiagnostics.putAll(findingStores.get(tool).getDiagnostics());
+        return allDiagnostics;
+    }
+
+    /**
+     * @return false if a run of the file-local tool needs the tool scheduler: to produce its prerequisite artifacts,
+     *      for admission to the evaluator's tool pool, or to stream its report
+     */
+    private boolean runsOnChangedFiles(ITool tool) {
+        if (!tool.getPrerequisites().isEmpty() || evaluator.getToolPool() != null) return false;
+        return !(tool instanceof IStreamingTool) || !((IStreamingTool) tool).isStreaming();
+    }
+}
@@ -0,0 +1,252 @@
+package pique.runnable;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import org.apache.commons.io.FilenameUtils;
+import pique.analysis.ITool;
+import pique.evaluation.Project;
+import pique.model.ModelNode;
+import pique.model.QualityModel;
+import pique.model.QualityModelSnapshot;
+import pique.model.QualityModelStreamImport;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Behavioral class responsible for running TQI evaluation of many projects with one derived quality model.
+ * <p>
+ * The quality model is imported (and validated) once and compiled to an in-memory snapshot
+ * ({@link QualityModelSnapshot#compile}); each project is evaluated on its own instance of the compiled model, so no
+ * project re-parses the model file or re-resolves its plug-ins. Projects are evaluated concurrently by
+ * {@link SingleProjectEvaluator}, all using the same {@link ITool} instances: projects are only evaluated concurrently
+ * when a parallelism above 1 is set and all tools support analyzing several projects at the same time (see
+ * {@link ITool#isThreadSafe()}).
+ * </p>
+ * <p>
+ * Besides the per-project result files, a summary file (evaluation_summary.json) lists each project's TQI and quality
+ * aspect values, its result file and evaluation time, the projects that failed, and the throughput of the run.
+ * </p>
+ */
+public class MultiProjectEvaluator {
+
+    public static final String SUMMARY_FILE_NAME = "evaluation_summary";
+
+    // Fields
+    private final QualityModel qualityModel;
+    private final ByteBuffer compiledModel;
+    private int parallelism = 1;
+
+    private final Map<String, Path> results = new ConcurrentSkipListMap<>();
+    private final Map<String, String> failures = new ConcurrentSkipListMap<>();
+    private double throughput;
+
+
+    // Constructors
+
+    /**
+     * @param qmLocation
+     *      Path to a completely derived quality model file
+     */
+    public MultiProjectEvaluator(Path qmLocation) {
+        this(new QualityModelStreamImport(qmLocation).importQualityModel());
+    }
+
+    /**
+     * @param qualityModel
+     *      A completely derived quality model. It is not modified by evaluations.
+     */
+    public MultiProjectEvaluator(QualityModel qualityModel) {
+        this.qualityModel = qualityModel;
+        this.compiledModel = QualityModelSnapshot.compile(qualityModel);
+    }
+
+
+    // Getters and setters
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @param parallelism
+     *      Number of projects evaluated at the same time (default: 1). Only used when all tools are thread-safe
+     *      (see {@link ITool#isThreadSafe()}), otherwise projects are evaluated one at a time.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1.");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return {Key: project name, Value: result file} of the projects evaluated by the last run
+     */
+    public Map<String, Path> getResults() {
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * @return {Key: project name, Value: error message} of the projects that failed in the last run. Projects
+     *      skipped because an earlier project of the run has the same name are keyed by their directory.
+     */
+    public Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * @return projects evaluated per minute in the last run
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+
+    // Methods
+
+    /**
+     * @see #runEvaluator(Stream, Path, Set)
+     */
+    public Path runEvaluator(Collection<Path> projectDirs, Path resultsDir, Set<ITool> tools) {
+        return runEvaluator(projectDirs.stream(), resultsDir, tools);
+    }
+
+    /**
+     * Evaluate each project directory and write its results, then write the summary of the run.
+     *
+     * @param projectDirs
+     *      Root directories of the projects to evaluate. Consumed lazily: at most twice the parallelism of
+     *      projects are queued at a time. Projects are named after their directory, and a project named like an
+     *      earlier one is not evaluated (see {@link #getFailures()}).
+     * @param resultsDir
+     *      Directory to place the results in. Does not need to exist initially.
+     * @param tools
+     *      Analyzers provided by the language-specific instance, shared by all projects.
+     * @return
+     *      The path of the summary file
+     */
+    public Path runEvaluator(Stream<Path> projectDirs, Path resultsDir, Set<ITool> tools) {
+        results.clear();
+        failures.clear();
+        resultsDir.toFile().mkdirs();
+
+        Map<String, JsonObject> projectSummaries = new ConcurrentSkipListMap<>();
+        int threads = tools.stream().allMatch(ITool::isThreadSafe) ? parallelism : 1;
+        Semaphore queued = new Semaphore(threads * 2);
+        AtomicInteger threadCounter = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "multi-project-evaluator-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.currentTimeMillis();
+        List<Future<?>> evaluations = new ArrayList<>();
+        Map<String, Path> projectNames = new HashMap<>();
+        try {
+            Iterator<Path> projects = projectDirs.iterator();
+            while (projects.hasNext()) {
+                Path projectDir = projects.next();
+                // Results are named after the project: a second project of the same name would overwrite them
+                Path sameName = projectNames.putIfAbsent(projectName(projectDir), projectDir);
+                if (sameName != null) {
+                    String message = "Project name '" + projectName(projectDir) + "' is already used by " + sameName +
+                            " in this run.";
+                    System.out.println("* Evaluation of " + projectDir + " skipped: " + message);
+                    failures.put(projectDir.toString(), message);
+                    continue;
+                }
+                queued.acquire();
+                evaluations.add(executor.submit(() -> {
+                    try {
+                        evaluate(projectDir, resultsDir, tools, projectSummaries);
+                    } finally {
+                        queued.release();
+                    }
+                }));
+            }
+            for (Future<?> evaluation : evaluations) evaluation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Multi-project evaluation was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long wallClockMillis = System.currentTimeMillis() - start;
+
+        throughput = results.size() / Math.max(wallClockMillis / 60000.0, 1e-6);
+        System.out.println("* Evaluated " + results.size() + " projects (" + failures.size() + " failed) in " +
+                String.format("%.1f s: %.1f projects/min", wallClockMillis / 1000.0, throughput));
+
+        return writeSummary(resultsDir, projectSummaries, wallClockMillis);
+    }
+
+    /**
+     * @return the name {@link SingleProjectEvaluator} gives the project
+     */
+    private static String projectName(Path projectDir) {
+        return FilenameUtils.getBaseName(projectDir.getFileName().toString());
+    }
+
+    private void evaluate(Path projectDir, Path resultsDir, Set<ITool> tools, Map<String, JsonObject> summaries) {
+        String projectName = projectName(projectDir);
+        long start = System.currentTimeMillis();
+        try {
+            SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+            Path result = evaluator.runEvaluator(projectDir, resultsDir, QualityModelSnapshot.instance(compiledModel),
+                    tools);
+            Project project = evaluator.getEvaluatedProject();
+
+            JsonObject summary = new JsonObject();
+            summary.addProperty("tqi", project.getQualityModel().getTqi().getValue());
+            JsonObject qualityAspects = new JsonObject();
+            for (ModelNode qualityAspect : new TreeMap<>(project.getQualityModel().getQualityAspects()).values()) {
+                qualityAspects.addProperty(qualityAspect.getName(), qualityAspect.getValue());
+            }
+            summary.add("quality_aspects", qualityAspects);
+            summary.addProperty("lines_of_code", project.getLinesOfCode());
+            summary.addProperty("results", result.toString());
+            summary.addProperty("millis", System.currentTimeMillis() - start);
+
+            summaries.put(project.getName(), summary);
+            results.put(project.getName(), result);
+        } catch (RuntimeException e) {
+            System.out.println("* Evaluation of " + projectDir + " failed: " + e.getMessage());
+            failures.put(projectName, String.valueOf(e.getMessage()));
+        }
+    }
+
+    private Path writeSummary(Path resultsDir, Map<String, JsonObject> projectSummaries, long wallClockMillis) {
+        JsonObject summary = new JsonObject();
+        summary.addProperty("quality_model", qualityModel.getName());
+        summary.addProperty("fingerprint", qualityModel.getFingerprint().getHash());
+        summary.addProperty("projects_evaluated", results.size());
+        summary.addProperty("projects_failed", failures.size());
+        summary.addProperty("wall_clock_millis", wallClockMillis);
+        summary.addProperty("projects_per_minute", throughput);
+
+        JsonObject projects = new JsonObject();
+        projectSummaries.forEach(projects::add);
+        summary.add("projects", projects);
+        JsonObject failed = new JsonObject();
+        failures.forEach(failed::addProperty);
+        summary.add("failures", failed);
+
+        Path summaryFile = resultsDir.resolve(SUMMARY_FILE_NAME + ".json");
+        try (Writer writer = Files.newBufferedWriter(summaryFile, StandardCharsets.UTF_8)) {
+            new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create().toJson(summary, writer);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to write evaluation summary " + summaryFile, e);
+        }
+        return summaryFile;
+    }
+}
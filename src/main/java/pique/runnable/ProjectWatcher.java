@@ -0,0 +1,238 @@
+package pique.runnable;
+
+import org.apache.commons.io.FilenameUtils;
+import pique.analysis.FindingStore;
+import pique.analysis.ITool;
+import pique.model.Diagnostic;
+import pique.model.QualityModel;
+import pique.model.QualityModelSnapshot;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watch mode of {@link SingleProjectEvaluator}: re-evaluates a project whenever its files change, for quick feedback
+ * while developing.
+ * <p>
+ * Changes are collected with a {@link WatchService} over the project tree and debounced: a burst of changes (a save,
+ * a checkout, a build) triggers one re-evaluation once the tree has been quiet for the debounce time. The findings
+ * of each tool are kept from the previous evaluation in a {@link FindingStore} and only the tools affected by one of
+ * the changed files (see {@link ITool#isAffectedBy(Path)}) are run again. Tools with file-local analysis
+ * ({@link ITool#isFileLocal()}) analyze only the changed files and their findings for those files are replaced; other
+ * tools analyze the whole project again. The findings are then applied to a fresh instance of the quality
+ * model, compiled once when watching starts, and the TQI is re-evaluated; the model evaluation itself is cheap
+ * compared to running the tools.
+ * </p>
+ * <p>
+ * Changes below the results directory, if it is inside the project, are ignored.
+ * </p>
+ */
+public class ProjectWatcher implements Closeable {
+
+    // Fields
+    private final SingleProjectEvaluator evaluator;
+    private final Path projectDir;
+    private final Path resultsDir;
+    private final ByteBuffer compiledModel;
+    private final Set<ITool> tools;
+    private long debounceMillis = 300;
+
+    private final IncrementalAnalysis analysis;
+    private final Map<WatchKey, Path> watchedDirs = new HashMap<>();
+    private WatchService watchService;
+    private Thread watchThread;
+    private volatile boolean running;
+    private int evaluations;
+
+
+    // Constructor
+
+    /**
+     * @param evaluator
+     *      Evaluator whose evaluated project is updated by each evaluation
+     * @param projectDir
+     *      Path to root directory of project to be analyzed.
+     * @param resultsDir
+     *      Directory to place the analysis results in. Does not need to exist initially.
+     * @param qualityModel
+     *      A completely derived quality model. It is not modified by evaluations.
+     * @param tools
+     *      Analyzers provided by the language-specific instance.
+     */
+    public ProjectWatcher(SingleProjectEvaluator evaluator, Path projectDir, Path resultsDir, QualityModel qualityModel,
+                          Set<ITool> tools) {
+        this.evaluator = evaluator;
+        this.projectDir = projectDir.toAbsolutePath().normalize();
+        this.resultsDir = resultsDir.toAbsolutePath().normalize();
+        this.compiledModel = QualityModelSnapshot.compile(qualityModel);
+        this.tools = tools;
+        this.analysis = new IncrementalAnalysis(evaluator, this.projectDir, tools);
+    }
+
+
+    // Getters and setters
+
+    public long getDebounceMillis() {
+        return debounceMillis;
+    }
+
+    /**
+     * @param debounceMillis
+     *      How long the project tree must be quiet after a change before it is re-evaluated (default: 300)
+     */
+    public void setDebounceMillis(long debounceMillis) {
+        if (debounceMillis < 0) throw new IllegalArgumentException("Debounce time can not be negative.");
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * @return number of evaluations run so far, the initial one included
+     */
+    public synchronized int getEvaluations() {
+        return evaluations;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    // Methods
+
+    /**
+     * Evaluate the project, then start watching it in a background thread.
+     *
+     * @param onEvaluation
+     *      Called with the path of the results file after each evaluation, including the initial one.
+     */
+    public void start(Consumer<Path> onEvaluation) {
+        if (running) throw new IllegalStateException("Already watching " + projectDir);
+        onEvaluation.accept(refresh(Collections.emptySet()));
+
+        try {
+            watchService = projectDir.getFileSystem().newWatchService();
+            register(projectDir, null);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to watch " + projectDir, e);
+        }
+        running = true;
+        watchThread = new Thread(() -> watch(onEvaluation), "project-watcher-" + projectDir.getFileName());
+        watchThread.setDaemon(true);
+        watchThread.start();
+        System.out.println("* Watching " + projectDir + " for changes");
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            if (watchService != null) watchService.close();
+        } catch (IOException e) {
+            System.out.println("* Unable to close watch service of " + projectDir + ": " + e.getMessage());
+        }
+        if (watchThread != null) watchThread.interrupt();
+    }
+
+    /**
+     * Re-evaluate the project after some of its files changed, running only the tools affected by the changes.
+     * Tools that have not run yet, and all tools when the project directory itself is among the changed files, run
+     * on the whole project.
+     *
+     * @param changedFiles
+     *      Files that were created, modified or deleted since the last evaluation
+     * @return
+     *      The path to the produced quality analysis file on the hard disk.
+     */
+    public synchronized Path refresh(Collection<Path> changedFiles) {
+        long start = System.currentTimeMillis();
+        Map<String, Diagnostic> allDiagnostics = analysis.analyze(changedFiles);
+
+        Path results = evaluator.evaluate(projectDir, resultsDir, QualityModelSnapshot.instance(compiledModel),
+                allDiagnostics);
+        evaluations++;
+
+        if (!changedFiles.isEmpty()) {
+            System.out.println("* Re-evaluated " + FilenameUtils.getBaseName(projectDir.getFileName().toString()) +
+                    " after " + changedFiles.size() + " changed files: ran " + analysis.getToolsRun() + " of " +
+                    tools.size() + " tools, TQI " + evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue() +
+                    " (" + (System.currentTimeMillis() - start) + " ms)");
+        }
+        return results;
+    }
+
+    private void watch(Consumer<Path> onEvaluation) {
+        try {
+            while (running) {
+                Set<Path> changedFiles = new TreeSet<>();
+                collect(watchService.take(), changedFiles);
+
+                // Debounce: wait until no change arrived for the debounce time
+                WatchKey key;
+                while ((key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, changedFiles);
+                }
+
+                if (changedFiles.isEmpty()) continue;
+                try {
+                    onEvaluation.accept(refresh(changedFiles));
+                } catch (RuntimeException e) {
+                    System.out.println("* Re-evaluation of " + projectDir + " failed: " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        } finally {
+            running = false;
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changedFiles) {
+        Path dir = watchedDirs.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || dir == null) {
+                // Events were lost: treat the whole project as changed
+                changedFiles.add(projectDir);
+                continue;
+            }
+            Path changed = dir.resolve((Path) event.context());
+            if (changed.startsWith(resultsDir)) continue;
+            changedFiles.add(changed);
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(changed, LinkOption.NOFOLLOW_LINKS)) {
+                try {
+                    register(changed, changedFiles);
+                } catch (IOException e) {
+                    System.out.println("* Unable to watch " + changed + ": " + e.getMessage());
+                }
+            }
+        }
+        if (!key.reset()) watchedDirs.remove(key);
+    }
+
+    /**
+     * Watch a directory tree. Files already in a newly created tree are added to the changed files.
+     */
+    private void register(Path root, Set<Path> changedFiles) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.startsWith(resultsDir)) return FileVisitResult.SKIP_SUBTREE;
+                watchedDirs.put(dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE), dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (changedFiles != null) changedFiles.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
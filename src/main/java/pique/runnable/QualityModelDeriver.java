@@ -1,8 +1,10 @@
 package pique.runnable;
 
 import pique.analysis.ITool;
+import pique.calibration.BenchmarkState;
 import pique.calibration.IBenchmarker;
 import pique.calibration.IWeighter;
+import pique.calibration.ThresholdBootstrap;
 import pique.calibration.WeightResult;
 import pique.model.Measure;
 import pique.model.ModelNode;
@@ -54,4 +56,74 @@ public class QualityModelDeriver {
 
         return qmDesign;
     }
+
+    /**
+     * Derive a quality model incrementally: the benchmark state of a previous derivation is loaded from
+     * benchmarkStateFile (if it exists) so that only benchmark projects added or removed since then are analyzed.
+     * The updated benchmark state is written back to benchmarkStateFile afterwards.
+     *
+     * @param benchmarkStateFile
+     *      Location of the benchmark state json file. Does not need to exist on the first run.
+     * @throws IllegalArgumentException
+     *      If the model's benchmarker does not support incremental benchmarking (see
+     *      {@link IBenchmarker#getBenchmarkState()})
+     */
+    public static QualityModel deriveModel(QualityModel qmDesign, Set<ITool> tools, Path benchmarkRepository,
+                                           String projectRootFlag, Path benchmarkStateFile) {
+
+        IBenchmarker benchmarker = qmDesign.getBenchmarker();
+        if (benchmarker.getBenchmarkState() == null) {
+            throw new IllegalArgumentException(benchmarker.getName() + " does not support incremental benchmarking: " +
+                    "derive the model without a benchmark state file.");
+        }
+        if (benchmarkStateFile.toFile().isFile()) {
+            benchmarker.setBenchmarkState(BenchmarkState.importFromJson(benchmarkStateFile));
+        }
+
+        QualityModel derivedModel = deriveModel(qmDesign, tools, benchmarkRepository, projectRootFlag);
+
+        benchmarker.getBenchmarkState().exportToJson(benchmarkStateFile);
+
+        return derivedModel;
+    }
+
+    /**
+     * Optional step after model derivation: bootstrap the benchmark data collected while deriving thresholds and
+     * attach a confidence interval to every measure threshold. The intervals are exported alongside the thresholds
+     * in the derived model file ('threshold_intervals').
+     *
+     * @param derivedModel
+     *      A model returned by deriveModel(). Its benchmarker must still hold the benchmark data of the derivation
+     *      and support threshold re-derivation (see {@link IBenchmarker#canComputeThresholds()}).
+     * @param resamples
+     *      Number of bootstrap resamples
+     * @param confidenceLevel
+     *      Width of the confidence intervals, e.g. 0.95
+     * @return
+     *      The derived model, with threshold intervals set on its measures
+     */
+    public static QualityModel deriveThresholdIntervals(QualityModel derivedModel, int resamples,
+                                                        double confidenceLevel) {
+
+        IBenchmarker benchmarker = derivedModel.getBenchmarker();
+        BenchmarkState benchmarkState = benchmarker.getBenchmarkState();
+        if (benchmarkState == null) {
+            throw new IllegalStateException(benchmarker.getName() + " does not retain benchmark data to bootstrap.");
+        }
+        if (!benchmarker.canComputeThresholds()) {
+            throw new IllegalStateException(benchmarker.getName() + " can not re-derive thresholds from resampled " +
+                    "benchmark data.");
+        }
+
+        ThresholdBootstrap bootstrap = new ThresholdBootstrap(resamples, confidenceLevel);
+        Map<String, Double[][]> intervals = bootstrap.computeIntervals(benchmarkState.getMeasureValueArrays(),
+                benchmarker::computeThresholds);
+
+        intervals.forEach((measureName, measureIntervals) -> {
+            Measure measure = (Measure)derivedModel.getMeasure(measureName);
+            if (measure != null) measure.setThresholdIntervals(measureIntervals);
+        });
+
+        return derivedModel;
+    }
 }
@@ -0,0 +1,267 @@
+package pique.runnable;
+
+import pique.analysis.ITool;
+import pique.utility.GitUtility;
+import pique.utility.GitUtility.Commit;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Finds the commit that made the value of a quality model node drop below a threshold, by binary search over the
+ * first-parent commits between a good and a bad revision.
+ * <p>
+ * Node values come from the repository's {@link HistoryEvaluator} series: commits already in the series are never
+ * evaluated again, and every cached commit inside the search range narrows the range before a new commit is probed.
+ * Without cached values, about log2(N) commits of a range of N are evaluated (plus the two ends). Each probed commit
+ * is added to the series, so later bisections and history runs reuse it. A commit that fails to evaluate is skipped
+ * and a neighbour is probed instead; if every commit left in the range fails, the result is a range rather than a
+ * single commit.
+ * </p>
+ * <p>
+ * Like git bisect, the search assumes that the commits of the range turn from good (value at or above the threshold)
+ * to bad (value below it) once.
+ * </p>
+ */
+public class RegressionBisector {
+
+    /**
+     * Outcome of a bisection
+     */
+    public static class Result {
+        private final String node;
+        private final double threshold;
+        private final Commit lastGood;
+        private final Commit firstBad;
+        private final double lastGoodValue;
+        private final double firstBadValue;
+        private final int skippedCommits;
+        private final int commitsInRange;
+        private final int evaluatedCommits;
+
+        private Result(String node, double threshold, Commit lastGood, Commit firstBad, double lastGoodValue,
+                       double firstBadValue, int skippedCommits, int commitsInRange, int evaluatedCommits) {
+            this.node = node;
+            this.threshold = threshold;
+            this.lastGood = lastGood;
+            this.firstBad = firstBad;
+            this.lastGoodValue = lastGoodValue;
+            this.firstBadValue = firstBadValue;
+            this.skippedCommits = skippedCommits;
+            this.commitsInRange = commitsInRange;
+            this.evaluatedCommits = evaluatedCommits;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public Commit getLastGood() {
+            return lastGood;
+        }
+
+        /**
+         * @return the commit responsible for the drop, if {@link #isExact()}; otherwise the end of the range of
+         * commits that could not be evaluated which contains it
+         */
+        public Commit getFirstBad() {
+            return firstBad;
+        }
+
+        public double getLastGoodValue() {
+            return lastGoodValue;
+        }
+
+        public double getFirstBadValue() {
+            return firstBadValue;
+        }
+
+        /**
+         * @return number of commits between the last good and first bad commit that could not be evaluated
+         */
+        public int getSkippedCommits() {
+            return skippedCommits;
+        }
+
+        /**
+         * @return true if the first bad commit directly follows the last good commit
+         */
+        public boolean isExact() {
+            return skippedCommits == 0;
+        }
+
+        /**
+         * @return number of commits searched, the good and bad ends included
+         */
+        public int getCommitsInRange() {
+            return commitsInRange;
+        }
+
+        /**
+         * @return number of commits evaluated by the bisection (commits not already in the series)
+         */
+        public int getEvaluatedCommits() {
+            return evaluatedCommits;
+        }
+
+        @Override
+        public String toString() {
+            return node + " dropped below " + threshold + " at " + firstBad + " (" + lastGoodValue + " -> " +
+                    firstBadValue + (isExact() ? "" : ", " + skippedCommits + " untestable commits before it") + ")";
+        }
+    }
+
+    // Fields
+    private final HistoryEvaluator historyEvaluator;
+
+
+    // Constructor
+
+    /**
+     * @param historyEvaluator
+     *      Evaluator of the quality model whose node is bisected. Its series holds the cached commit values.
+     */
+    public RegressionBisector(HistoryEvaluator historyEvaluator) {
+        this.historyEvaluator = historyEvaluator;
+    }
+
+
+    // Methods
+
+    /**
+     * Find the first commit between a good and a bad revision where a node's value is below a threshold.
+     *
+     * @param repository
+     *      Root directory of the git repository
+     * @param goodRevision
+     *      A revision whose node value is at or above the threshold, e.g. the previous release tag
+     * @param badRevision
+     *      A later revision whose node value is below the threshold
+     * @param node
+     *      Name of the TQI, quality aspect or product factor node (see {@link HistoryEvaluator#getNodeNames()})
+     * @param threshold
+     *      Values below the threshold are bad
+     * @param resultsDir
+     *      Directory of the repository's series. Does not need to exist initially.
+     * @param tools
+     *      Analyzers provided by the language-specific instance.
+     * @return
+     *      The last good and first bad commits
+     */
+    public Result bisect(Path repository, String goodRevision, String badRevision, String node, double threshold,
+                         Path resultsDir, Set<ITool> tools) {
+        int nodeIndex = historyEvaluator.getNodeNames().indexOf(node);
+        if (nodeIndex < 0) throw new IllegalArgumentException("The quality model has no node named '" + node + "'.");
+
+        Commit good = GitUtility.getCommit(repository, goodRevision);
+        List<Commit> range = new ArrayList<>();
+        range.add(good);
+        range.addAll(GitUtility.listCommits(repository, good.getId() + ".." + badRevision));
+        if (range.size() < 2) {
+            throw new IllegalArgumentException(badRevision + " does not follow " + goodRevision + " in first-parent history.");
+        }
+
+        Probe probe = new Probe(repository, resultsDir, tools, nodeIndex);
+        int low = 0;
+        int high = range.size() - 1;
+        Double lowValue = probe.value(range.get(low));
+        Double highValue = probe.value(range.get(high));
+        if (lowValue == null || highValue == null) {
+            throw new RuntimeException("Unable to evaluate the ends of the range " + goodRevision + ".." + badRevision + ".");
+        }
+        if (lowValue < threshold) {
+            throw new IllegalArgumentException(node + " is already below " + threshold + " at " + goodRevision + ".");
+        }
+        if (highValue >= threshold) {
+            throw new IllegalArgumentException(node + " is not below " + threshold + " at " + badRevision + ".");
+        }
+
+        Set<Integer> failed = new HashSet<>();
+        while (high - low > 1) {
+            // Narrow the range with the commits already in the series
+            for (int i = low + 1; i < high; i++) {
+                Double cached = probe.cachedValue(range.get(i));
+                if (cached == null) continue;
+                if (cached >= threshold) {
+                    low = i;
+                    lowValue = cached;
+                } else {
+                    high = i;
+                    highValue = cached;
+                }
+            }
+            if (high - low <= 1) break;
+
+            // Probe the middle commit, or the closest one that can be evaluated
+            int middle = (low + high) / 2;
+            Double value = null;
+            int probed = -1;
+            for (int offset = 0; value == null && offset < high - low; offset++) {
+                for (int candidate : new int[] { middle + offset, middle - offset }) {
+                    if (value != null || candidate <= low || candidate >= high || failed.contains(candidate)) continue;
+                    value = probe.value(range.get(candidate));
+                    if (value == null) failed.add(candidate);
+                    else probed = candidate;
+                }
+            }
+            if (value == null) break;
+
+            if (value >= threshold) {
+                low = probed;
+                lowValue = value;
+            } else {
+                high = probed;
+                highValue = value;
+            }
+        }
+
+        Result result = new Result(node, threshold, range.get(low), range.get(high), lowValue, highValue,
+                high - low - 1, range.size(), probe.evaluated);
+        System.out.println("* Bisected " + range.size() + " commits, evaluated " + probe.evaluated + ": " + result);
+        return result;
+    }
+
+    /**
+     * Node values of commits, from the series or evaluated and added to it
+     */
+    private class Probe {
+        private final Path repository;
+        private final Path resultsDir;
+        private final Set<ITool> tools;
+        private final int nodeIndex;
+        private final Path historyFile;
+        private Map<String, double[]> history;
+        private int evaluated;
+
+        private Probe(Path repository, Path resultsDir, Set<ITool> tools, int nodeIndex) {
+            this.repository = repository;
+            this.resultsDir = resultsDir;
+            this.tools = tools;
+            this.nodeIndex = nodeIndex;
+            this.historyFile = historyEvaluator.getHistoryFile(repository, resultsDir);
+            this.history = historyEvaluator.readHistory(historyFile);
+        }
+
+        private Double cachedValue(Commit commit) {
+            double[] values = history.get(commit.getId());
+            return values == null ? null : values[nodeIndex];
+        }
+
+        /**
+         * @return the commit's value, or null if it can not be evaluated
+         */
+        private Double value(Commit commit) {
+            Double cached = cachedValue(commit);
+            if (cached != null) return cached;
+
+            historyEvaluator.runEvaluator(repository, Collections.singletonList(commit), resultsDir, tools);
+            evaluated++;
+            history = historyEvaluator.readHistory(historyFile);
+            return cachedValue(commit);
+        }
+    }
+}
@@ -2,15 +2,21 @@ package pique.runnable;
 
 import org.apache.commons.io.FilenameUtils;
 import pique.model.Diagnostic;
+import pique.analysis.IPrerequisite;
 import pique.analysis.ITool;
+import pique.analysis.ToolPool;
+import pique.analysis.ToolScheduler;
 import pique.evaluation.Project;
 import pique.model.QualityModel;
 import pique.model.QualityModelImport;
 
 import java.nio.file.Path;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Behavioral class responsible for running TQI evaluation of a single project
@@ -20,13 +26,58 @@ import java.util.Set;
 // TODO (1.0): turn into static methods (maybe unless logger problems)
 public class SingleProjectEvaluator {
 
+    // Shared by all evaluators: tool runs mostly wait for external processes
+    private static final Executor TOOL_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger threadCounter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "tool-runner-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     Project project;
+    private Executor toolExecutor = TOOL_EXECUTOR;
+    private final List<IPrerequisite> prerequisites = new ArrayList<>();
+    private ToolPool toolPool;
 
     //region Get / Set
     public Project getEvaluatedProject() {
         return project;
     }
 
+    /**
+     * @param toolExecutor
+     *      Executor running the tools of a project, e.g. to bound the number of tool runs across evaluators
+     *      (default: a shared pool growing as needed)
+     */
+    public void setToolExecutor(Executor toolExecutor) {
+        this.toolExecutor = toolExecutor;
+    }
+
+    public ToolPool getToolPool() {
+        return toolPool;
+    }
+
+    /**
+     * @param toolPool
+     *      Pool admitting the tool runs by their memory and CPU footprints, e.g. shared by evaluators on one host
+     *      (default: none, every tool runs right away)
+     */
+    public void setToolPool(ToolPool toolPool) {
+        this.toolPool = toolPool;
+    }
+
+    /**
+     * @param prerequisite
+     *      Preprocessing step producing an artifact some of the tools need (see {@link ITool#getPrerequisites()})
+     */
+    public void addPrerequisite(IPrerequisite prerequisite) {
+        prerequisites.add(prerequisite);
+    }
+
     /**
      * Entry point for running single project evaluation. The library assumes the user has extended Qatch
      * by implementing ITool with language-specific functionality.
@@ -49,18 +100,91 @@ public class SingleProjectEvaluator {
         initialize(projectDir, resultsDir, qmLocation);
         QualityModelImport qmImport = new QualityModelImport(qmLocation);
         QualityModel qualityModel = qmImport.importQualityModel();
+        return runEvaluator(projectDir, resultsDir, qualityModel, tools);
+    }
+
+    /**
+     * Evaluate a project using an already imported quality model. The model is used as the project's model and will
+     * hold the project's findings and values afterwards, so each project evaluated needs its own model instance
+     * (see {@link pique.model.QualityModelSnapshot#instance}).
+     *
+     * @param projectDir
+     *      Path to root directory of project to be analyzed.
+     * @param resultsDir
+     *      Directory to place the analysis results in. Does not need to exist initially.
+     * @param qualityModel
+     *      A completely derived quality model.
+     * @return
+     *      The path to the produced quality analysis file on the hard disk.
+     */
+    public Path runEvaluator(Path projectDir, Path resultsDir, QualityModel qualityModel, Set<ITool> tools) {
+
+        if (!projectDir.toFile().exists()) {
+            throw new IllegalArgumentException("Invalid projectDir path given.");
+        }
+
+        // Run the static analysis tools process
+        Map<String, Diagnostic> allDiagnostics = runTools(projectDir, tools);
+
+        return evaluate(projectDir, resultsDir, qualityModel, allDiagnostics);
+    }
+
+    /**
+     * Evaluate a project in watch mode: evaluate it once, then re-evaluate it whenever files of the project change
+     * until the returned watcher is closed. See {@link ProjectWatcher}.
+     *
+     * @param projectDir
+     *      Path to root directory of project to be analyzed.
+     * @param resultsDir
+     *      Directory to place the analysis results in. Does not need to exist initially.
+     * @param qmLocation
+     *      Path to a completely derived quality model.
+     * @param onEvaluation
+     *      Called with the path of the results file after each evaluation.
+     * @return
+     *      The running watcher
+     */
+    public ProjectWatcher watch(Path projectDir, Path resultsDir, Path qmLocation, Set<ITool> tools,
+                                Consumer<Path> onEvaluation) {
+        initialize(projectDir, resultsDir, qmLocation);
+        ProjectWatcher watcher = new ProjectWatcher(this, projectDir, resultsDir,
+                new QualityModelImport(qmLocation).importQualityModel(), tools);
+        watcher.start(onEvaluation);
+        return watcher;
+    }
+
+
+    /**
+     * Apply tool results to a quality model and evaluate it as the model of the project.
+     *
+     * @param allDiagnostics
+     *      {Key: diagnostic name, Value: diagnostic with findings} of all tools. Must include "loc".
+     * @return
+     *      The path to the produced quality analysis file on the hard disk.
+     */
+    Path evaluate(Path projectDir, Path resultsDir, QualityModel qualityModel, Map<String, Diagnostic> allDiagnostics) {
+
+        resultsDir.toFile().mkdirs();
+        evaluateProject(projectDir, qualityModel, allDiagnostics);
+
+        // Create a file of the results and return its path
+        return project.exportToJson(resultsDir);
+    }
+
+    /**
+     * Apply tool results to a quality model and evaluate it as the model of the project, without exporting results.
+     *
+     * @return
+     *      The evaluated project
+     */
+    Project evaluateProject(Path projectDir, QualityModel qualityModel, Map<String, Diagnostic> allDiagnostics) {
+
         project = new Project(FilenameUtils.getBaseName(projectDir.getFileName().toString()), projectDir, qualityModel);
 
         // Validate State
         // TODO: validate more objects such as if the quality model has thresholds and weights, are there expected diagnostics, etc
         validatePreEvaluationState(project);
 
-        // Run the static analysis tools process
-        Map<String, Diagnostic> allDiagnostics = new HashMap<>();
-        tools.forEach(tool -> {
-            allDiagnostics.putAll(runTool(projectDir, tool));
-        });
-
         // Run LOC tool to set lines of code
         int linesOfCode = (int)allDiagnostics.get("loc").getValue();
         // TODO (1.0): need to rethink loc, normalizer, evaluator interactions for benchmark repository
@@ -74,9 +198,7 @@ public class SingleProjectEvaluator {
         project.updateDiagnosticsWithFindings(allDiagnostics);
 
         double tqiValue = project.evaluateTqi();
-
-        // Create a file of the results and return its path
-        return project.exportToJson(resultsDir);
+        return project;
     }
 
 
@@ -103,29 +225,31 @@ public class SingleProjectEvaluator {
 
 
     /**
-     * Run static analysis tool evaluation process:
-     *   (1) run static analysis tool
-     *   (2) parse: get object representation of the diagnostics described by the QM
-     *   (3) make collection of diagnostic objects
+     * Run all tools of a project concurrently, after the prerequisite steps they need (see {@link ToolScheduler}), so
+     * a project takes about as long as its longest chain of steps rather than the sum of all steps and tools.
      *
-     * @param projectDir
-     *      Path to root directory of project to be analyzed.
-     * @param tool
-     *      Analyzer provided by language-specific instance necessary to find findings of the project.
      * @return
-     *      A mapping of (Key: property name, Value: measure object) where the measure objects contain the
-     *      static analysis findings for that measure.
+     *      {Key: diagnostic name, Value: diagnostic with findings} of all tools
      */
-    private Map<String, Diagnostic> runTool(Path projectDir, ITool tool) {
-
-        // (1) run static analysis tool
-        // TODO: turn this into a temp file that always deletes on/before program exit
-        Path analysisOutput = tool.analyze(projectDir);
+    Map<String, Diagnostic> runTools(Path projectDir, Set<ITool> tools) {
+        return createToolScheduler().run(projectDir, tools);
+    }
 
-        // (2) prase output: make collection of {Key: diagnostic name, Value: diagnostic objects}
-        return tool.parseAnalysis(analysisOutput);
+    /**
+     * Like {@link #runTools(Path, Set)}, keeping the diagnostics of each tool apart.
+     *
+     * @return
+     *      {Key: tool, Value: {Key: diagnostic name, Value: diagnostic with findings}}
+     */
+    Map<ITool, Map<String, Diagnostic>> runToolsEach(Path projectDir, Set<ITool> tools) {
+        return createToolScheduler().runEach(projectDir, tools);
     }
 
+    private ToolScheduler createToolScheduler() {
+        ToolScheduler scheduler = new ToolScheduler(toolExecutor, prerequisites);
+        scheduler.setToolPool(toolPool);
+        return scheduler;
+    }
 
     /**
      * Sequence of state checks of the project's quality model before running evaluation.
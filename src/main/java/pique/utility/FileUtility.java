@@ -7,6 +7,7 @@ import org.apache.commons.io.FilenameUtils;
 
 import java.io.*;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -44,14 +45,10 @@ public class FileUtility {
                 .setPrettyPrinting()
                 .create();
 
-        //Create the Json String of the projects
-        String json = gson.toJson(object);
-
-        //Save the results
-        try {
-            FileWriter writer = new FileWriter(fileOut.toString());
-            writer.write(json);
-            writer.close();
+        //Stream the Json of the object to the results file
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileOut),
+                StandardCharsets.UTF_8))) {
+            gson.toJson(object, writer);
         } catch(IOException e){
             System.out.println(e.getMessage());
         }
@@ -0,0 +1,167 @@
+package pique.utility;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A collection of static methods running the local git command line client, for evaluations over the history of a
+ * repository. Only plain git is needed: no library, no server.
+ */
+public class GitUtility {
+
+    /**
+     * A commit and its committer time
+     */
+    public static class Commit {
+        private final String id;
+        private final long time;
+
+        public Commit(String id, long time) {
+            this.id = id;
+            this.time = time;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return committer time, in seconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+
+
+    /**
+     * Run git in a repository or worktree.
+     *
+     * @param directory
+     *      Repository or worktree directory (git -C)
+     * @param arguments
+     *      The git command and its arguments
+     * @return
+     *      Standard output of the command
+     * @throws RuntimeException
+     *      If git can not be run or exits with an error
+     */
+    public static String git(Path directory, String... arguments) {
+        List<String> command = new ArrayList<>(Arrays.asList("git", "-C", directory.toString(), "-c",
+                "core.quotepath=false"));
+        command.addAll(Arrays.asList(arguments));
+
+        File errors = null;
+        try {
+            errors = File.createTempFile("git", ".err");
+            Process process = new ProcessBuilder(command).redirectError(errors).start();
+            String output;
+            try (InputStream in = process.getInputStream()) {
+                output = new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8);
+            }
+            int exitCode = process.waitFor();
+            if (exitCode != 0) {
+                throw new RuntimeException("git " + String.join(" ", arguments) + " failed in " + directory +
+                        " (exit code " + exitCode + "): " + new String(Files.readAllBytes(errors.toPath()),
+                        StandardCharsets.UTF_8).trim());
+            }
+            return output;
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to run git in " + directory, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running git in " + directory, e);
+        } finally {
+            if (errors != null) errors.delete();
+        }
+    }
+
+    /**
+     * List the commits of a revision range, oldest first, following first parents only (the mainline history of a
+     * branch, without the commits of merged branches).
+     *
+     * @param revisionRange
+     *      Revision range as understood by git log, e.g. "v1.0..v2.0" or "main"
+     */
+    public static List<Commit> listCommits(Path repository, String revisionRange) {
+        List<Commit> commits = new ArrayList<>();
+        for (String line : git(repository, "log", "--reverse", "--first-parent", "--format=%H %ct", revisionRange,
+                "--").split("\n")) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split(" ");
+            commits.add(new Commit(fields[0], Long.parseLong(fields[1])));
+        }
+        return commits;
+    }
+
+    /**
+     * @return full id of the commit a revision (branch, tag, abbreviated id, ...) points to
+     */
+    public static String resolve(Path repository, String revision) {
+        return git(repository, "rev-parse", "--verify", revision + "^{commit}").trim();
+    }
+
+    /**
+     * @return the commit a revision (branch, tag, abbreviated id, ...) points to
+     */
+    public static Commit getCommit(Path repository, String revision) {
+        String[] fields = git(repository, "log", "-1", "--format=%H %ct", resolve(repository, revision), "--").trim()
+                .split(" ");
+        return new Commit(fields[0], Long.parseLong(fields[1]));
+    }
+
+    /**
+     * List the files that differ between two commits: created, modified and deleted files. A renamed file is listed
+     * under both its old and new name.
+     *
+     * @return
+     *      Paths relative to the repository root
+     */
+    public static List<String> changedFiles(Path repository, String fromCommit, String toCommit) {
+        List<String> files = new ArrayList<>();
+        for (String file : git(repository, "diff", "--name-only", "--no-renames", "-z", fromCommit, toCommit)
+                .split("\0")) {
+            if (!file.isEmpty()) files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * Create a detached worktree of the repository checked out at a commit.
+     *
+     * @param worktree
+     *      Directory of the new worktree. Must not exist or be empty.
+     */
+    public static void addWorktree(Path repository, Path worktree, String commit) {
+        git(repository, "worktree", "add", "--force", "--detach", worktree.toAbsolutePath().toString(), commit);
+    }
+
+    /**
+     * Check out a commit in a worktree, discarding local changes and untracked files (e.g. left by tools).
+     */
+    public static void checkout(Path worktree, String commit) {
+        git(worktree, "checkout", "--quiet", "--force", "--detach", commit);
+        git(worktree, "clean", "--quiet", "--force", "-d");
+    }
+
+    /**
+     * Delete a worktree created by {@link #addWorktree}.
+     */
+    public static void removeWorktree(Path repository, Path worktree) {
+        git(repository, "worktree", "remove", "--force", worktree.toAbsolutePath().toString());
+    }
+}
@@ -0,0 +1,74 @@
+package pique.analysis;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import pique.model.Diagnostic;
+import pique.model.Finding;
+import pique.utility.MockedMarkerTool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class FindingStoreTests {
+
+    private Path projectDir = Paths.get("src/test/out/finding_store/project").toAbsolutePath();
+
+    @Test
+    public void testMergeEqualsFullAnalysis() throws IOException {
+        FileUtils.deleteDirectory(projectDir.toFile());
+        write("A.cs", "class A { } // TODO", "// FIXME");
+        write("B.cs", "class B { }");
+        write("lib/C.cs", "// TODO", "// TODO");
+        write("lib/D.cs", "// FIXME");
+
+        MockedMarkerTool tool = new MockedMarkerTool("TODO", "FIXME");
+        FindingStore store = new FindingStore(projectDir);
+        store.replace(tool.parseAnalysis(tool.analyze(projectDir)));
+        Assert.assertEquals(3, store.getPartitionCount());
+        Assert.assertEquals(2, store.getFindings(Paths.get("lib/C.cs")).size());
+
+        // Modify, create and delete files, delete a directory
+        write("A.cs", "class A { }");
+        write("B.cs", "class B { } // TODO");
+        write("E.cs", "// FIXME // TODO");
+        Files.delete(projectDir.resolve("lib/C.cs"));
+        Files.delete(projectDir.resolve("lib/D.cs"));
+        Files.delete(projectDir.resolve("lib"));
+        Set<Path> changedFiles = Stream.of("A.cs", "B.cs", "E.cs", "lib").map(projectDir::resolve)
+                .collect(Collectors.toSet());
+        store.merge(tool.parseAnalysis(tool.analyze(projectDir, changedFiles)), changedFiles);
+
+        Assert.assertEquals(changedFiles, tool.getAnalyzedFiles().get(1));
+        Assert.assertEquals(findingNames(tool.parseAnalysis(tool.analyze(projectDir))), findingNames(store.getDiagnostics()));
+        Assert.assertEquals(0, store.getDiagnostics().get("TODO").getChildren().values().stream()
+                .filter(finding -> ((Finding) finding).getFilePath().startsWith("lib")).count());
+
+        // Unchanged partitions are reused as they are
+        Finding unchanged = store.getFindings(Paths.get("B.cs")).get(0);
+        Set<Path> onlyE = Collections.singleton(projectDir.resolve("E.cs"));
+        store.merge(tool.parseAnalysis(tool.analyze(projectDir, onlyE)), onlyE);
+        Assert.assertSame(unchanged, store.getFindings(Paths.get("B.cs")).get(0));
+        Assert.assertEquals(3, store.getDiagnostics().values().stream().mapToInt(d -> d.getChildren().size()).sum());
+    }
+
+    private void write(String file, String... lines) throws IOException {
+        Path path = projectDir.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Set<String>> findingNames(Map<String, Diagnostic> diagnostics) {
+        Map<String, Set<String>> names = new TreeMap<>();
+        diagnostics.forEach((name, diagnostic) -> {
+            if (!diagnostic.getChildren().isEmpty()) names.put(name, new TreeSet<>(diagnostic.getChildren().keySet()));
+        });
+        return names;
+    }
+}
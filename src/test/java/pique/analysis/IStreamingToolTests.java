@@ -0,0 +1,185 @@
+package pique.analysis;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import pique.model.Diagnostic;
+import pique.model.Finding;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class IStreamingToolTests {
+
+    private Path project = Paths.get("src/test/resources/fake_project");
+
+    /**
+     * Mocked tool running a shell script whose output has one "file,line,diagnostic" line per finding
+     */
+    class ShellTool implements IStreamingTool {
+        private final String script;
+        private boolean streaming = true;
+        private int reportFiles;
+
+        ShellTool(String script) {
+            this.script = script;
+        }
+
+        @Override
+        public List<String> getCommand(Path projectLocation) {
+            return Arrays.asList("/bin/sh", "-c", script);
+        }
+
+        @Override
+        public Map<String, Diagnostic> parseAnalysis(InputStream report) throws IOException {
+            Map<String, Diagnostic> diagnostics = new HashMap<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(report, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                diagnostics.computeIfAbsent(fields[2], id -> new Diagnostic(id, "", getName()))
+                        .setChild(new Finding(fields[0], Integer.parseInt(fields[1]), 0, 1));
+            }
+            return diagnostics;
+        }
+
+        @Override
+        public Path analyze(Path projectLocation) {
+            reportFiles++;
+            return IStreamingTool.super.analyze(projectLocation);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return streaming;
+        }
+
+        @Override
+        public Path initialize(Path toolRoot) {
+            return null;
+        }
+
+        @Override
+        public String getName() {
+            return "Shell Tool";
+        }
+    }
+
+    @Before
+    public void checkShell() {
+        Assume.assumeTrue(Files.isExecutable(Paths.get("/bin/sh")));
+    }
+
+    @Test
+    public void testStreamingTool() {
+        // 50000 findings: well beyond the pipe buffer, so parsing has to keep up with the process
+        ShellTool tool = new ShellTool("i=0; while [ $i -lt 50000 ]; do i=$((i+1)); echo \"A.cs,$i,TST0011\"; done");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Map<String, Diagnostic> diagnostics = tool.runAsync(project, executor).join();
+            Assert.assertEquals(50000, diagnostics.get("TST0011").getChildren().size());
+            Assert.assertEquals(0, tool.reportFiles);
+
+            // Temp-file fallback gives the same findings
+            tool.streaming = false;
+            diagnostics = tool.runAsync(project, executor).join();
+            Assert.assertEquals(50000, diagnostics.get("TST0011").getChildren().size());
+            Assert.assertEquals(1, tool.reportFiles);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Only report files written by the fallback are deleted once parsed
+     */
+    @Test
+    public void testStreamingTool_reportFile() throws IOException {
+        Path saved = Paths.get("src/test/out/streaming_tool/saved.report");
+        Files.createDirectories(saved.getParent());
+        Files.write(saved, "A.cs,1,TST0011\n".getBytes(StandardCharsets.UTF_8));
+        ShellTool tool = new ShellTool("echo 'A.cs,2,TST0011'");
+        Assert.assertEquals(1, tool.parseAnalysis(saved).get("TST0011").getChildren().size());
+        Assert.assertTrue(Files.exists(saved));
+
+        Path written = tool.analyze(project);
+        Assert.assertEquals(1, tool.parseAnalysis(written).get("TST0011").getChildren().size());
+        Assert.assertFalse(Files.exists(written));
+    }
+
+    /**
+     * Tools with prerequisites stream too, and get the artifacts in their command
+     */
+    @Test
+    public void testStreamingTool_prerequisites() {
+        ShellTool tool = new ShellTool(null) {
+            @Override
+            public Set<String> getPrerequisites() {
+                return Collections.singleton("build");
+            }
+
+            @Override
+            public List<String> getCommand(Path projectLocation, Map<String, Path> artifacts) {
+                return Arrays.asList("/bin/sh", "-c", "echo \"$1,1,TST0011\"", "sh", artifacts.get("build").toString());
+            }
+        };
+        IPrerequisite build = new IPrerequisite() {
+            @Override
+            public String getName() {
+                return "build";
+            }
+
+            @Override
+            public Path produce(Path projectLocation, Map<String, Path> artifacts) {
+                return Paths.get("build_artifact");
+            }
+        };
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            ToolScheduler scheduler = new ToolScheduler(executor, Collections.singletonList(build));
+            Map<String, Diagnostic> diagnostics = scheduler.run(project, Collections.singleton(tool));
+            Finding finding = (Finding)diagnostics.get("TST0011").getChildren().values().iterator().next();
+            Assert.assertEquals("build_artifact", finding.getFilePath());
+            Assert.assertEquals(0, tool.reportFiles);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStreamingTool_failure() {
+        ShellTool tool = new ShellTool("echo 'A.cs,1,TST0011'; echo 'license expired' >&2; exit 3");
+        try {
+            tool.analyzeStreaming(project);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("exit code 3"));
+            Assert.assertTrue(e.getMessage().contains("license expired"));
+        }
+
+        // Parser errors stop the process
+        tool = new ShellTool("echo 'not a finding'; sleep 30");
+        long start = System.currentTimeMillis();
+        try {
+            tool.analyzeStreaming(project);
+            Assert.fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package pique.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pique.model.Diagnostic;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ToolPoolTests {
+
+    private static final long MB = 1024 * 1024;
+
+    /**
+     * Host usage set by the test
+     */
+    class FixedUsage implements ToolPool.HostUsage {
+        private long memory;
+        private double cpus;
+
+        @Override
+        public long getUsedMemory() {
+            return memory;
+        }
+
+        @Override
+        public double getUsedCpus() {
+            return cpus;
+        }
+    }
+
+    private ITool tool(String name, ResourceFootprint footprint) {
+        return new MockedLocTool() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public ResourceFootprint getResourceFootprint() {
+                return footprint;
+            }
+        };
+    }
+
+    private CompletableFuture<String> blockedRun(ToolPool pool, ITool tool, CountDownLatch release) {
+        return pool.submit(tool, () -> {
+            try {
+                Assert.assertTrue(release.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return tool.getName();
+        });
+    }
+
+    @Test
+    public void testToolPool_admission() {
+        try (ToolPool pool = new ToolPool(1000 * MB, 4, new FixedUsage(), 0)) {
+            ITool large = tool("large", ResourceFootprint.ofMegabytes(600, 1));
+            ITool small = tool("small", ResourceFootprint.ofMegabytes(200, 1));
+            CountDownLatch releaseLarge = new CountDownLatch(1);
+            CountDownLatch releaseSecond = new CountDownLatch(1);
+            CountDownLatch releaseSmall = new CountDownLatch(1);
+
+            CompletableFuture<String> first = blockedRun(pool, large, releaseLarge);
+            CompletableFuture<String> second = blockedRun(pool, large, releaseSecond);
+            // Queued behind the second large run although it would fit
+            CompletableFuture<String> third = blockedRun(pool, small, releaseSmall);
+            Assert.assertEquals(1, pool.getRunningCount());
+            Assert.assertEquals(2, pool.getQueueDepth());
+            Assert.assertEquals(0.6, pool.getMemoryUtilisation(), 1e-9);
+            Assert.assertEquals(0.25, pool.getCpuUtilisation(), 1e-9);
+
+            releaseLarge.countDown();
+            Assert.assertEquals("large", first.join());
+            Assert.assertEquals(2, pool.getRunningCount());
+            Assert.assertEquals(0, pool.getQueueDepth());
+            Assert.assertEquals(0.8, pool.getMemoryUtilisation(), 1e-9);
+
+            releaseSecond.countDown();
+            releaseSmall.countDown();
+            Assert.assertEquals("large", second.join());
+            Assert.assertEquals("small", third.join());
+            Assert.assertEquals(3, pool.getCompletedCount());
+
+            // Runs larger than the limits are admitted alone; failures complete the run
+            CompletableFuture<Object> huge = pool.submit(tool("huge", ResourceFootprint.ofMegabytes(4000, 8)), () -> {
+                throw new IllegalStateException("out of memory");
+            });
+            try {
+                huge.join();
+                Assert.fail();
+            } catch (Exception e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            Assert.assertEquals(0, pool.getMemoryUtilisation(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testToolPool_learning() {
+        FixedUsage usage = new FixedUsage();
+        usage.memory = 100 * MB;
+        try (ToolPool pool = new ToolPool(1000 * MB, 4, usage, 0)) {
+            ITool undeclared = tool("undeclared", null);
+            Assert.assertSame(ToolPool.DEFAULT_FOOTPRINT, pool.getFootprint(undeclared));
+
+            // Usage above the idle host is the tool's
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<String> run = blockedRun(pool, undeclared, release);
+            usage.memory = 400 * MB;
+            usage.cpus = 2;
+            pool.sample();
+            usage.memory = 300 * MB;
+            usage.cpus = 1;
+            pool.sample();
+            release.countDown();
+            run.join();
+            Assert.assertEquals(300 * MB, pool.getFootprint(undeclared).getMemoryBytes());
+            Assert.assertEquals(1.5, pool.getFootprint(undeclared).getCpus(), 1e-9);
+
+            // Moving average of the runs
+            usage.memory = 100 * MB;
+            usage.cpus = 0;
+            release = new CountDownLatch(1);
+            run = blockedRun(pool, undeclared, release);
+            usage.memory = 200 * MB;
+            usage.cpus = 0.5;
+            pool.sample();
+            release.countDown();
+            run.join();
+            Assert.assertEquals(240 * MB, pool.getLearnedFootprint("undeclared").getMemoryBytes(), MB);
+            Assert.assertEquals(1.2, pool.getFootprint(undeclared).getCpus(), 1e-9);
+
+            // Runs without usage above the idle host are not learned from, and footprints have a floor
+            ITool quiet = tool("quiet", null);
+            release = new CountDownLatch(1);
+            run = blockedRun(pool, quiet, release);
+            usage.cpus = 0.5;
+            pool.sample();
+            release.countDown();
+            run.join();
+            Assert.assertNull(pool.getLearnedFootprint("quiet"));
+
+            ITool tiny = tool("tiny", null);
+            usage.memory = 100 * MB;
+            usage.cpus = 0;
+            release = new CountDownLatch(1);
+            run = blockedRun(pool, tiny, release);
+            usage.memory = 101 * MB;
+            usage.cpus = 0.01;
+            pool.sample();
+            release.countDown();
+            run.join();
+            Assert.assertEquals(pool.getMinimumFootprint().getMemoryBytes(), pool.getFootprint(tiny).getMemoryBytes());
+            Assert.assertEquals(pool.getMinimumFootprint().getCpus(), pool.getFootprint(tiny).getCpus(), 1e-9);
+
+            // Declared footprints win
+            ITool declared = tool("undeclared", ResourceFootprint.ofMegabytes(50, 0.1));
+            Assert.assertEquals(50 * MB, pool.getFootprint(declared).getMemoryBytes());
+        }
+    }
+
+    /**
+     * Closing the pool lets running analyses finish, fails the queued ones and rejects new ones
+     */
+    @Test
+    public void testToolPool_close() {
+        ToolPool pool = new ToolPool(1000 * MB, 4, new FixedUsage(), 0);
+        ITool large = tool("large", ResourceFootprint.ofMegabytes(600, 1));
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> running = blockedRun(pool, large, release);
+        CompletableFuture<String> queued = blockedRun(pool, large, release);
+        Assert.assertEquals(1, pool.getQueueDepth());
+
+        pool.close();
+        try {
+            pool.submit(large, () -> "late");
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("closed"));
+        }
+
+        release.countDown();
+        Assert.assertEquals("large", running.join());
+        try {
+            queued.join();
+            Assert.fail();
+        } catch (Exception e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        Assert.assertEquals(0, pool.getRunningCount());
+        Assert.assertEquals(0, pool.getQueueDepth());
+        Assert.assertEquals(0, pool.getMemoryUtilisation(), 1e-9);
+        Assert.assertEquals(0, pool.getCpuUtilisation(), 1e-9);
+    }
+
+    @Test
+    public void testToolPool_scheduler() {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try (ToolPool pool = new ToolPool(1000 * MB, 1, new FixedUsage(), 0)) {
+            ToolScheduler scheduler = new ToolScheduler(executor);
+            scheduler.setToolPool(pool);
+            // One CPU: the tools run one after the other
+            Map<String, Diagnostic> diagnostics = scheduler.run(Paths.get("src/test/resources/fake_project"),
+                    Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet()));
+            Assert.assertTrue(diagnostics.containsKey("loc"));
+            Assert.assertTrue(diagnostics.containsKey("TST0011"));
+            Assert.assertEquals(2, pool.getCompletedCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
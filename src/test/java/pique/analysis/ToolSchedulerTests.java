@@ -0,0 +1,147 @@
+package pique.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pique.model.Diagnostic;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ToolSchedulerTests {
+
+    private Path project = Paths.get("src/test/resources/fake_project");
+
+    /**
+     * Prerequisite step counting its runs; its artifact is a path named after it
+     */
+    class CountingPrerequisite implements IPrerequisite {
+        private final String name;
+        private final Set<String> prerequisites;
+        private final AtomicInteger runs = new AtomicInteger();
+        private CountDownLatch waitFor = new CountDownLatch(0);
+
+        CountingPrerequisite(String name, String... prerequisites) {
+            this.name = name;
+            this.prerequisites = new HashSet<>(Arrays.asList(prerequisites));
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Set<String> getPrerequisites() {
+            return prerequisites;
+        }
+
+        @Override
+        public Path produce(Path projectLocation, Map<String, Path> artifacts) {
+            Assert.assertEquals(prerequisites, artifacts.keySet());
+            try {
+                Assert.assertTrue(waitFor.await(10, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            runs.incrementAndGet();
+            return Paths.get(name + "_artifact");
+        }
+    }
+
+    /**
+     * Mocked analysis tool needing artifacts
+     */
+    class DependentTool extends MockedIToolQmSimple {
+        private final Set<String> prerequisites;
+        private final List<Map<String, Path>> received = Collections.synchronizedList(new ArrayList<>());
+
+        DependentTool(String... prerequisites) {
+            this.prerequisites = new HashSet<>(Arrays.asList(prerequisites));
+        }
+
+        @Override
+        public Set<String> getPrerequisites() {
+            return prerequisites;
+        }
+
+        @Override
+        public Path analyze(Path projectLocation, Map<String, Path> artifacts) {
+            received.add(artifacts);
+            return analyze(projectLocation);
+        }
+    }
+
+    @Test
+    public void testToolScheduler() {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            CountingPrerequisite build = new CountingPrerequisite("build");
+            CountingPrerequisite index = new CountingPrerequisite("index", "build");
+            ToolScheduler scheduler = new ToolScheduler(executor, Arrays.asList(build, index));
+
+            // The build waits for the LoC tool: tools without prerequisites do not wait for the build
+            CountDownLatch locStarted = new CountDownLatch(1);
+            build.waitFor = locStarted;
+            ITool locTool = new MockedLocTool() {
+                @Override
+                public Path analyze(Path projectLocation) {
+                    locStarted.countDown();
+                    return super.analyze(projectLocation);
+                }
+            };
+            DependentTool buildTool = new DependentTool("build");
+            DependentTool indexTool = new DependentTool("build", "index");
+
+            Map<String, Diagnostic> diagnostics = scheduler.run(project,
+                    Stream.of(buildTool, indexTool, locTool).collect(Collectors.toSet()));
+            Assert.assertTrue(diagnostics.containsKey("loc"));
+            Assert.assertTrue(diagnostics.containsKey("TST0011"));
+            Assert.assertEquals(1, build.runs.get());
+            Assert.assertEquals(1, index.runs.get());
+            Assert.assertEquals(Paths.get("build_artifact"), buildTool.received.get(0).get("build"));
+            Assert.assertEquals(Paths.get("index_artifact"), indexTool.received.get(0).get("index"));
+
+            // Once per project run
+            scheduler.run(project, Collections.singleton(indexTool));
+            Assert.assertEquals(2, build.runs.get());
+
+            // Unknown artifacts and cycles are rejected before any tool starts
+            AtomicInteger started = new AtomicInteger();
+            ITool independentTool = new MockedLocTool() {
+                @Override
+                public Path analyze(Path projectLocation) {
+                    started.incrementAndGet();
+                    return super.analyze(projectLocation);
+                }
+            };
+            try {
+                scheduler.run(project,
+                        new LinkedHashSet<>(Arrays.asList(independentTool, new DependentTool("compile"))));
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage().contains("'compile'"));
+            }
+            Assert.assertEquals(0, started.get());
+            scheduler.addPrerequisite(new CountingPrerequisite("a", "b"));
+            scheduler.addPrerequisite(new CountingPrerequisite("b", "a"));
+            try {
+                scheduler.run(project, Collections.singleton(new DependentTool("a")));
+                Assert.fail();
+            } catch (IllegalArgumentException e) {
+                Assert.assertTrue(e.getMessage().contains("each other"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
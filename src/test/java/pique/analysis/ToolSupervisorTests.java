@@ -0,0 +1,121 @@
+package pique.analysis;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pique.calibration.BenchmarkPipeline;
+import pique.calibration.NaiveBenchmarker;
+import pique.model.QualityModel;
+import pique.model.QualityModelImport;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ToolSupervisorTests {
+
+    private Path benchmarkRepo = Paths.get("src/test/resources/benchmark_repository");
+    private Path projectOne = benchmarkRepo.resolve("BenchmarkProjectOne");
+
+    /**
+     * Mocked tool hanging on the given project
+     */
+    class HangingTool extends MockedIToolQmSimple {
+        private final String hangingProject;
+        HangingTool(String hangingProject) {
+            this.hangingProject = hangingProject;
+        }
+        @Override
+        public Path analyze(Path projectLocation) {
+            if (projectLocation.getFileName().toString().equals(hangingProject)) sleep(30000);
+            return super.analyze(projectLocation);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void seed(ToolSupervisor supervisor, String toolName, long millis) {
+        for (int i = 0; i < supervisor.getMinimumSamples(); i++) supervisor.recordLatency(toolName, millis);
+    }
+
+    @Test
+    public void testTimeout() {
+        ToolSupervisor supervisor = new ToolSupervisor(0.95, 2.0, 50, 0.0);
+        ITool tool = new HangingTool("BenchmarkProjectOne");
+
+        // Without history, runs are not timed out
+        Assert.assertEquals(Long.MAX_VALUE, supervisor.getTimeoutMillis(tool.getName()));
+
+        seed(supervisor, tool.getName(), 10);
+        Assert.assertEquals(50, supervisor.getTimeoutMillis(tool.getName()));
+
+        long start = System.currentTimeMillis();
+        try {
+            supervisor.analyze(tool, projectOne);
+            Assert.fail("Expected a tool timeout");
+        } catch (ToolSupervisor.ToolTimeoutException e) {
+            Assert.assertTrue(System.currentTimeMillis() - start < 10000);
+        }
+    }
+
+    /**
+     * A run far past the tool's median latency gets a speculative duplicate; the first copy to finish wins.
+     */
+    @Test
+    public void testSpeculativeRun() {
+        ToolSupervisor supervisor = new ToolSupervisor(0.95, 1000.0, 20000, 2.0);
+        AtomicInteger calls = new AtomicInteger();
+        ITool straggler = new MockedIToolQmSimple() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                if (calls.incrementAndGet() == 1) sleep(30000);
+                return super.analyze(projectLocation);
+            }
+        };
+        seed(supervisor, straggler.getName(), 10);
+
+        Path result = supervisor.analyze(straggler, projectOne);
+
+        Assert.assertEquals("benchmark_one_results.xml", result.getFileName().toString());
+        Assert.assertEquals(1, supervisor.getSpeculativeRuns());
+        Assert.assertEquals(2, calls.get());
+    }
+
+    /**
+     * A project whose tool run times out is excluded from the benchmark instead of stalling it
+     */
+    @Test
+    public void testBenchmark_excludesTimedOutProject() {
+        QualityModel qmDescription = new QualityModelImport(
+                Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json"))
+                .importQualityModel();
+        ITool hangingTool = new HangingTool("BenchmarkProjectTwo");
+        Set<ITool> tools = Stream.of(hangingTool, new MockedLocTool()).collect(Collectors.toSet());
+
+        ToolSupervisor supervisor = new ToolSupervisor(0.95, 2.0, 200, 0.0);
+        seed(supervisor, hangingTool.getName(), 10);
+        BenchmarkPipeline pipeline = new BenchmarkPipeline(3, 1, 1, 4);
+        pipeline.setToolSupervisor(supervisor);
+        NaiveBenchmarker benchmarker = new NaiveBenchmarker();
+        benchmarker.setPipeline(pipeline);
+
+        Map<String, Double[]> thresholds = benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+
+        Map<Path, String> excluded = benchmarker.getLastReport().getExcludedProjects();
+        Assert.assertEquals(1, excluded.size());
+        Assert.assertEquals("BenchmarkProjectTwo", excluded.keySet().iterator().next().getFileName().toString());
+        Assert.assertEquals(2, benchmarker.getBenchmarkState().getProjects().size());
+        Assert.assertNotNull(thresholds.get("Measure 01"));
+    }
+}
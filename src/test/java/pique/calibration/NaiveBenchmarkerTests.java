@@ -0,0 +1,231 @@
+package pique.calibration;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pique.analysis.ITool;
+import pique.model.QualityModel;
+import pique.model.QualityModelImport;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class NaiveBenchmarkerTests {
+
+    private Path qmFilePath = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+    private Path benchmarkRepo = Paths.get("src/test/resources/benchmark_repository");
+
+    /**
+     * Mocked tool remembering which projects it was asked to analyze
+     */
+    class CountingTool extends MockedIToolQmSimple {
+        Set<String> analyzed = Collections.synchronizedSet(new HashSet<>());
+        @Override
+        public Path analyze(Path projectLocation) {
+            analyzed.add(projectLocation.getFileName().toString());
+            return super.analyze(projectLocation);
+        }
+    }
+
+    /**
+     * A second benchmark run over an unchanged repository should not analyze any project again, and removing a
+     * project should update the thresholds using only the remaining benchmark data.
+     */
+    @Test
+    public void testDeriveThresholds_incremental() {
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        CountingTool countingTool = new CountingTool();
+        Set<ITool> tools = Stream.of(countingTool, new MockedLocTool()).collect(Collectors.toSet());
+        NaiveBenchmarker benchmarker = new NaiveBenchmarker();
+
+        Map<String, Double[]> thresholds = benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+        Assert.assertEquals(3, countingTool.analyzed.size());
+        Assert.assertEquals(0.02, thresholds.get("Measure 01")[0], 0.0);
+        Assert.assertEquals(0.06, thresholds.get("Measure 01")[1], 0.0);
+
+        // Unchanged repository: nothing to analyze, same thresholds
+        countingTool.analyzed.clear();
+        Map<String, Double[]> rederived = benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+        Assert.assertTrue(countingTool.analyzed.isEmpty());
+        Assert.assertArrayEquals(thresholds.get("Measure 01"), rederived.get("Measure 01"));
+        Assert.assertArrayEquals(thresholds.get("Measure 02"), rederived.get("Measure 02"));
+
+        // Removing every project but one collapses the thresholds to that project's values
+        benchmarker.removeProject(benchmarkRepo.resolve("BenchmarkProjectOne"));
+        benchmarker.removeProject(benchmarkRepo.resolve("BenchmarkProjectTwo"));
+        Map<String, Double[]> remaining = benchmarker.getBenchmarkState().deriveThresholds();
+        Assert.assertEquals(1, benchmarker.getBenchmarkState().getProjects().size());
+        Assert.assertEquals(remaining.get("Measure 01")[0], remaining.get("Measure 01")[1]);
+
+        // Re-running against the repository only analyzes the two projects that are missing from the state
+        Map<String, Double[]> restored = benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+        Assert.assertEquals(2, countingTool.analyzed.size());
+        Assert.assertFalse(countingTool.analyzed.contains("BenchmarkProjectThree"));
+        Assert.assertArrayEquals(thresholds.get("Measure 01"), restored.get("Measure 01"));
+    }
+
+    /**
+     * A single-slot queue between every stage must still let all projects through, with the same thresholds as a
+     * pipeline wide enough to hold the whole repository.
+     */
+    @Test
+    public void testPipeline_backpressure() {
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+
+        NaiveBenchmarker narrow = new NaiveBenchmarker();
+        narrow.setPipeline(new BenchmarkPipeline(3, 2, 2, 1));
+        NaiveBenchmarker wide = new NaiveBenchmarker();
+        wide.setPipeline(new BenchmarkPipeline(1, 1, 1, 16));
+
+        Map<String, Double[]> narrowThresholds = narrow.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+        Map<String, Double[]> wideThresholds = wide.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+
+        Assert.assertArrayEquals(wideThresholds.get("Measure 01"), narrowThresholds.get("Measure 01"));
+        Assert.assertArrayEquals(wideThresholds.get("Measure 02"), narrowThresholds.get("Measure 02"));
+    }
+
+    /**
+     * A tool not declaring itself thread-safe analyzes one project at a time, whatever the pipeline's parallelism
+     */
+    @Test
+    public void testPipeline_toolNotThreadSafe() {
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        ITool unsafeTool = new MockedIToolQmSimple() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                return super.analyze(projectLocation);
+            }
+
+            @Override
+            public boolean isThreadSafe() {
+                return false;
+            }
+        };
+        Set<ITool> tools = Stream.of(unsafeTool, new MockedLocTool()).collect(Collectors.toSet());
+
+        NaiveBenchmarker benchmarker = new NaiveBenchmarker();
+        benchmarker.setPipeline(new BenchmarkPipeline(3, 3, 2, 4));
+        benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+        Assert.assertEquals(1, maxRunning.get());
+    }
+
+    /**
+     * A failing tool run must surface as an exception instead of stalling the pipeline
+     */
+    @Test(expected = RuntimeException.class)
+    public void testPipeline_failure() {
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        ITool failingTool = new MockedIToolQmSimple() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                throw new IllegalStateException("tool crashed");
+            }
+        };
+        Set<ITool> tools = Stream.of(failingTool, new MockedLocTool()).collect(Collectors.toSet());
+
+        NaiveBenchmarker benchmarker = new NaiveBenchmarker();
+        benchmarker.setPipeline(new BenchmarkPipeline(1, 1, 1, 1));
+        benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+    }
+
+    /**
+     * Projects with the longest recorded analysis duration are dispatched first, and the duration of every analyzed
+     * project is recorded for the next run.
+     */
+    @Test
+    public void testPipeline_longestProcessingTimeFirst() {
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        List<String> analysisOrder = Collections.synchronizedList(new ArrayList<>());
+        ITool orderedTool = new MockedIToolQmSimple() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                analysisOrder.add(projectLocation.getFileName().toString());
+                return super.analyze(projectLocation);
+            }
+        };
+        Set<ITool> tools = Stream.of(orderedTool, new MockedLocTool()).collect(Collectors.toSet());
+
+        NaiveBenchmarker benchmarker = new NaiveBenchmarker();
+        benchmarker.setPipeline(new BenchmarkPipeline(1, 1, 1, 16));
+        BenchmarkState state = benchmarker.getBenchmarkState();
+        String[] projects = { "BenchmarkProjectOne", "BenchmarkProjectTwo", "BenchmarkProjectThree" };
+        long[] previousMillis = { 10, 300, 20 };
+        for (int i = 0; i < projects.length; i++) {
+            state.recordAnalysis(benchmarkRepo.resolve(projects[i]).toAbsolutePath().toString(), previousMillis[i], 1L);
+        }
+
+        benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+
+        Assert.assertEquals(Arrays.asList("BenchmarkProjectTwo", "BenchmarkProjectThree", "BenchmarkProjectOne"),
+                analysisOrder);
+        Assert.assertEquals(3, state.getProjectAnalysisMillis().size());
+        Assert.assertTrue(state.getProjectBytes().values().stream().allMatch(bytes -> bytes > 0));
+    }
+
+    @Test
+    public void testProjectCostEstimator_predictMakespan() {
+        // Greedy LPT on two workers: {3, 2, 2} and {3, 2}
+        Assert.assertEquals(7.0, ProjectCostEstimator.predictMakespan(Arrays.asList(2.0, 3.0, 2.0, 3.0, 2.0), 2), 0.0);
+        Assert.assertEquals(3.0, ProjectCostEstimator.predictMakespan(Arrays.asList(1.0, 3.0, 2.0), 3), 0.0);
+
+        // Durations of known projects are used as is, unknown projects are scaled by the historical ms per byte
+        Map<String, Long> millis = new HashMap<>();
+        Map<String, Long> bytes = new HashMap<>();
+        millis.put("known", 40L);
+        bytes.put("known", 20L);
+        ProjectCostEstimator estimator = new ProjectCostEstimator(millis, bytes);
+        Assert.assertTrue(estimator.isCalibrated());
+        Assert.assertEquals(40.0, estimator.estimate(Paths.get("known"), 1000), 0.0);
+        Assert.assertEquals(10.0, estimator.estimate(Paths.get("unknown"), 5), 0.0);
+        Assert.assertFalse(new ProjectCostEstimator().isCalibrated());
+    }
+
+    @Test
+    public void testBenchmarkState_exportImport() {
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+        NaiveBenchmarker benchmarker = new NaiveBenchmarker();
+        Map<String, Double[]> thresholds = benchmarker.deriveThresholds(benchmarkRepo, qmDescription, tools, ".txt");
+
+        Path stateFile = benchmarker.getBenchmarkState().exportToJson("benchmark_state", Paths.get("src/test/out"));
+        BenchmarkState imported = BenchmarkState.importFromJson(stateFile);
+
+        Assert.assertEquals(3, imported.getProjects().size());
+        Assert.assertEquals(2, imported.getMeasureNames().size());
+        Assert.assertArrayEquals(thresholds.get("Measure 01"), imported.deriveThresholds().get("Measure 01"));
+        Assert.assertArrayEquals(thresholds.get("Measure 02"), imported.deriveThresholds().get("Measure 02"));
+    }
+
+    @Test
+    public void testMeasureStatistics_insertRemove() {
+        MeasureStatistics statistics = new MeasureStatistics();
+        statistics.insert(0.5);
+        statistics.insert(0.1);
+        statistics.insert(0.5);
+        statistics.insert(0.9);
+
+        Assert.assertEquals(0.1, statistics.getMin(), 0.0);
+        Assert.assertEquals(0.9, statistics.getMax(), 0.0);
+
+        Assert.assertTrue(statistics.remove(0.9));
+        Assert.assertFalse(statistics.remove(0.9));
+        Assert.assertTrue(statistics.remove(0.5));
+        Assert.assertEquals(0.5, statistics.getMax(), 0.0);
+        Assert.assertArrayEquals(new double[] {0.1, 0.5}, statistics.toArray(), 0.0);
+    }
+}
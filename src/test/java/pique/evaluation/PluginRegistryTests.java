@@ -0,0 +1,90 @@
+package pique.evaluation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import pique.model.ModelNode;
+import pique.model.QualityModel;
+import pique.model.QualityModelImport;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+public class PluginRegistryTests {
+
+    @Test
+    public void testInstance_statelessShared() {
+        IEvaluator first = PluginRegistry.instance("pique.evaluation.DefaultMeasureEvaluator");
+        IEvaluator second = PluginRegistry.instance(DefaultMeasureEvaluator.class);
+        Assert.assertSame(first, second);
+
+        INormalizer normalizer = PluginRegistry.instance("pique.evaluation.DefaultNormalizer");
+        Assert.assertNotSame(normalizer, PluginRegistry.instance(DefaultNormalizer.class));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testInstance_unknownClass() {
+        PluginRegistry.instance("pique.evaluation.DoesNotExist");
+    }
+
+    /**
+     * Imported nodes share stateless plug-ins, while each node (and each clone of a node) has its own normalizer
+     */
+    @Test
+    public void testImportAndClone() {
+        QualityModel qm = new QualityModelImport(
+                Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json"))
+                .importQualityModel();
+
+        Set<Object> evaluators = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<Object> normalizers = Collections.newSetFromMap(new IdentityHashMap<>());
+        qm.getMeasures().values().forEach(measure -> {
+            evaluators.add(measure.getEvaluatorObject());
+            normalizers.add(measure.getNormalizerObject());
+        });
+        Assert.assertEquals(1, evaluators.size());
+        Assert.assertEquals(qm.getMeasures().size(), normalizers.size());
+
+        ModelNode measure = qm.getMeasure("Measure 01");
+        measure.getNormalizerObject().setNormalizerValue(4.0);
+        ModelNode clone = measure.clone();
+        Assert.assertSame(measure.getEvaluatorObject(), clone.getEvaluatorObject());
+        Assert.assertSame(measure.getUtilityFunctionObject(), clone.getUtilityFunctionObject());
+        Assert.assertNotSame(measure.getNormalizerObject(), clone.getNormalizerObject());
+        Assert.assertEquals(0.5, clone.getNormalizerObject().normalize(2.0), 0.0);
+    }
+
+    /**
+     * Normalizer with a setting of its own
+     */
+    public static class ScaledNormalizer extends DefaultNormalizer {
+        private double scale = 1.0;
+
+        @Override
+        public double normalize(double inValue) {
+            return scale * super.normalize(inValue);
+        }
+    }
+
+    /**
+     * Stateful evaluator that can not be copied
+     */
+    public static class CountingEvaluator extends DefaultMeasureEvaluator {
+        private int evaluations;
+    }
+
+    @Test
+    public void testCopyOf() {
+        ScaledNormalizer normalizer = new ScaledNormalizer();
+        normalizer.scale = 3.0;
+        normalizer.setNormalizerValue(2.0);
+        INormalizer copy = PluginRegistry.copyOf(normalizer);
+        Assert.assertNotSame(normalizer, copy);
+        Assert.assertEquals(3.0, copy.normalize(2.0), 0.0);
+
+        CountingEvaluator evaluator = new CountingEvaluator();
+        evaluator.evaluations = 5;
+        Assert.assertSame(evaluator, PluginRegistry.copyOf(evaluator));
+    }
+}
@@ -2,6 +2,7 @@ package pique.model;
 
 import org.junit.Assert;
 import org.junit.Test;
+import pique.evaluation.DefaultNormalizer;
 import pique.evaluation.Project;
 import pique.utility.Builder;
 
@@ -85,4 +86,19 @@ public class ModelNodeTests {
     }
 
     //endregion
+
+    //region Cloning
+
+    /**
+     * Verify a cloned Measure keeps its polarity, which the default measure evaluator passes to the utility function
+     */
+    @Test
+    public void testMeasureClone() {
+        Measure positive = new Measure("Measure Name", "", new DefaultNormalizer(), true);
+        Assert.assertTrue(((Measure) positive.clone()).isPositive());
+        Measure negative = new Measure("Measure Name", "", new DefaultNormalizer(), false);
+        Assert.assertFalse(((Measure) negative.clone()).isPositive());
+    }
+
+    //endregion
 }
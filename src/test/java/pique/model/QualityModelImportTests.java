@@ -1,13 +1,31 @@
 package pique.model;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Assert;
 import org.junit.Test;
 import pique.calibration.NaiveBenchmarker;
 import pique.calibration.NaiveWeighter;
 import pique.evaluation.*;
+import pique.utility.FileUtility;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 public class QualityModelImportTests {
 
@@ -144,4 +162,339 @@ public class QualityModelImportTests {
         Assert.assertEquals(0, tst0022.getNumChildren());
         Assert.assertEquals(0, tst0022.getWeights().size(), 0.0);
     }
+
+    /**
+     * The streaming importer must produce the same quality model as the tree importer, for both model descriptions
+     * and derived models (weights, thresholds and nested exported children).
+     */
+    @Test
+    public void testQualityModelStreamImport_parity() {
+        Path minimal = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+        Path full = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        assertSameModel(new QualityModelImport(minimal).importQualityModel(),
+                new QualityModelStreamImport(minimal).importQualityModel());
+        assertSameModel(new QualityModelImport(full).importQualityModel(),
+                new QualityModelStreamImport(full).importQualityModel());
+
+        // Derived model
+        QualityModel derived = new QualityModelImport(full).importQualityModel();
+        derived.getMeasures().values().forEach(measure -> {
+            measure.setThresholds(new Double[] { 0.1, 0.9 });
+            measure.setThresholdIntervals(new Double[][] { { 0.0, 0.2 }, { 0.8, 1.0 } });
+        });
+        derived.getAllQualityModelNodes().values().forEach(node ->
+                node.getChildren().keySet().forEach(child -> node.getWeights().put(child, 0.5)));
+        Path derivedFile = new QualityModelExport(derived).exportToJson("stream_import_derived", Paths.get("src/test/out"));
+
+        QualityModel treeImported = new QualityModelImport(derivedFile).importQualityModel();
+        assertSameModel(treeImported, new QualityModelStreamImport(derivedFile).importQualityModel());
+        Assert.assertArrayEquals(new Double[] { 0.8, 1.0 }, treeImported.getMeasure("Measure 01").getThresholdIntervals()[1]);
+    }
+
+    /**
+     * A child name that does not match any node is reported with its parent, for both importers
+     */
+    @Test
+    public void testQualityModelImport_unknownChild() throws IOException {
+        Path minimal = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+        String json = new String(Files.readAllBytes(minimal), "UTF-8").replaceFirst("\"TST0012\": \\{}", "\"TST9999\": {}");
+        Path qmFile = Paths.get("src/test/out/qualityModel_unknown_child.json");
+        Files.createDirectories(qmFile.getParent());
+        Files.write(qmFile, json.getBytes("UTF-8"));
+
+        try {
+            new QualityModelImport(qmFile).importQualityModel();
+            Assert.fail("Expected the unknown child to be reported");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("'Measure 01'"));
+            Assert.assertTrue(e.getMessage().contains("'TST9999'"));
+        }
+        try {
+            new QualityModelStreamImport(qmFile).importQualityModel();
+            Assert.fail("Expected the unknown child to be reported");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("'TST9999'"));
+        }
+    }
+
+    /**
+     * The validator reports cycles, names declared in more than one layer and dangling children as errors, and
+     * unreachable nodes as warnings. Importing a model with a cycle fails instead of overflowing the stack later.
+     */
+    @Test
+    public void testQualityModelValidator() throws IOException {
+        Tqi tqi = new Tqi("Total Quality", "", null);
+        QualityAspect qa = new QualityAspect("QualityAspect 01", "");
+        ProductFactor pf = new ProductFactor("ProductFactor 01", "");
+        Measure measure = new Measure("Measure 01", "", new DefaultNormalizer(), false);
+        ProductFactor unreachable = new ProductFactor("ProductFactor 02", "");
+        tqi.setChild(qa);
+        qa.setChild(pf);
+        pf.setChild(measure);
+        measure.setChild(new Finding("file/path", 1, 2, 1));
+
+        Map<String, ModelNode> qualityAspects = new HashMap<>();
+        qualityAspects.put(qa.getName(), qa);
+        Map<String, ModelNode> productFactors = new HashMap<>();
+        productFactors.put(pf.getName(), pf);
+        productFactors.put(unreachable.getName(), unreachable);
+        Map<String, ModelNode> measures = new HashMap<>();
+        measures.put(measure.getName(), measure);
+
+        QualityModelValidator.Result valid = QualityModelValidator.validate(tqi, qualityAspects, productFactors, measures);
+        Assert.assertTrue(valid.isValid());
+        Assert.assertEquals(1, valid.getWarnings().size());
+        Assert.assertTrue(valid.getWarnings().get(0).contains("'ProductFactor 02'"));
+
+        // Importer entry point: cached per model version, unless nodes are not covered by the fingerprint
+        QualityModel qm = new QualityModel("Validated", tqi);
+        Assert.assertNotSame(QualityModelValidator.validate(qm, qualityAspects, productFactors, measures),
+                QualityModelValidator.validate(qm, qualityAspects, productFactors, measures));
+        productFactors.remove(unreachable.getName());
+        Assert.assertSame(QualityModelValidator.validate(qm, qualityAspects, productFactors, measures),
+                QualityModelValidator.validate(qm, qualityAspects, productFactors, measures));
+        Assert.assertTrue(QualityModelValidator.validate(qm, qualityAspects, productFactors, measures).isValid());
+        productFactors.put(unreachable.getName(), unreachable);
+
+        measure.setChild(qa);
+        measure.getChildren().put("Missing", new Diagnostic("Missing", "", "tool"));
+        Map<String, ModelNode> duplicates = new HashMap<>();
+        duplicates.put("dup", new Measure("QualityAspect 01", "", new DefaultNormalizer(), false));
+        QualityModelValidator.Result invalid = QualityModelValidator.validate(tqi, qualityAspects, productFactors,
+                measures, duplicates);
+        Assert.assertEquals(3, invalid.getErrors().size());
+        Assert.assertTrue(invalid.getErrors().stream().anyMatch(error -> error.contains("cycle")));
+        Assert.assertTrue(invalid.getErrors().stream().anyMatch(error -> error.contains("'Missing'")));
+        Assert.assertTrue(invalid.getErrors().stream().anyMatch(error -> error.contains("more than once")));
+
+        // Measure 01 -> ProductFactor 01 -> Measure 01
+        Path minimal = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+        String json = new String(Files.readAllBytes(minimal), "UTF-8")
+                .replaceFirst("\"TST0012\": \\{}", "\"TST0012\": {}, \"ProductFactor 01\": {}");
+        Path qmFile = Paths.get("src/test/out/qualityModel_cycle.json");
+        Files.createDirectories(qmFile.getParent());
+        Files.write(qmFile, json.getBytes("UTF-8"));
+        for (Runnable importer : new Runnable[] {
+                () -> new QualityModelImport(qmFile).importQualityModel(),
+                () -> new QualityModelStreamImport(qmFile).importQualityModel() }) {
+            try {
+                importer.run();
+                Assert.fail("Expected the cycle to be reported");
+            } catch (RuntimeException e) {
+                Assert.assertTrue(e.getMessage().contains("cycle"));
+            }
+        }
+    }
+
+    /**
+     * JSON -> snapshot -> QualityModel must give the same model, and exporting it back to JSON must give the same file
+     */
+    @Test
+    public void testQualityModelSnapshot_roundTrip() throws IOException {
+        Path full = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        QualityModel derived = new QualityModelImport(full).importQualityModel();
+        derived.getMeasures().values().forEach(measure -> {
+            measure.setThresholds(new Double[] { 0.1, 0.9 });
+            measure.setThresholdIntervals(new Double[][] { { 0.0, 0.2 }, { 0.8, 1.0 } });
+        });
+        derived.getAllQualityModelNodes().values().forEach(node ->
+                node.getChildren().keySet().forEach(child -> node.getWeights().put(child, 0.25)));
+        Path derivedFile = new QualityModelExport(derived).exportToJson("snapshot_derived", Paths.get("src/test/out"));
+        Path snapshotFile = Paths.get("src/test/out/snapshot_derived.pqms");
+        Files.deleteIfExists(snapshotFile);
+
+        // First load compiles the snapshot, second load reads it
+        QualityModel imported = QualityModelSnapshot.loadOrImport(derivedFile, snapshotFile);
+        Assert.assertTrue(QualityModelSnapshot.isCurrent(snapshotFile, derivedFile));
+        QualityModel loaded = QualityModelSnapshot.loadOrImport(derivedFile, snapshotFile);
+        assertSameModel(imported, loaded);
+
+        Path reexported = new QualityModelExport(loaded).exportToJson("snapshot_reexported", Paths.get("src/test/out"));
+        Assert.assertArrayEquals(Files.readAllBytes(derivedFile), Files.readAllBytes(reexported));
+
+        // Changing the JSON file makes the snapshot stale
+        Files.write(derivedFile, "\n".getBytes("UTF-8"), StandardOpenOption.APPEND);
+        Assert.assertFalse(QualityModelSnapshot.isCurrent(snapshotFile, derivedFile));
+
+        // Null weights, thresholds and threshold intervals are kept
+        loaded.getQualityAspect("QA21").getWeights().put("PF11", null);
+        loaded.getMeasure("Measure 01").setThresholds(new Double[] { null, 0.9 });
+        loaded.getMeasure("Measure 01").setThresholdIntervals(new Double[][] { { null, 0.2 }, null });
+        QualityModel copy = QualityModelSnapshot.instance(QualityModelSnapshot.compile(loaded));
+        Assert.assertTrue(copy.getQualityAspect("QA21").getWeights().containsKey("PF11"));
+        Assert.assertNull(copy.getQualityAspect("QA21").getWeights().get("PF11"));
+        Assert.assertArrayEquals(new Double[] { null, 0.9 }, copy.getMeasure("Measure 01").getThresholds());
+        Assert.assertArrayEquals(new Double[][] { { null, 0.2 }, null },
+                copy.getMeasure("Measure 01").getThresholdIntervals());
+    }
+
+    /**
+     * The streaming exporter writes the same document as the Gson export, and its compact and gzip variants hold the
+     * same model
+     */
+    @Test
+    public void testQualityModelStreamExport_parity() throws IOException {
+        Path full = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        QualityModel qm = new QualityModelImport(full).importQualityModel();
+        qm.getMeasures().values().forEach(measure -> {
+            measure.setThresholds(new Double[] { 0.1, 0.9 });
+            measure.setThresholdIntervals(new Double[][] { { 0.0, 0.2 }, { 0.8, 1.0 } });
+            measure.setValue(0.5);
+        });
+        qm.getDiagnostics().values().forEach(diagnostic -> {
+            diagnostic.setChild(new Finding("file/path/" + diagnostic.getName(), 10, 2, 3));
+            diagnostic.setValue(1.0);
+        });
+        QualityModelExport qmExport = new QualityModelExport(qm, Pair.of("projectName", "p"));
+        Path outDir = Paths.get("src/test/out");
+
+        Path gsonFile = FileUtility.exportObjectToJson(qmExport, outDir, "stream_export_gson");
+        Path streamFile = qmExport.exportToJson("stream_export_stream", outDir);
+        Assert.assertArrayEquals(Files.readAllBytes(gsonFile), Files.readAllBytes(streamFile));
+
+        QualityModelStreamExport compact = new QualityModelStreamExport(qmExport);
+        compact.setPrettyPrinting(false);
+        compact.setGzip(true);
+        Path gzipFile = compact.exportToJson("stream_export_compact", outDir);
+        Assert.assertTrue(gzipFile.toString().endsWith(".json.gz"));
+
+        String json;
+        try (Reader reader = new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(gzipFile)), "UTF-8")) {
+            json = IOUtils.toString(reader);
+        }
+        Assert.assertFalse(json.contains("\n"));
+        Assert.assertEquals(new JsonParser().parse(new String(Files.readAllBytes(streamFile), "UTF-8")),
+                new JsonParser().parse(json));
+    }
+
+    /**
+     * With a maximum depth children below it are written as name references: every node is written in full once,
+     * findings stay inline, and both importers read the export back to the same model
+     */
+    @Test
+    public void testQualityModelStreamExport_references() throws IOException {
+        Path full = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        QualityModel qm = new QualityModelImport(full).importQualityModel();
+        qm.getAllQualityModelNodes().values().forEach(node ->
+                node.getChildren().keySet().forEach(child -> node.getWeights().put(child, 0.5)));
+        qm.getDiagnostics().values().forEach(diagnostic ->
+                diagnostic.setChild(new Finding("file/path/" + diagnostic.getName(), 10, 2, 3)));
+        QualityModelExport qmExport = new QualityModelExport(qm);
+        Path outDir = Paths.get("src/test/out");
+
+        Path nestedFile = qmExport.exportToJson("stream_export_nested", outDir);
+        QualityModelStreamExport references = new QualityModelStreamExport(qmExport);
+        references.setMaxDepth(0);
+        Path referencesFile = references.exportToJson("stream_export_references", outDir);
+        QualityModelStreamExport oneLevel = new QualityModelStreamExport(qmExport);
+        oneLevel.setMaxDepth(1);
+        Path oneLevelFile = oneLevel.exportToJson("stream_export_one_level", outDir);
+
+        String json = new String(Files.readAllBytes(referencesFile), "UTF-8");
+        Assert.assertTrue(Files.size(referencesFile) < Files.size(oneLevelFile));
+        Assert.assertTrue(Files.size(oneLevelFile) < Files.size(nestedFile));
+        Assert.assertEquals(json.indexOf("\"name\": \"Measure 01\""), json.lastIndexOf("\"name\": \"Measure 01\""));
+        String findingName = qm.getDiagnostics().values().iterator().next().getAnyChild().getName();
+        Assert.assertTrue(json.contains("\"name\": \"" + findingName + "\""));
+
+        QualityModel nested = new QualityModelImport(nestedFile).importQualityModel();
+        for (Path file : new Path[] { referencesFile, oneLevelFile }) {
+            assertSameModel(nested, new QualityModelImport(file).importQualityModel());
+            assertSameModel(nested, new QualityModelStreamImport(file).importQualityModel());
+        }
+    }
+
+    /**
+     * Summary exports hold only the TQI and quality aspects, value exports hold no findings, and full exports can page
+     * the findings into separate files
+     */
+    @Test
+    public void testProjectExport_detail() throws IOException {
+        Path full = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        QualityModel qm = new QualityModelImport(full).importQualityModel();
+        Set<String> findingNames = new HashSet<>();
+        qm.getDiagnostics().values().forEach(diagnostic -> {
+            for (int line = 1; line <= 2; line++) {
+                Finding finding = new Finding("file/path/" + diagnostic.getName(), line, 2, 3);
+                diagnostic.setChild(finding);
+                findingNames.add(finding.getName());
+            }
+        });
+        Project project = new Project("detail_project", qm);
+        JsonParser parser = new JsonParser();
+
+        Path summaryDir = Paths.get("src/test/out/detail_summary");
+        JsonObject summary = parser.parse(new String(Files.readAllBytes(
+                project.exportToJson(summaryDir, ResultDetail.SUMMARY, 0)), "UTF-8")).getAsJsonObject();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("tqi", "quality_aspects")),
+                summary.getAsJsonObject("factors").keySet());
+        Assert.assertFalse(summary.has("measures"));
+        Assert.assertFalse(summary.has("diagnostics"));
+
+        Path valuesFile = project.exportToJson(Paths.get("src/test/out/detail_values"), ResultDetail.VALUES, 0);
+        String values = new String(Files.readAllBytes(valuesFile), "UTF-8");
+        findingNames.forEach(name -> Assert.assertFalse(values.contains(name)));
+        assertSameModel(new QualityModelImport(full).importQualityModel(),
+                new QualityModelImport(valuesFile).importQualityModel());
+
+        Path pagedDir = Paths.get("src/test/out/detail_paged");
+        Path pagedFile = project.exportToJson(pagedDir, ResultDetail.FULL, 3);
+        JsonObject paged = parser.parse(new String(Files.readAllBytes(pagedFile), "UTF-8")).getAsJsonObject();
+        JsonArray findingsFiles = paged.getAsJsonArray("findings_files");
+        Assert.assertEquals((findingNames.size() + 2) / 3, findingsFiles.size());
+
+        Set<String> pagedNames = new HashSet<>();
+        for (JsonElement findingsFile : findingsFiles) {
+            JsonObject page = parser.parse(new String(Files.readAllBytes(pagedDir.resolve(findingsFile.getAsString())),
+                    "UTF-8")).getAsJsonObject().getAsJsonObject("diagnostics");
+            int pageSize = 0;
+            for (Map.Entry<String, JsonElement> diagnostic : page.entrySet()) {
+                Assert.assertTrue(qm.getDiagnostics().containsKey(diagnostic.getKey()));
+                pageSize += diagnostic.getValue().getAsJsonObject().size();
+                pagedNames.addAll(diagnostic.getValue().getAsJsonObject().keySet());
+            }
+            Assert.assertTrue(pageSize <= 3);
+        }
+        Assert.assertEquals(findingNames, pagedNames);
+        String main = new String(Files.readAllBytes(pagedFile), "UTF-8");
+        findingNames.forEach(name -> Assert.assertFalse(main.contains(name)));
+
+        // Exporting again with fewer pages removes the pages of the earlier export
+        String lastPage = findingsFiles.get(findingsFiles.size() - 1).getAsString();
+        Assert.assertTrue(Files.exists(pagedDir.resolve(lastPage)));
+        project.exportToJson(pagedDir, ResultDetail.FULL, findingNames.size());
+        Assert.assertTrue(Files.exists(pagedDir.resolve(findingsFiles.get(0).getAsString())));
+        Assert.assertFalse(Files.exists(pagedDir.resolve(lastPage)));
+    }
+
+    private void assertSameModel(QualityModel expected, QualityModel actual) {
+        Assert.assertEquals(expected.getName(), actual.getName());
+        Assert.assertEquals(expected.getBenchmarker().getClass(), actual.getBenchmarker().getClass());
+        Assert.assertEquals(expected.getWeighter().getClass(), actual.getWeighter().getClass());
+
+        Map<String, ModelNode> expectedNodes = expected.getAllQualityModelNodes();
+        Map<String, ModelNode> actualNodes = actual.getAllQualityModelNodes();
+        Assert.assertEquals(expectedNodes.keySet(), actualNodes.keySet());
+
+        expectedNodes.forEach((name, expectedNode) -> {
+            ModelNode actualNode = actualNodes.get(name);
+            Assert.assertEquals(expectedNode.getClass(), actualNode.getClass());
+            Assert.assertEquals(expectedNode.getDescription(), actualNode.getDescription());
+            Assert.assertEquals(expectedNode.getEvaluatorObject().getClass(), actualNode.getEvaluatorObject().getClass());
+            Assert.assertEquals(expectedNode.getNormalizerObject().getClass(), actualNode.getNormalizerObject().getClass());
+            Assert.assertEquals(expectedNode.getUtilityFunctionObject().getClass(),
+                    actualNode.getUtilityFunctionObject().getClass());
+            Assert.assertEquals(expectedNode.getWeights(), actualNode.getWeights());
+            Assert.assertArrayEquals(expectedNode.getThresholds(), actualNode.getThresholds());
+            Assert.assertArrayEquals(expectedNode.getThresholdIntervals(), actualNode.getThresholdIntervals());
+            Assert.assertEquals(expectedNode.getChildren().keySet(), actualNode.getChildren().keySet());
+            if (expectedNode instanceof Measure) {
+                Assert.assertEquals(((Measure)expectedNode).isPositive(), ((Measure)actualNode).isPositive());
+            }
+            if (expectedNode instanceof Diagnostic) {
+                Assert.assertEquals(((Diagnostic)expectedNode).getToolName(), ((Diagnostic)actualNode).getToolName());
+            }
+        });
+    }
 }
@@ -9,6 +9,8 @@ import pique.utility.MockedIToolQmSimple;
 import pique.utility.MockedLocTool;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Map;
@@ -106,4 +108,45 @@ public class QualityModelTests {
         QualityModelExport qmExport = new QualityModelExport(qualityModel);
         qmExport.exportToJson("qualityModel_minimal_derived", outputDirectory);
     }
+
+    /**
+     * The fingerprint is stable across imports and evaluation, and a model edit changes only the hashes of the edited
+     * node and its ancestors
+     */
+    @Test
+    public void testQualityModelFingerprint() throws IOException {
+        Path qmFilePath = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        QualityModel qm = new QualityModelImport(qmFilePath).importQualityModel();
+        QualityModelFingerprint before = qm.getFingerprint();
+        Assert.assertEquals(64, before.getHash().length());
+        Assert.assertEquals(before.getHash(), new QualityModelStreamImport(qmFilePath).importQualityModel()
+                .getFingerprint().getHash());
+
+        // Values and findings are not part of the model
+        qm.getMeasure("Measure 01").setValue(0.5);
+        qm.getDiagnostics().values().forEach(diagnostic -> diagnostic.setChild(new Finding("file/path", 1, 2, 3)));
+        Assert.assertEquals(before.getHash(), qm.getFingerprint().getHash());
+
+        // Editing QA21 changes it and its ancestors only
+        qm.getQualityAspect("QA21").setWeight("PF11", 0.3);
+        QualityModelFingerprint after = qm.getFingerprint();
+        Assert.assertNotEquals(before.getHash(), after.getHash());
+        for (String changed : new String[] { "QA21", "QA11", "Total Quality" }) {
+            Assert.assertNotEquals(before.getSubtreeHash(changed), after.getSubtreeHash(changed));
+        }
+        for (String unchanged : new String[] { "QA22", "QA12", "PF11", "Measure 01" }) {
+            Assert.assertEquals(before.getSubtreeHash(unchanged), after.getSubtreeHash(unchanged));
+        }
+
+        // Written into exports; validation is cached per fingerprint
+        Path exported = new QualityModelExport(qm).exportToJson("qualityModel_fingerprint", Paths.get("src/test/out"));
+        Assert.assertTrue(new String(Files.readAllBytes(exported), "UTF-8")
+                .contains("\"fingerprint\": \"" + after.getHash() + "\""));
+        Assert.assertSame(QualityModelValidator.validate(qm), QualityModelValidator.validate(qm));
+
+        // A model that can not be fingerprinted is exported without a fingerprint
+        qm.getMeasure("Measure 01").setChild(qm.getQualityAspect("QA21"));
+        QualityModelExport cyclic = new QualityModelExport(qm);
+        Assert.assertNull(cyclic.getFingerprint());
+    }
 }
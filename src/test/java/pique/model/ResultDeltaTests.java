@@ -0,0 +1,72 @@
+package pique.model;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.Test;
+import pique.evaluation.Project;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+public class ResultDeltaTests {
+
+    /**
+     * A delta between two runs holds only the changed values and added/removed findings, and applying it to the first
+     * run's result reconstructs the second run's result
+     */
+    @Test
+    public void testResultDelta_roundTrip() throws IOException {
+        Path full = Paths.get("src/test/resources/quality_models/qualityModel_full_description.json");
+        QualityModel qm = new QualityModelImport(full).importQualityModel();
+        ModelNode diagnostic = qm.getDiagnostic("TST0011");
+        Finding removed = new Finding("file/path/a", 1, 2, 3);
+        diagnostic.setChild(removed);
+        diagnostic.setChild(new Finding("file/path/a", 5, 2, 3));
+        Project project = new Project("delta_project", qm);
+        Path baseFile = project.exportToJson(Paths.get("src/test/out/delta_base"));
+
+        // Second run: one finding fixed, one new, one measure value changed
+        diagnostic.getChildren().remove(removed.getName());
+        Finding added = new Finding("file/path/b", 7, 2, 3);
+        diagnostic.setChild(added);
+        qm.getMeasure("Measure 01").setValue(0.75);
+        Path resultFile = project.exportToJson(Paths.get("src/test/out/delta_result"));
+
+        Path deltaFile = ResultDelta.exportDelta(baseFile, resultFile, Paths.get("src/test/out/delta_project.delta.json"));
+        Assert.assertTrue(Files.size(deltaFile) < Files.size(resultFile));
+
+        JsonObject delta = new JsonParser().parse(new String(Files.readAllBytes(deltaFile), "UTF-8")).getAsJsonObject();
+        for (JsonElement removal : delta.getAsJsonArray("remove")) {
+            JsonArray path = removal.getAsJsonArray();
+            Assert.assertEquals(removed.getName(), path.get(path.size() - 1).getAsString());
+        }
+        boolean findingAdded = false;
+        for (JsonElement operation : delta.getAsJsonArray("set")) {
+            JsonArray path = operation.getAsJsonObject().getAsJsonArray("path");
+            String key = path.get(path.size() - 1).getAsString();
+            Assert.assertTrue(key.equals("value") || key.equals(added.getName()));
+            findingAdded |= key.equals(added.getName());
+        }
+        Assert.assertTrue(findingAdded);
+
+        JsonElement expected = new JsonParser().parse(new String(Files.readAllBytes(resultFile), "UTF-8"));
+        Path rebuilt = ResultDelta.applyDelta(baseFile, deltaFile, Paths.get("src/test/out/delta_rebuilt.json"));
+        Assert.assertEquals(expected, new JsonParser().parse(new String(Files.readAllBytes(rebuilt), "UTF-8")));
+
+        // Unchanged results give an empty delta, and a delta only applies to its own base
+        JsonObject empty = ResultDelta.diff(expected, expected);
+        Assert.assertEquals(0, empty.getAsJsonArray("set").size());
+        Assert.assertEquals(0, empty.getAsJsonArray("remove").size());
+        try {
+            ResultDelta.applyDelta(resultFile, deltaFile, Paths.get("src/test/out/delta_wrong_base.json"));
+            Assert.fail("Expected the delta to be rejected for a different base");
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getMessage().contains("base result"));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package pique.runnable;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pique.analysis.ITool;
+import pique.model.QualityModel;
+import pique.model.QualityModelExport;
+import pique.model.QualityModelImport;
+import pique.utility.MinimalDerivedModel;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class EvaluationDaemonTests {
+
+    private static Path qmDerivedFile;
+
+    @BeforeClass
+    public static void deriveModel() {
+        qmDerivedFile = MinimalDerivedModel.export("qualityModel_daemon_derived");
+    }
+
+    @Test
+    public void testEvaluationDaemon() throws Exception {
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+
+        // A LoC tool that, once armed, holds the only evaluation slot until released
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch[] hold = { new CountDownLatch(0) };
+        ITool holdingLocTool = new MockedLocTool() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                try {
+                    if (hold[0].getCount() > 0) blocked.countDown();
+                    hold[0].await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.analyze(projectLocation);
+            }
+        };
+        Set<ITool> daemonTools = Stream.of(new MockedIToolQmSimple(), holdingLocTool).collect(Collectors.toSet());
+        Path resultsDir = Paths.get("src/test/out/evaluation_daemon");
+        FileUtils.deleteDirectory(resultsDir.toFile());
+        EvaluationDaemon daemon = new EvaluationDaemon(0, 1, 0, daemonTools, resultsDir);
+        daemon.loadModel("minimal", qmDerivedFile);
+        daemon.start();
+        try {
+            String evaluate = "/evaluate?project=src/test/resources/fake_project&model=minimal";
+
+            // Evaluation: same results as a single project evaluation
+            HttpURLConnection response = request(daemon, "POST", evaluate);
+            Assert.assertEquals(200, response.getResponseCode());
+            String fingerprint = MinimalDerivedModel.instance().getFingerprint().getHash();
+            Assert.assertEquals(fingerprint, response.getHeaderField("X-Model-Fingerprint"));
+            JsonObject result = new JsonParser().parse(read(response)).getAsJsonObject();
+            SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+            evaluator.runEvaluator(Paths.get("src/test/resources/fake_project"),
+                    Paths.get("src/test/out/evaluation_daemon_single"), qmDerivedFile, tools);
+            Assert.assertEquals(evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue(),
+                    result.getAsJsonObject("factors").getAsJsonObject("tqi").getAsJsonObject("Total Quality")
+                            .get("value").getAsDouble(), 1e-9);
+
+            // Admission control: with the only slot taken and no queue, requests are rejected
+            hold[0] = new CountDownLatch(1);
+            Thread running = new Thread(() -> {
+                try {
+                    request(daemon, "POST", evaluate).getResponseCode();
+                } catch (IOException ignored) { }
+            });
+            running.start();
+            Assert.assertTrue(blocked.await(30, TimeUnit.SECONDS));
+            Assert.assertEquals(503, request(daemon, "POST", evaluate).getResponseCode());
+            hold[0].countDown();
+            running.join(30000);
+
+            // Hot reload: a changed model file is picked up by the next request
+            QualityModel changed = new QualityModelImport(qmDerivedFile).importQualityModel();
+            for (String child : changed.getTqi().getWeights().keySet()) changed.getTqi().setWeight(child, 0.25);
+            new QualityModelExport(changed).exportToJson("qualityModel_daemon_derived", Paths.get("src/test/out"));
+            Files.setLastModifiedTime(qmDerivedFile, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+            response = request(daemon, "POST", evaluate);
+            Assert.assertEquals(200, response.getResponseCode());
+            Assert.assertNotEquals(fingerprint, response.getHeaderField("X-Model-Fingerprint"));
+            Assert.assertEquals(changed.getFingerprint().getHash(), daemon.getModelFingerprint("minimal"));
+
+            // A model file caught half-written keeps the loaded model
+            String written = new String(Files.readAllBytes(qmDerivedFile), StandardCharsets.UTF_8);
+            Files.write(qmDerivedFile, written.substring(0, written.length() / 2).getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(qmDerivedFile, FileTime.fromMillis(System.currentTimeMillis() + 20000));
+            response = request(daemon, "POST", evaluate);
+            Assert.assertEquals(200, response.getResponseCode());
+            Assert.assertEquals(changed.getFingerprint().getHash(), response.getHeaderField("X-Model-Fingerprint"));
+            Files.write(qmDerivedFile, written.getBytes(StandardCharsets.UTF_8));
+
+            response = request(daemon, "GET", "/models");
+            Assert.assertEquals(200, response.getResponseCode());
+            Assert.assertEquals(daemon.getModelFingerprint("minimal"), new JsonParser().parse(read(response))
+                    .getAsJsonObject().getAsJsonObject("minimal").get("fingerprint").getAsString());
+            Assert.assertEquals(400, request(daemon, "POST", "/evaluate?project=x").getResponseCode());
+
+            // Request directories are deleted, also after failed evaluations
+            Assert.assertEquals(500, request(daemon, "POST",
+                    "/evaluate?project=src/test/resources/benchmark_repository&model=minimal").getResponseCode());
+            try (Stream<Path> requestDirs = Files.list(resultsDir.resolve("minimal"))) {
+                Assert.assertEquals(0, requestDirs.count());
+            }
+        } finally {
+            daemon.stop();
+        }
+    }
+
+    /**
+     * Evaluations run one at a time unless all tools are thread-safe
+     */
+    @Test
+    public void testEvaluationDaemon_concurrency() {
+        ITool sharedTool = new MockedLocTool() {
+            @Override
+            public boolean isThreadSafe() {
+                return false;
+            }
+        };
+        Path resultsDir = Paths.get("src/test/out/evaluation_daemon_concurrency");
+        Assert.assertEquals(4, new EvaluationDaemon(0, 4, 0, Collections.singleton(new MockedLocTool()), resultsDir)
+                .getConcurrency());
+        Assert.assertEquals(1, new EvaluationDaemon(0, 4, 0, Collections.singleton(sharedTool), resultsDir)
+                .getConcurrency());
+    }
+
+    private static HttpURLConnection request(EvaluationDaemon daemon, String method, String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + daemon.getPort() + path)
+                .openConnection();
+        connection.setRequestMethod(method);
+        return connection;
+    }
+
+    private static String read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            return new String(IOUtils.toByteArray(in), "UTF-8");
+        }
+    }
+}
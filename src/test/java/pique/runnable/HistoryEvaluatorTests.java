@@ -0,0 +1,180 @@
+package pique.runnable;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+import pique.analysis.ITool;
+import pique.model.QualityModel;
+import pique.utility.GitUtility;
+import pique.utility.GitUtility.Commit;
+import pique.utility.MinimalDerivedModel;
+import pique.utility.MockedLocTool;
+import pique.utility.MockedMarkerTool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Integration tests for evaluations over the git history of a project
+ */
+public class HistoryEvaluatorTests {
+
+    private static final String[] MARKERS = { "TST0011", "TST0012", "TST0021", "TST0022" };
+
+    private Path repository = Paths.get("src/test/out/history/repo").toAbsolutePath();
+
+    private Path deriveModel() {
+        return MinimalDerivedModel.export("qualityModel_history_derived");
+    }
+
+    /**
+     * Create a repository whose commits add and remove marker findings
+     */
+    private void createRepository() throws IOException {
+        initRepository();
+        commit("A.cs", "class A { }");
+        commit("A.cs", "class A { } // TST0011", "// TST0012");
+        commit("lib/B.cs", "// TST0021", "// TST0021", "// TST0022");
+        commit("README.md", "no findings here");
+        Files.delete(repository.resolve("A.cs"));
+        commit("lib/B.cs", "// TST0021");
+        commit("lib/C.cs", "// TST0011 TST0022");
+    }
+
+    private void initRepository() throws IOException {
+        FileUtils.deleteDirectory(repository.getParent().toFile());
+        Files.createDirectories(repository);
+        GitUtility.git(repository, "init", "--quiet");
+        GitUtility.git(repository, "config", "user.name", "PIQUE Test");
+        GitUtility.git(repository, "config", "user.email", "test@example.com");
+    }
+
+    private void commit(String file, String... lines) throws IOException {
+        Path path = repository.resolve(file);
+        Files.createDirectories(path.getParent());
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+        GitUtility.git(repository, "add", "--all");
+        GitUtility.git(repository, "commit", "--quiet", "-m", "Change " + file);
+    }
+
+    @Test
+    public void testHistoryEvaluator() throws IOException {
+        Path qmDerivedFile = deriveModel();
+        createRepository();
+        Path resultsDir = Paths.get("src/test/out/history/results");
+        List<Commit> commits = GitUtility.listCommits(repository, "HEAD");
+        Assert.assertEquals(6, commits.size());
+
+        HistoryEvaluator historyEvaluator = new HistoryEvaluator(qmDerivedFile);
+        historyEvaluator.setParallelism(2);
+        MockedMarkerTool markerTool = new MockedMarkerTool(MARKERS);
+        Set<ITool> tools = Stream.of(markerTool, new MockedLocTool()).collect(Collectors.toSet());
+        Path historyFile = historyEvaluator.runEvaluator(repository, "HEAD", resultsDir, tools);
+        Assert.assertEquals(6, historyEvaluator.getEvaluatedCommits());
+        Assert.assertTrue(historyEvaluator.getFailures().isEmpty());
+
+        // Incremental: after the first commit of each worktree, only changed files are analyzed
+        Assert.assertEquals(6, markerTool.getAnalyzedFiles().size());
+        Assert.assertEquals(4, markerTool.getAnalyzedFiles().stream().filter(files -> files.size() == 1).count());
+
+        // Same values as a full evaluation of each commit
+        JsonObject series = new JsonParser().parse(new String(Files.readAllBytes(historyFile), StandardCharsets.UTF_8))
+                .getAsJsonObject();
+        Assert.assertEquals(historyEvaluator.getNodeNames().size(), series.getAsJsonArray("nodes").size());
+        Map<String, double[]> history = historyEvaluator.readHistory(historyFile);
+        Assert.assertEquals(commits.stream().map(Commit::getId).collect(Collectors.toList()),
+                Arrays.asList(history.keySet().toArray()));
+        Path checkout = Paths.get("src/test/out/history/checkout").toAbsolutePath().resolve("repo");
+        GitUtility.addWorktree(repository, checkout, commits.get(0).getId());
+        try {
+            for (Commit commit : commits) {
+                GitUtility.checkout(checkout, commit.getId());
+                SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+                evaluator.runEvaluator(checkout, Paths.get("src/test/out/history/single"), qmDerivedFile,
+                        Stream.of(new MockedMarkerTool(MARKERS), new MockedLocTool()).collect(Collectors.toSet()));
+                QualityModel evaluated = evaluator.getEvaluatedProject().getQualityModel();
+                double[] values = history.get(commit.getId());
+                Assert.assertEquals(evaluated.getTqi().getValue(), values[0], 1e-9);
+                for (int i = 1; i < values.length; i++) {
+                    String node = historyEvaluator.getNodeNames().get(i);
+                    double expected = evaluated.getQualityAspects().containsKey(node)
+                            ? evaluated.getQualityAspects().get(node).getValue()
+                            : evaluated.getProductFactors().get(node).getValue();
+                    Assert.assertEquals(expected, values[i], 1e-9);
+                }
+            }
+        } finally {
+            GitUtility.removeWorktree(repository, checkout);
+        }
+        Assert.assertNotEquals(history.get(commits.get(0).getId())[0], history.get(commits.get(2).getId())[0], 1e-9);
+
+        // Evaluated commits are reused by later runs
+        historyEvaluator.runEvaluator(repository, "HEAD~2..HEAD", resultsDir, tools);
+        Assert.assertEquals(0, historyEvaluator.getEvaluatedCommits());
+        Assert.assertEquals(2, historyEvaluator.getReusedCommits());
+        Assert.assertEquals(6, historyEvaluator.readHistory(historyFile).size());
+
+        // Series missing their keys are ignored rather than failing the run
+        Path foreign = Paths.get("src/test/out/history/foreign.json");
+        JsonObject commitWithoutKeys = new JsonObject();
+        commitWithoutKeys.add("fingerprint", series.get("fingerprint"));
+        commitWithoutKeys.add("nodes", series.get("nodes"));
+        commitWithoutKeys.add("commits", new JsonParser().parse("[{}]"));
+        for (String json : new String[] { "{}", "{\"fingerprint\": \"" + series.get("fingerprint").getAsString() +
+                "\"}", "{\"nodes\": []}", commitWithoutKeys.toString() }) {
+            Files.write(foreign, json.getBytes(StandardCharsets.UTF_8));
+            Assert.assertTrue(historyEvaluator.readHistory(foreign).isEmpty());
+        }
+    }
+
+    @Test
+    public void testRegressionBisector() throws IOException {
+        Path qmDerivedFile = deriveModel();
+        initRepository();
+        GitUtility.git(repository, "commit", "--quiet", "--allow-empty", "-m", "Initial commit");
+        GitUtility.git(repository, "tag", "good");
+        // The regression comes with the 11th of 16 commits
+        for (int i = 1; i <= 16; i++) {
+            if (i == 11) commit("lib/Bad.cs", "// TST0011", "// TST0012", "// TST0021", "// TST0022");
+            else commit("README.md", "revision " + i);
+        }
+        List<Commit> commits = GitUtility.listCommits(repository, "good..HEAD");
+        Set<ITool> tools = Stream.of(new MockedMarkerTool(MARKERS), new MockedLocTool()).collect(Collectors.toSet());
+
+        HistoryEvaluator historyEvaluator = new HistoryEvaluator(qmDerivedFile);
+        historyEvaluator.setParallelism(1);
+        Map<String, double[]> ends = historyEvaluator.evaluateCommits(repository,
+                Arrays.asList(GitUtility.getCommit(repository, "good"), commits.get(15)),
+                Paths.get("src/test/out/history/ends"), tools);
+        double goodTqi = ends.get(GitUtility.resolve(repository, "good"))[0];
+        double badTqi = ends.get(commits.get(15).getId())[0];
+        Assert.assertTrue(badTqi < goodTqi);
+
+        Path resultsDir = Paths.get("src/test/out/history/bisect");
+        String tqi = historyEvaluator.getNodeNames().get(0);
+        RegressionBisector bisector = new RegressionBisector(historyEvaluator);
+        RegressionBisector.Result result = bisector.bisect(repository, "good", "HEAD", tqi, (goodTqi + badTqi) / 2,
+                resultsDir, tools);
+        Assert.assertTrue(result.isExact());
+        Assert.assertEquals(commits.get(10).getId(), result.getFirstBad().getId());
+        Assert.assertEquals(commits.get(9).getId(), result.getLastGood().getId());
+        Assert.assertEquals(17, result.getCommitsInRange());
+        Assert.assertTrue(result.getEvaluatedCommits() <= 2 + 5);
+
+        // All needed values are in the series now
+        result = bisector.bisect(repository, "good", "HEAD", tqi, (goodTqi + badTqi) / 2, resultsDir, tools);
+        Assert.assertEquals(0, result.getEvaluatedCommits());
+        Assert.assertEquals(commits.get(10).getId(), result.getFirstBad().getId());
+    }
+}
@@ -0,0 +1,67 @@
+package pique.runnable;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pique.analysis.ITool;
+import pique.utility.MinimalDerivedModel;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class MultiProjectEvaluatorTests {
+
+    private static Path qmDerivedFile;
+
+    @BeforeClass
+    public static void deriveModel() {
+        qmDerivedFile = MinimalDerivedModel.export("qualityModel_multi_derived");
+    }
+
+    /**
+     * Evaluating several projects with one compiled model gives the same results as evaluating each with the
+     * single project evaluator, and failed projects do not stop the run
+     */
+    @Test
+    public void testMultiProjectEvaluator() throws IOException {
+        Path benchmarkRepo = Paths.get("src/test/resources/benchmark_repository");
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+        List<Path> projects = Arrays.asList(Paths.get("src/test/resources/fake_project"),
+                benchmarkRepo.resolve("BenchmarkProjectOne"), benchmarkRepo.resolve("BenchmarkProjectTwo"),
+                benchmarkRepo.resolve("BenchmarkProjectThree"), Paths.get("src/test/resources/no_such_project"),
+                Paths.get("src/test/out/multi_duplicate/fake_project"));
+        Path resultsDir = Paths.get("src/test/out/evaluation_results_multi");
+        MultiProjectEvaluator multiEvaluator = new MultiProjectEvaluator(qmDerivedFile);
+        multiEvaluator.setParallelism(2);
+        Path summaryFile = multiEvaluator.runEvaluator(projects, resultsDir, tools);
+
+        Assert.assertEquals(4, multiEvaluator.getResults().size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("no_such_project", projects.get(5).toString())),
+                multiEvaluator.getFailures().keySet());
+        Assert.assertTrue(multiEvaluator.getThroughput() > 0);
+
+        JsonObject summary = new JsonParser().parse(new String(Files.readAllBytes(summaryFile), "UTF-8"))
+                .getAsJsonObject();
+        Assert.assertEquals(4, summary.get("projects_evaluated").getAsInt());
+        for (Path project : projects.subList(0, 4)) {
+            SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+            evaluator.runEvaluator(project, Paths.get("src/test/out/evaluation_results_multi_single"), qmDerivedFile,
+                    tools);
+            double expected = evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue();
+            Assert.assertEquals(expected, summary.getAsJsonObject("projects")
+                    .getAsJsonObject(project.getFileName().toString()).get("tqi").getAsDouble(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package pique.runnable;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pique.analysis.ITool;
+import pique.utility.MinimalDerivedModel;
+import pique.utility.MockedIToolQmSimple;
+import pique.utility.MockedLocTool;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class ProjectWatcherTests {
+
+    private static Path qmDerivedFile;
+
+    @BeforeClass
+    public static void deriveModel() {
+        qmDerivedFile = MinimalDerivedModel.export("qualityModel_watch_derived");
+    }
+
+    @Test
+    public void testProjectWatcher() throws Exception {
+        Path projectDir = Paths.get("src/test/out/watch/fake_project");
+        FileUtils.deleteDirectory(projectDir.toFile());
+        FileUtils.copyDirectory(Paths.get("src/test/resources/fake_project").toFile(), projectDir.toFile());
+
+        // The analysis tool only looks at C# files, the LoC tool at every file
+        AtomicInteger analysisRuns = new AtomicInteger();
+        AtomicInteger locRuns = new AtomicInteger();
+        ITool analysisTool = new MockedIToolQmSimple() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                analysisRuns.incrementAndGet();
+                return super.analyze(projectLocation);
+            }
+
+            @Override
+            public boolean isAffectedBy(Path changedFile) {
+                return changedFile.toString().endsWith(".cs");
+            }
+        };
+        ITool locTool = new MockedLocTool() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                locRuns.incrementAndGet();
+                return super.analyze(projectLocation);
+            }
+        };
+
+        BlockingQueue<Path> evaluations = new LinkedBlockingQueue<>();
+        SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+        try (ProjectWatcher watcher = evaluator.watch(projectDir, projectDir.resolve("results"), qmDerivedFile,
+                Stream.of(analysisTool, locTool).collect(Collectors.toSet()), evaluations::add)) {
+            Assert.assertNotNull(evaluations.poll(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, analysisRuns.get());
+            Assert.assertEquals(1, locRuns.get());
+            double tqi = evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue();
+
+            // A burst of changes to a file the analysis tool ignores: one evaluation, LoC tool only
+            watcher.setDebounceMillis(200);
+            for (int i = 0; i < 3; i++) Files.write(projectDir.resolve("README.md"), ("v" + i).getBytes("UTF-8"));
+            Assert.assertNotNull(evaluations.poll(10, TimeUnit.SECONDS));
+            Assert.assertEquals(1, analysisRuns.get());
+            Assert.assertEquals(2, locRuns.get());
+            Assert.assertEquals(tqi, evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue(), 1e-9);
+
+            // A changed source file in a new directory re-runs both tools
+            Files.createDirectories(projectDir.resolve("src"));
+            Files.write(projectDir.resolve("src/Added.cs"), "class Added { }".getBytes("UTF-8"));
+            Assert.assertNotNull(evaluations.poll(10, TimeUnit.SECONDS));
+            evaluations.poll(1, TimeUnit.SECONDS);
+            Assert.assertTrue(analysisRuns.get() >= 2);
+            Assert.assertEquals(tqi, evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue(), 1e-9);
+            Assert.assertEquals(locRuns.get(), watcher.getEvaluations());
+
+            // Lost events: the project directory itself changed, every tool re-runs whatever its filter
+            int analysisRunsBefore = analysisRuns.get();
+            watcher.refresh(Collections.singleton(projectDir.toAbsolutePath().normalize()));
+            Assert.assertEquals(analysisRunsBefore + 1, analysisRuns.get());
+        }
+    }
+}
@@ -3,14 +3,20 @@ package pique.runnable;
 import org.junit.Assert;
 import org.junit.Test;
 import pique.analysis.ITool;
+import pique.calibration.BenchmarkState;
+import pique.calibration.IBenchmarker;
 import pique.model.*;
 import pique.utility.MockedIToolQmFull;
 import pique.utility.MockedIToolQmSimple;
 import pique.utility.MockedLocTool;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -270,4 +276,103 @@ public class QualityModelDeriverTests {
         Assert.assertEquals("TST0012", diagnostic12.getName());
         Assert.assertEquals("Test tool", diagnostic12.getToolName());
     }
+
+    /**
+     * Bootstrap the benchmark data of a derivation and verify the threshold intervals survive model export and import
+     */
+    @Test
+    public void testDeriveThresholdIntervals() {
+        Path qmFilePath = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+        Path benchmarkRepo = Paths.get("src/test/resources/benchmark_repository");
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        QualityModel qualityModel = QualityModelDeriver.deriveModel(qmDescription, tools, benchmarkRepo, ".txt");
+        QualityModelDeriver.deriveThresholdIntervals(qualityModel, 500, 0.9);
+
+        Measure measure01 = (Measure)qualityModel.getMeasure("Measure 01");
+        Double[][] intervals = measure01.getThresholdIntervals();
+        Assert.assertEquals(2, intervals.length);
+        for (Double[] interval : intervals) {
+            Assert.assertTrue(interval[0] <= interval[1]);
+            Assert.assertTrue(interval[0] >= measure01.getThresholds()[0]);
+            Assert.assertTrue(interval[1] <= measure01.getThresholds()[1]);
+        }
+        // The minimum of a resample can never be lower than the minimum of the full benchmark
+        Assert.assertEquals(measure01.getThresholds()[0], intervals[0][0]);
+
+        Path exported = new QualityModelExport(qualityModel).exportToJson("qualityModel_minimal_intervals",
+                Paths.get("src/test/out"));
+        Measure reimported = (Measure)new QualityModelImport(exported).importQualityModel().getMeasure("Measure 01");
+        Assert.assertArrayEquals(intervals[0], reimported.getThresholdIntervals()[0]);
+        Assert.assertArrayEquals(intervals[1], reimported.getThresholdIntervals()[1]);
+        Assert.assertSame(intervals, ((Measure)measure01.clone()).getThresholdIntervals());
+
+        // Benchmarkers that can not re-derive thresholds are rejected before bootstrapping
+        BenchmarkState benchmarkState = qualityModel.getBenchmarker().getBenchmarkState();
+        qualityModel.setBenchmarker(new IBenchmarker() {
+            @Override
+            public Map<String, Double[]> deriveThresholds(Path benchmarkRepository, QualityModel qmDescription,
+                                                          Set<ITool> tools, String projectRootFlag) {
+                return new HashMap<>();
+            }
+
+            @Override
+            public BenchmarkState getBenchmarkState() {
+                return benchmarkState;
+            }
+
+            @Override
+            public String getName() {
+                return "Fixed Benchmarker";
+            }
+        });
+        try {
+            QualityModelDeriver.deriveThresholdIntervals(qualityModel, 500, 0.9);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().contains("Fixed Benchmarker"));
+        }
+    }
+
+    /**
+     * The benchmark state is written to the given file, whatever its extension, and read back by the next derivation
+     */
+    @Test
+    public void testDeriveModel_benchmarkStateFile() throws IOException {
+        Path qmFilePath = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+        Path benchmarkRepo = Paths.get("src/test/resources/benchmark_repository");
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+        Path stateFile = Paths.get("src/test/out/deriver_state/state.bin");
+        Files.deleteIfExists(stateFile);
+
+        QualityModelDeriver.deriveModel(new QualityModelImport(qmFilePath).importQualityModel(), tools, benchmarkRepo,
+                ".txt", stateFile);
+        Assert.assertTrue(Files.isRegularFile(stateFile));
+        Assert.assertEquals(3, BenchmarkState.importFromJson(stateFile).getProjects().size());
+
+        QualityModel qmDescription = new QualityModelImport(qmFilePath).importQualityModel();
+        QualityModelDeriver.deriveModel(qmDescription, tools, benchmarkRepo, ".txt", stateFile);
+        Assert.assertEquals(3, qmDescription.getBenchmarker().getBenchmarkState().getProjects().size());
+
+        // Benchmarkers without incremental benchmarking are rejected up front
+        qmDescription.setBenchmarker(new IBenchmarker() {
+            @Override
+            public Map<String, Double[]> deriveThresholds(Path benchmarkRepository, QualityModel qmDescription,
+                                                          Set<ITool> tools, String projectRootFlag) {
+                return new HashMap<>();
+            }
+
+            @Override
+            public String getName() {
+                return "Stateless Benchmarker";
+            }
+        });
+        try {
+            QualityModelDeriver.deriveModel(qmDescription, tools, benchmarkRepo, ".txt", stateFile);
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains("Stateless Benchmarker"));
+        }
+    }
 }
@@ -2,9 +2,11 @@ package pique.runnable;
 
 import org.junit.Assert;
 import org.junit.Test;
+import pique.analysis.IPrerequisite;
 import pique.analysis.ITool;
 import pique.evaluation.Project;
 import pique.model.*;
+import pique.utility.MinimalDerivedModel;
 import pique.utility.MockedIToolQmFull;
 import pique.utility.MockedIToolQmSimple;
 import pique.utility.MockedLocTool;
@@ -12,7 +14,12 @@ import sun.reflect.generics.reflectiveObjects.NotImplementedException;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -170,4 +177,146 @@ public class SingleProjectEvaluatorTests {
         // TQI
         Assert.assertEquals(0.25, tqi.getValue(), 0.0001);
     }
+
+    @Test
+    public void testSingleProjectEvaluator_concurrentTools() {
+        Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+
+        // Each tool waits for the other one to start: completes only if both run at the same time
+        CountDownLatch started = new CountDownLatch(2);
+        ITool analysisTool = new MockedIToolQmSimple() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                awaitOther(started);
+                return super.analyze(projectLocation);
+            }
+        };
+        ITool locTool = new MockedLocTool() {
+            @Override
+            public Path analyze(Path projectLocation) {
+                awaitOther(started);
+                return super.analyze(projectLocation);
+            }
+        };
+
+        SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+        evaluator.runEvaluator(Paths.get("src/test/resources/fake_project"),
+                Paths.get("src/test/out/evaluation_results_concurrent"), MinimalDerivedModel.instance(),
+                Stream.of(analysisTool, locTool).collect(Collectors.toSet()));
+        Assert.assertEquals(0.5416, evaluator.getEvaluatedProject().getQualityModel().getTqi().getValue(), 0.0001);
+
+        // A failing tool fails the evaluation with its own exception
+        try {
+            new SingleProjectEvaluator().runEvaluator(Paths.get("src/test/resources/benchmark_repository"),
+                    Paths.get("src/test/out/evaluation_results_concurrent"), MinimalDerivedModel.instance(), tools);
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertEquals("switch statement default case", e.getMessage());
+        }
+    }
+
+    /**
+     * Tools re-running on the whole project share their prerequisite steps, as in a full evaluation
+     */
+    @Test
+    public void testIncrementalAnalysis_sharedPrerequisites() {
+        Path projectDir = Paths.get("src/test/resources/fake_project").toAbsolutePath();
+        AtomicInteger builds = new AtomicInteger();
+        SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+        evaluator.addPrerequisite(new IPrerequisite() {
+            @Override
+            public String getName() {
+                return "build";
+            }
+
+            @Override
+            public Path produce(Path projectLocation, Map<String, Path> artifacts) {
+                builds.incrementAndGet();
+                return projectLocation;
+            }
+        });
+        Set<String> build = Collections.singleton("build");
+        ITool analysisTool = new MockedIToolQmSimple() {
+            @Override
+            public Set<String> getPrerequisites() {
+                return build;
+            }
+        };
+        ITool locTool = new MockedLocTool() {
+            @Override
+            public Set<String> getPrerequisites() {
+                return build;
+            }
+        };
+
+        IncrementalAnalysis analysis = new IncrementalAnalysis(evaluator, projectDir,
+                Stream.of(analysisTool, locTool).collect(Collectors.toSet()));
+        Map<String, Diagnostic> diagnostics = analysis.analyze(Collections.singleton(projectDir));
+        Assert.assertEquals(2, analysis.getToolsRun());
+        Assert.assertEquals(1, builds.get());
+        Assert.assertTrue(diagnostics.containsKey("loc"));
+        Assert.assertTrue(diagnostics.containsKey("TST0011"));
+
+        analysis.analyze(Collections.singleton(projectDir.resolve("iamsourcecode.cs")));
+        Assert.assertEquals(2, builds.get());
+    }
+
+    /**
+     * File-local tools needing prerequisites re-run through the scheduler, which produces their artifacts
+     */
+    @Test
+    public void testIncrementalAnalysis_fileLocalPrerequisites() {
+        Path projectDir = Paths.get("src/test/resources/fake_project").toAbsolutePath();
+        AtomicInteger builds = new AtomicInteger();
+        SingleProjectEvaluator evaluator = new SingleProjectEvaluator();
+        evaluator.addPrerequisite(new IPrerequisite() {
+            @Override
+            public String getName() {
+                return "build";
+            }
+
+            @Override
+            public Path produce(Path projectLocation, Map<String, Path> artifacts) {
+                builds.incrementAndGet();
+                return projectLocation;
+            }
+        });
+        ITool analysisTool = new MockedIToolQmSimple() {
+            @Override
+            public Set<String> getPrerequisites() {
+                return Collections.singleton("build");
+            }
+
+            @Override
+            public boolean isFileLocal() {
+                return true;
+            }
+        };
+        ITool locTool = new MockedLocTool() {
+            @Override
+            public boolean isAffectedBy(Path changedFile) {
+                return false;
+            }
+        };
+
+        IncrementalAnalysis analysis = new IncrementalAnalysis(evaluator, projectDir,
+                Stream.of(analysisTool, locTool).collect(Collectors.toSet()));
+        analysis.analyze(Collections.singleton(projectDir));
+        Assert.assertEquals(1, builds.get());
+
+        Map<String, Diagnostic> diagnostics = analysis.analyze(
+                Collections.singleton(projectDir.resolve("iamsourcecode.cs")));
+        Assert.assertEquals(1, analysis.getToolsRun());
+        Assert.assertEquals(2, builds.get());
+        Assert.assertTrue(diagnostics.containsKey("TST0011"));
+    }
+
+    private static void awaitOther(CountDownLatch started) {
+        started.countDown();
+        try {
+            if (!started.await(10, TimeUnit.SECONDS)) throw new RuntimeException("Tools did not run concurrently.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
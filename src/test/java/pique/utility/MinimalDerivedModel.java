@@ -0,0 +1,53 @@
+package pique.utility;
+
+import pique.analysis.ITool;
+import pique.model.QualityModel;
+import pique.model.QualityModelExport;
+import pique.model.QualityModelImport;
+import pique.model.QualityModelSnapshot;
+import pique.runnable.QualityModelDeriver;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Test fixture: the minimal quality model description, derived once against the benchmark repository with
+ * {@link MockedIToolQmSimple} and {@link MockedLocTool}, and shared by the tests evaluating projects with it
+ */
+public final class MinimalDerivedModel {
+
+    private static ByteBuffer compiled;
+
+    private MinimalDerivedModel() { }
+
+
+    // Methods
+
+    /**
+     * @return a new instance of the derived model
+     */
+    public static synchronized QualityModel instance() {
+        if (compiled == null) {
+            Path qmFilePath = Paths.get("src/test/resources/quality_models/qualityModel_minimal_description.json");
+            Set<ITool> tools = Stream.of(new MockedIToolQmSimple(), new MockedLocTool()).collect(Collectors.toSet());
+            QualityModel qualityModel = QualityModelDeriver.deriveModel(
+                    new QualityModelImport(qmFilePath).importQualityModel(), tools,
+                    Paths.get("src/test/resources/benchmark_repository"), ".txt");
+            compiled = QualityModelSnapshot.compile(qualityModel);
+        }
+        return QualityModelSnapshot.instance(compiled);
+    }
+
+    /**
+     * Export the derived model to its own file, which the test may modify.
+     *
+     * @return the derived model file, src/test/out/&lt;name&gt;.json
+     */
+    public static Path export(String name) {
+        return new QualityModelExport(instance()).exportToJson(name, Paths.get("src/test/out"));
+    }
+}
@@ -125,6 +125,11 @@ public class MockedIToolQmSimple implements ITool {
         }
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public Path initialize(Path toolRoot) {
         return null;
@@ -28,6 +28,11 @@ public class MockedLocTool implements ITool {
         return diagnostics;
     }
 
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
     @Override
     public Path initialize(Path toolRoot) {
         return null;
@@ -0,0 +1,105 @@
+package pique.utility;
+
+import pique.analysis.ITool;
+import pique.model.Diagnostic;
+import pique.model.Finding;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * File-local mocked tool: one finding of diagnostic X for each line of a file containing the marker X.
+ * Results are written as "file,line,diagnostic" lines.
+ */
+public class MockedMarkerTool implements ITool {
+
+    private final String[] markers;
+    private final List<Set<Path>> analyzedFiles = Collections.synchronizedList(new ArrayList<>());
+
+    public MockedMarkerTool(String... markers) {
+        this.markers = markers;
+    }
+
+    /**
+     * @return the files given to each analysis, in order
+     */
+    public List<Set<Path>> getAnalyzedFiles() {
+        return analyzedFiles;
+    }
+
+    @Override
+    public Path analyze(Path projectLocation) {
+        try (Stream<Path> files = Files.walk(projectLocation)) {
+            return analyze(projectLocation, files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().equals(".git"))
+                    .collect(Collectors.toSet()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Path analyze(Path projectLocation, Set<Path> changedFiles) {
+        analyzedFiles.add(changedFiles);
+        List<String> results = new ArrayList<>();
+        try {
+            for (Path file : changedFiles) {
+                if (!Files.isRegularFile(file)) continue;
+                List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+                String relativePath = projectLocation.toAbsolutePath().relativize(file.toAbsolutePath()).toString();
+                for (int line = 0; line < lines.size(); line++) {
+                    for (String marker : markers) {
+                        if (lines.get(line).contains(marker)) results.add(relativePath + "," + (line + 1) + "," + marker);
+                    }
+                }
+            }
+            Path resultsFile = Files.createTempFile("marker_tool", ".txt");
+            Files.write(resultsFile, results, StandardCharsets.UTF_8);
+            return resultsFile;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public Map<String, Diagnostic> parseAnalysis(Path toolResults) {
+        Map<String, Diagnostic> diagnostics = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(toolResults, StandardCharsets.UTF_8)) {
+                String[] fields = line.split(",");
+                diagnostics.computeIfAbsent(fields[2], id -> new Diagnostic(id, "", getName()))
+                        .setChild(new Finding(fields[0], Integer.parseInt(fields[1]), 0, 1));
+            }
+            Files.delete(toolResults);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return diagnostics;
+    }
+
+    @Override
+    public boolean isFileLocal() {
+        return true;
+    }
+
+    @Override
+    public boolean isThreadSafe() {
+        return true;
+    }
+
+    @Override
+    public Path initialize(Path toolRoot) {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return "Marker Tool";
+    }
+}
@@ -0,0 +1 @@
+sample text
\ No newline at end of file
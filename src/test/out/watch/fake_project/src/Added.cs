@@ -0,0 +1 @@
+class Added { }
\ No newline at end of file